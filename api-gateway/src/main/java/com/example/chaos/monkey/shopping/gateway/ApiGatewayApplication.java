@@ -1,13 +1,16 @@
 package com.example.chaos.monkey.shopping.gateway;
 
+import com.example.chaos.monkey.shopping.startup.StartupConfiguration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.cloud.netflix.eureka.EnableEurekaClient;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 import org.springframework.web.client.RestTemplate;
 
 @SpringBootApplication
+@Import(StartupConfiguration.class)
 public class ApiGatewayApplication {
 
 	public static void main(String[] args) {
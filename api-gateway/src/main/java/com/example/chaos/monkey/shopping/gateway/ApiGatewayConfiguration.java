@@ -1,20 +1,44 @@
 package com.example.chaos.monkey.shopping.gateway;
 
-import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
-import org.springframework.cloud.client.loadbalancer.LoadBalanced;
-import org.springframework.cloud.netflix.eureka.EnableEurekaClient;
+import com.example.chaos.monkey.shopping.http.HostConnectionPools;
+import com.example.chaos.monkey.shopping.http.PooledHttpClients;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
 
 /**
+ * The HTTP clients of the startpage, both pooled with keep-alive and connect and read timeouts (see
+ * {@link PooledHttpClients}): a pooling Apache HttpClient behind the {@link RestTemplate} of the Hystrix commands and
+ * {@link HostConnectionPools} behind the reactive {@link WebClient}.
+ *
  * @author Benjamin Wilms
  */
 @Configuration
 public class ApiGatewayConfiguration {
 
     @Bean
-    RestTemplate loadBalanceRestTemplate() {
-        return new RestTemplate();
+    PooledHttpClients pooledHttpClients(Environment environment) {
+        return PooledHttpClients.of(environment);
+    }
+
+    @Bean
+    RestTemplate loadBalanceRestTemplate(PooledHttpClients pooledHttpClients, MeterRegistry meterRegistry) {
+        return pooledHttpClients.restTemplate("commands", meterRegistry);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    HostConnectionPools productConnectionPools(PooledHttpClients pooledHttpClients, MeterRegistry meterRegistry) {
+        return pooledHttpClients.connectionPools("reactive", meterRegistry);
+    }
+
+    @Bean
+    WebClient productWebClient(PooledHttpClients pooledHttpClients, HostConnectionPools productConnectionPools) {
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(pooledHttpClients.httpClient(productConnectionPools)))
+                .build();
     }
 }
@@ -0,0 +1,104 @@
+package com.example.chaos.monkey.shopping.gateway.cache;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductMediaTypes;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers the last decoded product list and its ETag per backend URL, so that requests can be sent with
+ * {@code If-None-Match} and a {@code 304 Not Modified} answer can reuse the list without decoding a body. Requests
+ * ask for the {@code startpage.wire-format} (Smile by default, see {@link ProductMediaTypes}).
+ *
+ * @author Benjamin Wilms
+ */
+@Component
+public class ProductETagCache {
+
+    private static final ParameterizedTypeReference<List<Product>> PRODUCT_LIST =
+            new ParameterizedTypeReference<List<Product>>() {
+            };
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final String accept;
+
+    public ProductETagCache(@Value("${startpage.wire-format:smile}") String wireFormat) {
+        this.accept = ProductMediaTypes.accept(wireFormat);
+    }
+
+    public List<Product> exchange(RestTemplate restTemplate, String url) {
+        Entry cached = entries.get(url);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT, accept);
+        if (cached != null) {
+            headers.setIfNoneMatch(cached.eTag);
+        }
+
+        ResponseEntity<List<Product>> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), PRODUCT_LIST);
+
+        if (response.getStatusCode() == HttpStatus.NOT_MODIFIED && cached != null) {
+            return cached.products;
+        }
+
+        store(url, response.getHeaders().getETag(), response.getBody());
+
+        return response.getBody();
+    }
+
+    public Mono<List<Product>> exchange(WebClient webClient, String url) {
+        Entry cached = entries.get(url);
+
+        WebClient.RequestHeadersSpec<?> request = webClient.get().uri(url).header(HttpHeaders.ACCEPT, accept);
+        if (cached != null) {
+            request = request.header(HttpHeaders.IF_NONE_MATCH, cached.eTag);
+        }
+
+        return request.exchange().flatMap(response -> {
+            if (response.statusCode() == HttpStatus.NOT_MODIFIED && cached != null) {
+                return response.bodyToMono(Void.class).then(Mono.just(cached.products));
+            } else if (response.statusCode().isError()) {
+                return response.bodyToMono(Void.class).then(Mono.error(WebClientResponseException.create(
+                        response.rawStatusCode(), response.statusCode().getReasonPhrase(),
+                        response.headers().asHttpHeaders(), new byte[0], null)));
+            }
+
+            return response.bodyToMono(PRODUCT_LIST)
+                    .doOnNext(products -> store(url, response.headers().asHttpHeaders().getETag(), products));
+        });
+    }
+
+    private void store(String url, String eTag, List<Product> products) {
+        if (eTag == null) {
+            entries.remove(url);
+        } else {
+            entries.put(url, new Entry(eTag, Collections.unmodifiableList(products)));
+        }
+    }
+
+    private static class Entry {
+
+        private final String eTag;
+        private final List<Product> products;
+
+        private Entry(String eTag, List<Product> products) {
+            this.eTag = eTag;
+            this.products = products;
+        }
+    }
+}
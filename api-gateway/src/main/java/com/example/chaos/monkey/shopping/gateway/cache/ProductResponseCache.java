@@ -0,0 +1,130 @@
+package com.example.chaos.monkey.shopping.gateway.cache;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import rx.Observable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Stale-while-revalidate cache in front of the Hystrix commands and the reactive backend calls of the startpage, with
+ * an entry per startpage mode and section (see {@link #key(String, String)}), so every mode keeps going through its
+ * own backend path.
+ * <p>
+ * Entries younger than the TTL are served directly. Older entries are still served (up to the max staleness) while
+ * a single background command refreshes them, so a slow or failing backend degrades to {@link ResponseType#CACHED}
+ * instead of {@link ResponseType#FALLBACK}. Only {@link ResponseType#REMOTE_SERVICE} responses are ever stored.
+ *
+ * @author Benjamin Wilms
+ */
+@Component
+public class ProductResponseCache {
+
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final Cache<String, Entry> cache;
+
+    public ProductResponseCache(MeterRegistry meterRegistry,
+                                @Value("${startpage.cache.enabled:true}") boolean enabled,
+                                @Value("${startpage.cache.ttl-millis:5000}") long ttlMillis,
+                                @Value("${startpage.cache.max-stale-millis:300000}") long maxStaleMillis,
+                                @Value("${startpage.cache.max-size:100}") long maxSize) {
+        this.enabled = enabled;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(maxStaleMillis, TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "startpage");
+    }
+
+    /**
+     * @return the entry of a section on the page of a startpage mode, e.g. {@code reactive/toys}
+     */
+    public static String key(String mode, String section) {
+        return mode + "/" + section;
+    }
+
+    public CompletableFuture<ProductResponse> get(String key, Supplier<Observable<ProductResponse>> commandFactory) {
+        if (!enabled) {
+            return toCompletableFuture(commandFactory.get());
+        }
+
+        Entry entry = cache.getIfPresent(key);
+
+        if (entry == null) {
+            return toCompletableFuture(commandFactory.get()
+                    .doOnNext(response -> store(key, response)));
+        }
+
+        if (System.nanoTime() - entry.fetchedAt > ttlNanos && entry.refreshing.compareAndSet(false, true)) {
+            commandFactory.get()
+                    .doAfterTerminate(() -> entry.refreshing.set(false))
+                    .subscribe(response -> store(key, response), t -> {
+                        // keep serving the stale entry
+                    });
+        }
+
+        return CompletableFuture.completedFuture(new ProductResponse(ResponseType.CACHED, entry.products));
+    }
+
+    public Mono<ProductResponse> getReactive(String key, Supplier<Mono<ProductResponse>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+
+        Entry entry = cache.getIfPresent(key);
+
+        if (entry == null) {
+            return loader.get().doOnNext(response -> store(key, response));
+        }
+
+        if (System.nanoTime() - entry.fetchedAt > ttlNanos && entry.refreshing.compareAndSet(false, true)) {
+            loader.get()
+                    .doFinally(signal -> entry.refreshing.set(false))
+                    .subscribe(response -> store(key, response), t -> {
+                        // keep serving the stale entry
+                    });
+        }
+
+        return Mono.just(new ProductResponse(ResponseType.CACHED, entry.products));
+    }
+
+    private static CompletableFuture<ProductResponse> toCompletableFuture(Observable<ProductResponse> observable) {
+        CompletableFuture<ProductResponse> future = new CompletableFuture<>();
+        observable.single().subscribe(future::complete, future::completeExceptionally);
+        return future;
+    }
+
+    private void store(String key, ProductResponse response) {
+        if (response.getResponseType() == ResponseType.REMOTE_SERVICE) {
+            cache.put(key, new Entry(Collections.unmodifiableList(response.getProducts())));
+        }
+    }
+
+    private static class Entry {
+
+        private final List<Product> products;
+        private final long fetchedAt = System.nanoTime();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(List<Product> products) {
+            this.products = products;
+        }
+    }
+}
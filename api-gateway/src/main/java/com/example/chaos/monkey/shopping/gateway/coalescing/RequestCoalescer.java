@@ -0,0 +1,80 @@
+package com.example.chaos.monkey.shopping.gateway.coalescing;
+
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import rx.Observable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for the Hystrix commands and reactive backend calls of the startpage: concurrent calls with the same
+ * key share one in-flight command or {@link Mono} instead of each sending an identical request. A flight ends with
+ * its result (or error), the next call after that starts a new one.
+ * <p>
+ * Unlike a {@link com.netflix.hystrix.HystrixCollapser} there is no batching window, a call only waits if an
+ * identical one is already running. Calls that joined a running flight are counted in {@code startpage.coalesced}.
+ *
+ * @author Benjamin Wilms
+ */
+@Component
+public class RequestCoalescer {
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final ConcurrentMap<String, Flight<Observable<?>>> commands = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Flight<Mono<ProductResponse>>> calls = new ConcurrentHashMap<>();
+
+    public RequestCoalescer(MeterRegistry meterRegistry,
+                            @Value("${startpage.coalescing.enabled:true}") boolean enabled) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param key identifies the call, calls with the same key have to emit the same type
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Observable<T> coalesce(String key, Supplier<Observable<T>> command) {
+        if (!enabled) {
+            return command.get();
+        }
+
+        return Observable.defer(() -> (Observable<T>) join(key, commands.computeIfAbsent(key, k -> {
+            Flight<Observable<?>> flight = new Flight<>();
+            flight.response = command.get().doAfterTerminate(() -> commands.remove(k, flight)).cache();
+            return flight;
+        })));
+    }
+
+    public Mono<ProductResponse> coalesceReactive(String key, Supplier<Mono<ProductResponse>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+
+        return Mono.defer(() -> join(key, calls.computeIfAbsent(key, k -> {
+            Flight<Mono<ProductResponse>> flight = new Flight<>();
+            flight.response = call.get().doFinally(signal -> calls.remove(k, flight)).cache();
+            return flight;
+        })));
+    }
+
+    private <T> T join(String key, Flight<T> flight) {
+        if (!flight.started.compareAndSet(false, true)) {
+            meterRegistry.counter("startpage.coalesced", "call", key).increment();
+        }
+        return flight.response;
+    }
+
+    private static class Flight<T> {
+
+        private final AtomicBoolean started = new AtomicBoolean();
+        // a waiter that unsubscribes does not cancel the flight for the others
+        private T response;
+    }
+}
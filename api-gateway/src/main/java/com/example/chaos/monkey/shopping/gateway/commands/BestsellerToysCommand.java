@@ -1,6 +1,7 @@
 package com.example.chaos.monkey.shopping.gateway.commands;
 
 import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.gateway.cache.ProductETagCache;
 import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
 import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
 import com.netflix.hystrix.*;
@@ -8,12 +9,9 @@ import com.netflix.hystrix.util.HystrixRollingNumberEvent;
 import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpMethod;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.Collections;
-import java.util.List;
 
 /**
  * @author Benjamin Wilms
@@ -23,10 +21,11 @@ public class BestsellerToysCommand extends HystrixCommand<ProductResponse> {
     private static final Logger log = LoggerFactory.getLogger(HotDealsCommand.class);
     private final RestTemplate restTemplate;
     private final String url;
+    private final ProductETagCache eTagCache;
 
 
     public BestsellerToysCommand(HystrixCommandGroupKey group, int timeout, RestTemplate restTemplate,
-                                 String url) {
+                                 String url, ProductETagCache eTagCache) {
 
         super(Setter.withGroupKey(group).andCommandPropertiesDefaults(HystrixCommandProperties.Setter().withExecutionTimeoutInMilliseconds(timeout))
                 .andThreadPoolKey(HystrixThreadPoolKey.Factory.asKey("toysThreadPool"))
@@ -35,13 +34,13 @@ public class BestsellerToysCommand extends HystrixCommand<ProductResponse> {
 
         this.restTemplate = restTemplate;
         this.url = url;
+        this.eTagCache = eTagCache;
     }
 
     protected ProductResponse run() throws Exception {
         ProductResponse response = new ProductResponse();
 
-        response.setProducts(restTemplate.exchange(url, HttpMethod.GET, null, new ParameterizedTypeReference<List<Product>>() {
-        }).getBody());
+        response.setProducts(eTagCache.exchange(restTemplate, url));
 
         response.setResponseType(ResponseType.REMOTE_SERVICE);
 
@@ -0,0 +1,93 @@
+package com.example.chaos.monkey.shopping.gateway.commands;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductSection;
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import com.netflix.hystrix.*;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fetches several startpage sections with one request to the {@code sections} endpoint of a catalogue service.
+ * Sections the service answered are {@link ResponseType#REMOTE_SERVICE}, sections it does not serve are left out,
+ * and the fallback is a {@link ResponseType#FALLBACK} for every requested section.
+ *
+ * @author Benjamin Wilms
+ */
+public class ProductSectionsCommand extends HystrixCommand<Map<String, ProductResponse>> {
+
+    private static final ParameterizedTypeReference<List<ProductSection>> SECTION_LIST =
+            new ParameterizedTypeReference<List<ProductSection>>() {
+            };
+
+    private final RestTemplate restTemplate;
+    private final String url;
+    private final String accept;
+    private final List<String> names;
+
+    public ProductSectionsCommand(HystrixCommandGroupKey group, int timeout, RestTemplate restTemplate,
+                                  String url, String accept, List<String> names) {
+
+        super(Setter.withGroupKey(group).andCommandPropertiesDefaults(HystrixCommandProperties.Setter().withExecutionTimeoutInMilliseconds(timeout))
+                .andThreadPoolKey(HystrixThreadPoolKey.Factory.asKey("productSectionsThreadPool"))
+                .andThreadPoolPropertiesDefaults(HystrixThreadPoolProperties.Setter()
+                        .withCoreSize(10).withMaximumSize(50).withAllowMaximumSizeToDivergeFromCoreSize(true).withMaxQueueSize(100)));
+
+        this.restTemplate = restTemplate;
+        this.url = url;
+        this.accept = accept;
+        this.names = names;
+    }
+
+    protected Map<String, ProductResponse> run() throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT, accept);
+        String uri = UriComponentsBuilder.fromHttpUrl(url).queryParam("names", String.join(",", names)).toUriString();
+
+        Map<String, ProductResponse> responses = new HashMap<>();
+        for (ProductSection section : restTemplate.exchange(uri, HttpMethod.GET, new HttpEntity<>(headers), SECTION_LIST).getBody()) {
+            if (section.getStatus() == ProductSection.Status.OK && section.getProducts() != null) {
+                responses.put(section.getName(), new ProductResponse(ResponseType.REMOTE_SERVICE, section.getProducts()));
+            }
+        }
+        return responses;
+    }
+
+    @Override
+    protected Map<String, ProductResponse> getFallback() {
+        return fallback(names);
+    }
+
+    /**
+     * @return a {@link ResponseType#FALLBACK} for every section
+     */
+    public static Map<String, ProductResponse> fallback(List<String> names) {
+        Map<String, ProductResponse> responses = new HashMap<>();
+        for (String name : names) {
+            responses.put(name, new ProductResponse(ResponseType.FALLBACK, Collections.<Product>emptyList()));
+        }
+        return responses;
+    }
+
+    /**
+     * @return {@link ResponseType#FALLBACK} for a fallback, {@link ResponseType#REMOTE_SERVICE} for an answered batch
+     */
+    public static ResponseType responseType(Map<String, ProductResponse> responses) {
+        for (ProductResponse response : responses.values()) {
+            if (response.getResponseType() != ResponseType.REMOTE_SERVICE) {
+                return response.getResponseType();
+            }
+        }
+        return ResponseType.REMOTE_SERVICE;
+    }
+}
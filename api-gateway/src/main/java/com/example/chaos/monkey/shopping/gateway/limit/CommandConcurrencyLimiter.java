@@ -0,0 +1,124 @@
+package com.example.chaos.monkey.shopping.gateway.limit;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import com.netflix.concurrency.limits.Limiter;
+import com.netflix.concurrency.limits.limit.Gradient2Limit;
+import com.netflix.concurrency.limits.limiter.SimpleLimiter;
+import com.netflix.hystrix.HystrixCommand;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import rx.Observable;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Adaptive concurrency limit in front of the Hystrix commands. The fixed thread pools and timeouts of the commands
+ * stay as the last line of defence, but the number of commands in flight per backend follows the measured round
+ * trip times (gradient of the short-term against the long-term RTT).
+ * <p>
+ * Calls above the limit are answered with {@link ResponseType#FALLBACK} right away instead of queueing in the
+ * command thread pool until they time out. Fallback and error responses count as dropped and lower the limit.
+ *
+ * @author Benjamin Wilms
+ */
+@Component
+public class CommandConcurrencyLimiter {
+
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, SimpleLimiter<Void>> limiters = new ConcurrentHashMap<>();
+
+    public CommandConcurrencyLimiter(MeterRegistry meterRegistry,
+                                     @Value("${startpage.concurrency-limit.enabled:true}") boolean enabled,
+                                     @Value("${startpage.concurrency-limit.initial-limit:20}") int initialLimit,
+                                     @Value("${startpage.concurrency-limit.min-limit:5}") int minLimit,
+                                     @Value("${startpage.concurrency-limit.max-limit:200}") int maxLimit) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    public Observable<ProductResponse> execute(String name, Supplier<HystrixCommand<ProductResponse>> commandFactory) {
+        return execute(name, commandFactory, ProductResponse::getResponseType,
+                () -> new ProductResponse(ResponseType.FALLBACK, Collections.<Product>emptyList()));
+    }
+
+    /**
+     * @param type     only {@link ResponseType#REMOTE_SERVICE} results count as successful calls
+     * @param rejected the result of a call above the limit
+     */
+    public <T> Observable<T> execute(String name, Supplier<HystrixCommand<T>> commandFactory,
+                                     Function<T, ResponseType> type, Supplier<T> rejected) {
+        if (!enabled) {
+            return Observable.defer(() -> commandFactory.get().toObservable());
+        }
+
+        SimpleLimiter<Void> limiter = limiters.computeIfAbsent(name, this::createLimiter);
+
+        return Observable.defer(() -> {
+            Optional<Limiter.Listener> acquired = limiter.acquire(null);
+
+            if (!acquired.isPresent()) {
+                meterRegistry.counter("startpage.concurrency.rejected", "backend", name).increment();
+                return Observable.just(rejected.get());
+            }
+
+            Limiter.Listener listener = acquired.get();
+            AtomicBoolean released = new AtomicBoolean();
+
+            return commandFactory.get().toObservable()
+                    .doOnNext(response -> {
+                        if (released.compareAndSet(false, true)) {
+                            if (type.apply(response) == ResponseType.REMOTE_SERVICE) {
+                                listener.onSuccess();
+                            } else {
+                                listener.onDropped();
+                            }
+                        }
+                    })
+                    .doOnError(t -> {
+                        if (released.compareAndSet(false, true)) {
+                            listener.onDropped();
+                        }
+                    })
+                    .doOnUnsubscribe(() -> {
+                        if (released.compareAndSet(false, true)) {
+                            listener.onIgnore();
+                        }
+                    });
+        });
+    }
+
+    private SimpleLimiter<Void> createLimiter(String name) {
+        SimpleLimiter<Void> limiter = SimpleLimiter.newBuilder()
+                .named(name)
+                .limit(Gradient2Limit.newBuilder()
+                        .initialLimit(initialLimit)
+                        .minLimit(minLimit)
+                        .maxConcurrency(maxLimit)
+                        .build())
+                .build();
+
+        Tags tags = Tags.of("backend", name);
+        meterRegistry.gauge("startpage.concurrency.limit", tags, limiter, SimpleLimiter::getLimit);
+        meterRegistry.gauge("startpage.concurrency.in.flight", tags, limiter, SimpleLimiter::getInflight);
+
+        return limiter;
+    }
+}
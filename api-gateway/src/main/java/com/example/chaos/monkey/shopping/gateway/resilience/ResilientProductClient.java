@@ -0,0 +1,96 @@
+package com.example.chaos.monkey.shopping.gateway.resilience;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.gateway.cache.ProductETagCache;
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.micrometer.CircuitBreakerMetrics;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Non-blocking counterpart of the Hystrix commands: every backend gets a reusable circuit breaker and a semaphore
+ * bulkhead instead of a thread pool, and the call itself runs on the {@link WebClient} event loop with a timeout.
+ * Like {@code getFallback()} of the commands, every failure, timeout or rejection results in a
+ * {@link ResponseType#FALLBACK} response.
+ *
+ * @author Benjamin Wilms
+ */
+@Component
+public class ResilientProductClient {
+
+    private final WebClient webClient;
+    private final ProductETagCache eTagCache;
+    private final MeterRegistry meterRegistry;
+    private final CircuitBreakerConfig circuitBreakerConfig;
+    private final BulkheadConfig bulkheadConfig;
+    private final Duration timeout;
+
+    private final ConcurrentMap<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    public ResilientProductClient(WebClient webClient, ProductETagCache eTagCache, MeterRegistry meterRegistry,
+                                  @Value("${startpage.reactive.timeout-millis:200}") long timeoutMillis,
+                                  @Value("${startpage.reactive.max-concurrent-calls:150}") int maxConcurrentCalls) {
+        this.webClient = webClient;
+        this.eTagCache = eTagCache;
+        this.meterRegistry = meterRegistry;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+
+        // Same thresholds as the Hystrix defaults: 50% errors out of at least 20 calls, 5 seconds open
+        this.circuitBreakerConfig = CircuitBreakerConfig.custom()
+                .failureRateThreshold(50)
+                .ringBufferSizeInClosedState(20)
+                .ringBufferSizeInHalfOpenState(10)
+                .waitDurationInOpenState(Duration.ofSeconds(5))
+                .build();
+
+        // Hystrix admitted 50 threads plus 100 queued calls per backend, without blocking a thread for either
+        this.bulkheadConfig = BulkheadConfig.custom()
+                .maxConcurrentCalls(maxConcurrentCalls)
+                .maxWaitTime(0)
+                .build();
+    }
+
+    public Mono<ProductResponse> getProducts(String name, String url) {
+        CircuitBreaker circuitBreaker = circuitBreakers.computeIfAbsent(name, this::createCircuitBreaker);
+        Bulkhead bulkhead = bulkheads.computeIfAbsent(name, this::createBulkhead);
+
+        return eTagCache.exchange(webClient, url)
+                .timeout(timeout)
+                .transform(CircuitBreakerOperator.of(circuitBreaker))
+                .transform(BulkheadOperator.of(bulkhead))
+                .map(products -> new ProductResponse(ResponseType.REMOTE_SERVICE, products))
+                .onErrorResume(t -> Mono.just(new ProductResponse(ResponseType.FALLBACK, Collections.<Product>emptyList())));
+    }
+
+    private CircuitBreaker createCircuitBreaker(String name) {
+        CircuitBreaker circuitBreaker = CircuitBreaker.of(name, circuitBreakerConfig);
+        CircuitBreakerMetrics.ofIterable(Collections.singletonList(circuitBreaker)).bindTo(meterRegistry);
+        return circuitBreaker;
+    }
+
+    private Bulkhead createBulkhead(String name) {
+        Bulkhead bulkhead = Bulkhead.of(name, bulkheadConfig);
+        Gauge.builder("resilience4j.bulkhead.available_concurrent_calls", bulkhead,
+                b -> b.getMetrics().getAvailableConcurrentCalls())
+                .tag("name", name)
+                .register(meterRegistry);
+        return bulkhead;
+    }
+}
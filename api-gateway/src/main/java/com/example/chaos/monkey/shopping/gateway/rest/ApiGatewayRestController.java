@@ -1,12 +1,20 @@
 package com.example.chaos.monkey.shopping.gateway.rest;
 
 import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductMediaTypes;
+import com.example.chaos.monkey.shopping.gateway.cache.ProductETagCache;
+import com.example.chaos.monkey.shopping.gateway.cache.ProductResponseCache;
+import com.example.chaos.monkey.shopping.gateway.coalescing.RequestCoalescer;
 import com.example.chaos.monkey.shopping.gateway.commands.BestsellerFashionCommand;
 import com.example.chaos.monkey.shopping.gateway.commands.BestsellerToysCommand;
 import com.example.chaos.monkey.shopping.gateway.commands.HotDealsCommand;
+import com.example.chaos.monkey.shopping.gateway.commands.ProductSectionsCommand;
 import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
 import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
 import com.example.chaos.monkey.shopping.gateway.domain.Startpage;
+import com.example.chaos.monkey.shopping.gateway.limit.CommandConcurrencyLimiter;
+import com.example.chaos.monkey.shopping.gateway.metrics.StartpageMetrics;
+import com.example.chaos.monkey.shopping.gateway.resilience.ResilientProductClient;
 import com.netflix.discovery.EurekaClient;
 import com.netflix.hystrix.HystrixCommandGroupKey;
 import com.netflix.hystrix.exception.HystrixRuntimeException;
@@ -16,10 +24,19 @@ import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.client.RestTemplate;
+import reactor.core.publisher.Mono;
+import rx.Observable;
+import rx.subjects.ReplaySubject;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * @author Benjamin Wilms
@@ -38,32 +55,138 @@ public class ApiGatewayRestController {
     @Value("${rest.endpoint.hotdeals}")
     private String urlHotDeals;
 
+    @Value("${rest.endpoint.sections}")
+    private String urlSections;
+
+    @Value("${startpage.wire-format:smile}")
+    private String wireFormat;
+
     private HystrixCommandGroupKey hotdealsCommandKey;
     private HystrixCommandGroupKey toysCommandKey;
     private HystrixCommandGroupKey fashionCommandKey;
+    private HystrixCommandGroupKey sectionsCommandKey;
+
+    private ProductResponseCache productResponseCache;
+    private ProductETagCache productETagCache;
+    private ResilientProductClient resilientProductClient;
+    private CommandConcurrencyLimiter concurrencyLimiter;
+    private StartpageMetrics startpageMetrics;
+    private RequestCoalescer requestCoalescer;
 
-    public ApiGatewayRestController(RestTemplate loadBalancedRestTemplate) {
+    public ApiGatewayRestController(RestTemplate loadBalancedRestTemplate, ProductResponseCache productResponseCache,
+                                    ProductETagCache productETagCache, ResilientProductClient resilientProductClient,
+                                    CommandConcurrencyLimiter concurrencyLimiter, StartpageMetrics startpageMetrics,
+                                    RequestCoalescer requestCoalescer) {
         this.restTemplate = loadBalancedRestTemplate;
+        this.productResponseCache = productResponseCache;
+        this.productETagCache = productETagCache;
+        this.resilientProductClient = resilientProductClient;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.startpageMetrics = startpageMetrics;
+        this.requestCoalescer = requestCoalescer;
 
         hotdealsCommandKey = HystrixCommandGroupKey.Factory.asKey("hotdeals");
         toysCommandKey = HystrixCommandGroupKey.Factory.asKey("toys");
         fashionCommandKey = HystrixCommandGroupKey.Factory.asKey("fashion");
+        sectionsCommandKey = HystrixCommandGroupKey.Factory.asKey("sections");
     }
 
-    @GetMapping("/startpage")
+    /**
+     * The page built on the calling thread, which waits for the three commands. Served as {@code /startpage} by the
+     * {@link SyncStartpageController} unless {@code startpage.async} is set.
+     */
     public Startpage getStartpage() {
-        Startpage page = new Startpage();
-        long start = System.currentTimeMillis();
+        long start = System.nanoTime();
 
         // Create Futures for requesting results
-        Future<ProductResponse> bestsellerFashionFuture = getBestsellerFashion();
-        Future<ProductResponse> bestsellerToysFuture = getBestsellerToys();
-        Future<ProductResponse> hotDealsFuture = getHotDeals();
+        CompletableFuture<ProductResponse> bestsellerFashionFuture = getBestsellerFashion();
+        CompletableFuture<ProductResponse> bestsellerToysFuture = getBestsellerToys();
+        CompletableFuture<ProductResponse> hotDealsFuture = getHotDeals();
 
         // Get Responses from Futures
-        page.setFashionResponse(extractResponse(bestsellerFashionFuture));
-        page.setToysResponse(extractResponse(bestsellerToysFuture));
-        page.setHotDealsResponse(extractResponse(hotDealsFuture));
+        return createStartpage("hystrix", start, extractResponse(bestsellerFashionFuture),
+                extractResponse(bestsellerToysFuture), extractResponse(hotDealsFuture));
+    }
+
+    /**
+     * Same page as {@link #getStartpage()}, but completed from the Hystrix callbacks, so the servlet thread is
+     * released in the meantime. Served as {@code /startpage} by the {@link AsyncStartpageController} if
+     * {@code startpage.async} is set.
+     */
+    public CompletableFuture<Startpage> getStartpageAsync() {
+        long start = System.nanoTime();
+
+        CompletableFuture<ProductResponse> fashion = getBestsellerFashion().exceptionally(t -> errorResponse());
+        CompletableFuture<ProductResponse> toys = getBestsellerToys().exceptionally(t -> errorResponse());
+        CompletableFuture<ProductResponse> hotDeals = getHotDeals().exceptionally(t -> errorResponse());
+
+        return CompletableFuture.allOf(fashion, toys, hotDeals)
+                .thenApply(v -> createStartpage("hystrix", start, fashion.join(), toys.join(), hotDeals.join()));
+    }
+
+    /**
+     * Same page as {@link #getStartpage()}, but the backends are called without Hystrix thread pools and the
+     * servlet thread is released until all three responses are there.
+     */
+    @GetMapping("/startpage/reactive")
+    public Mono<Startpage> getStartpageReactive() {
+        long start = System.nanoTime();
+
+        Mono<ProductResponse> fashion = getProductsReactive("fashion", urlFashion);
+        Mono<ProductResponse> toys = getProductsReactive("toys", urlToys);
+        Mono<ProductResponse> hotDeals = getProductsReactive("hotdeals", urlHotDeals);
+
+        return Mono.zip(fashion, toys, hotDeals)
+                .map(t -> createStartpage("reactive", start, t.getT1(), t.getT2(), t.getT3()));
+    }
+
+    /**
+     * Same page as {@link #getStartpage()}, but the sections whose cache lookup invoked the loader are fetched with
+     * one {@link ProductSectionsCommand} from the combined catalogue edge, sent once all three have been looked up. A
+     * section the edge does not serve falls back to its own command, a failed or shed batch is a
+     * {@link ResponseType#FALLBACK} for every section that waited for it.
+     */
+    @GetMapping("/startpage/batch")
+    public CompletableFuture<Startpage> getStartpageBatch() {
+        long start = System.nanoTime();
+
+        List<String> names = new ArrayList<>(3);
+        ReplaySubject<Map<String, ProductResponse>> batch = ReplaySubject.create();
+
+        CompletableFuture<ProductResponse> fashion = productResponseCache.get(ProductResponseCache.key("batch", "fashion"),
+                () -> batchSection(batch, names, "fashion", this::bestsellerFashion)).exceptionally(t -> errorResponse());
+        CompletableFuture<ProductResponse> toys = productResponseCache.get(ProductResponseCache.key("batch", "toys"),
+                () -> batchSection(batch, names, "toys", this::bestsellerToys)).exceptionally(t -> errorResponse());
+        CompletableFuture<ProductResponse> hotDeals = productResponseCache.get(ProductResponseCache.key("batch", "hotdeals"),
+                () -> batchSection(batch, names, "hotdeals", this::hotDeals)).exceptionally(t -> errorResponse());
+
+        if (!names.isEmpty()) {
+            productSections(names).subscribe(batch);
+        }
+
+        return CompletableFuture.allOf(fashion, toys, hotDeals)
+                .thenApply(v -> createStartpage("batch", start, fashion.join(), toys.join(), hotDeals.join()));
+    }
+
+    private Observable<ProductResponse> batchSection(Observable<Map<String, ProductResponse>> batch, List<String> names,
+                                                     String section, Supplier<Observable<ProductResponse>> command) {
+        names.add(section);
+        return batch.flatMap(responses -> responses.containsKey(section)
+                ? Observable.just(responses.get(section))
+                : command.get());
+    }
+
+    private Mono<ProductResponse> getProductsReactive(String name, String url) {
+        return productResponseCache.getReactive(ProductResponseCache.key("reactive", name), () -> requestCoalescer.coalesceReactive(url,
+                () -> startpageMetrics.time("reactive", name, resilientProductClient.getProducts(name, url))));
+    }
+
+    private Startpage createStartpage(String mode, long start, ProductResponse fashion, ProductResponse toys,
+                                      ProductResponse hotDeals) {
+        Startpage page = new Startpage();
+        page.setFashionResponse(fashion);
+        page.setToysResponse(toys);
+        page.setHotDealsResponse(hotDeals);
 
         // Summary
         page.setStatusFashion(page.getFashionResponse().getResponseType().name());
@@ -71,7 +194,8 @@ public class ApiGatewayRestController {
         page.setStatusHotDeals(page.getHotDealsResponse().getResponseType().name());
 
         // Request duration
-        page.setDuration(System.currentTimeMillis() - start);
+        page.setDuration(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        startpageMetrics.page(mode, page, start);
 
         return page;
     }
@@ -80,24 +204,55 @@ public class ApiGatewayRestController {
         try {
             return responseFuture.get();
         } catch (InterruptedException | ExecutionException | HystrixRuntimeException e) {
-            return new ProductResponse(ResponseType.ERROR, Collections.<Product>emptyList());
+            return errorResponse();
         }
     }
 
+    private ProductResponse errorResponse() {
+        return new ProductResponse(ResponseType.ERROR, Collections.<Product>emptyList());
+    }
+
 
-    private Future<ProductResponse> getHotDeals() {
+    private CompletableFuture<ProductResponse> getHotDeals() {
 
-        return new HotDealsCommand(hotdealsCommandKey, 200, restTemplate, urlHotDeals).queue();
+        return productResponseCache.get(ProductResponseCache.key("hystrix", "hotdeals"), this::hotDeals);
     }
 
-    private Future<ProductResponse> getBestsellerToys() {
+    private CompletableFuture<ProductResponse> getBestsellerToys() {
 
-        return new BestsellerToysCommand(toysCommandKey, 200, restTemplate, urlToys).queue();
+        return productResponseCache.get(ProductResponseCache.key("hystrix", "toys"), this::bestsellerToys);
     }
 
-    private Future<ProductResponse> getBestsellerFashion() {
+    private CompletableFuture<ProductResponse> getBestsellerFashion() {
+
+        return productResponseCache.get(ProductResponseCache.key("hystrix", "fashion"), this::bestsellerFashion);
+    }
+
+    private Observable<Map<String, ProductResponse>> productSections(List<String> names) {
+        return requestCoalescer.coalesce("sections/" + String.join(",", names),
+                () -> startpageMetrics.time("batch", "sections", concurrencyLimiter.execute("sections",
+                        () -> new ProductSectionsCommand(sectionsCommandKey, 200, restTemplate, urlSections,
+                                ProductMediaTypes.accept(wireFormat), names),
+                        ProductSectionsCommand::responseType, () -> ProductSectionsCommand.fallback(names)),
+                        ProductSectionsCommand::responseType));
+    }
+
+    private Observable<ProductResponse> hotDeals() {
+        return requestCoalescer.coalesce("hotdeals",
+                () -> startpageMetrics.time("hystrix", "hotdeals", concurrencyLimiter.execute("hotdeals",
+                        () -> new HotDealsCommand(hotdealsCommandKey, 200, restTemplate, urlHotDeals, productETagCache))));
+    }
+
+    private Observable<ProductResponse> bestsellerToys() {
+        return requestCoalescer.coalesce("toys",
+                () -> startpageMetrics.time("hystrix", "toys", concurrencyLimiter.execute("toys",
+                        () -> new BestsellerToysCommand(toysCommandKey, 200, restTemplate, urlToys, productETagCache))));
+    }
 
-        return new BestsellerFashionCommand(fashionCommandKey, 200, restTemplate, urlFashion).queue();
+    private Observable<ProductResponse> bestsellerFashion() {
+        return requestCoalescer.coalesce("fashion",
+                () -> startpageMetrics.time("hystrix", "fashion", concurrencyLimiter.execute("fashion",
+                        () -> new BestsellerFashionCommand(fashionCommandKey, 200, restTemplate, urlFashion, productETagCache))));
     }
 
 }
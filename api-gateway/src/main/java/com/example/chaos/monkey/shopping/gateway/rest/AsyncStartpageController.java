@@ -0,0 +1,30 @@
+package com.example.chaos.monkey.shopping.gateway.rest;
+
+import com.example.chaos.monkey.shopping.gateway.domain.Startpage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@code /startpage} as a servlet async request that is completed from the Hystrix callbacks, if
+ * {@code startpage.async} is set.
+ *
+ * @author Benjamin Wilms
+ */
+@RestController
+@ConditionalOnProperty(name = "startpage.async", havingValue = "true")
+public class AsyncStartpageController {
+
+    private final ApiGatewayRestController startpage;
+
+    public AsyncStartpageController(ApiGatewayRestController startpage) {
+        this.startpage = startpage;
+    }
+
+    @GetMapping("/startpage")
+    public CompletableFuture<Startpage> getStartpage() {
+        return startpage.getStartpageAsync();
+    }
+}
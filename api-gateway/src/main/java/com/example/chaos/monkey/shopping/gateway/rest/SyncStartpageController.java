@@ -0,0 +1,28 @@
+package com.example.chaos.monkey.shopping.gateway.rest;
+
+import com.example.chaos.monkey.shopping.gateway.domain.Startpage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * {@code /startpage} answered on the servlet thread, without an async dispatch. The default unless
+ * {@code startpage.async} is set.
+ *
+ * @author Benjamin Wilms
+ */
+@RestController
+@ConditionalOnProperty(name = "startpage.async", havingValue = "false", matchIfMissing = true)
+public class SyncStartpageController {
+
+    private final ApiGatewayRestController startpage;
+
+    public SyncStartpageController(ApiGatewayRestController startpage) {
+        this.startpage = startpage;
+    }
+
+    @GetMapping("/startpage")
+    public Startpage getStartpage() {
+        return startpage.getStartpage();
+    }
+}
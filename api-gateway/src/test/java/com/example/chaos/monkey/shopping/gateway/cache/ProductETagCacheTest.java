@@ -0,0 +1,119 @@
+package com.example.chaos.monkey.shopping.gateway.cache;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class ProductETagCacheTest {
+
+    private static final String URL = "http://localhost:8082/toys/bestseller";
+    private static final String BODY = "[{\"id\":1,\"name\":\"LEGO Star Wars Yodas Hut\",\"category\":\"TOYS\"}]";
+
+    private final List<Product> toys = Collections.singletonList(new Product(1, "LEGO Star Wars Yodas Hut", ProductCategory.TOYS));
+
+    private final ProductETagCache cache = new ProductETagCache("json");
+
+    @Test
+    public void notModifiedReusesTheCachedList() {
+        RestTemplate restTemplate = new RestTemplate();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
+        server.expect(requestTo(URL))
+                .andExpect(header(HttpHeaders.ACCEPT, "application/json"))
+                .andRespond(withSuccess(BODY, MediaType.APPLICATION_JSON).headers(eTag("\"1\"")));
+        server.expect(requestTo(URL))
+                .andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"1\""))
+                .andRespond(withStatus(HttpStatus.NOT_MODIFIED).headers(eTag("\"1\"")));
+
+        List<Product> first = cache.exchange(restTemplate, URL);
+        List<Product> second = cache.exchange(restTemplate, URL);
+
+        assertEquals(toys, first);
+        assertEquals(toys, second);
+        server.verify();
+    }
+
+    @Test
+    public void responseWithoutETagIsNotCached() {
+        RestTemplate restTemplate = new RestTemplate();
+        MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
+        server.expect(requestTo(URL)).andRespond(withSuccess(BODY, MediaType.APPLICATION_JSON).headers(eTag("\"1\"")));
+        server.expect(requestTo(URL)).andRespond(withSuccess(BODY, MediaType.APPLICATION_JSON));
+        server.expect(requestTo(URL))
+                .andExpect(request -> assertNull(request.getHeaders().getFirst(HttpHeaders.IF_NONE_MATCH)))
+                .andRespond(withSuccess(BODY, MediaType.APPLICATION_JSON));
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(toys, cache.exchange(restTemplate, URL));
+        }
+        server.verify();
+    }
+
+    @Test
+    public void notModifiedReusesTheCachedListReactively() {
+        List<String> ifNoneMatch = new ArrayList<>();
+        WebClient webClient = webClient(request -> {
+            ifNoneMatch.add(request.headers().getFirst(HttpHeaders.IF_NONE_MATCH));
+            return ifNoneMatch.size() == 1
+                    ? ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .header(HttpHeaders.ETAG, "\"1\"")
+                    .body(BODY).build()
+                    : ClientResponse.create(HttpStatus.NOT_MODIFIED).header(HttpHeaders.ETAG, "\"1\"").build();
+        });
+
+        assertEquals(toys, cache.exchange(webClient, URL).block(Duration.ofSeconds(1)));
+        assertEquals(toys, cache.exchange(webClient, URL).block(Duration.ofSeconds(1)));
+        assertEquals(2, ifNoneMatch.size());
+        assertNull(ifNoneMatch.get(0));
+        assertEquals("\"1\"", ifNoneMatch.get(1));
+    }
+
+    @Test
+    public void errorStatusIsAnErrorReactively() {
+        WebClient webClient = webClient(request -> ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+
+        try {
+            cache.exchange(webClient, URL).block(Duration.ofSeconds(1));
+            fail("503 was not an error");
+        } catch (WebClientResponseException expected) {
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, expected.getStatusCode());
+        }
+    }
+
+    private static WebClient webClient(Function<ClientRequest, ClientResponse> backend) {
+        return WebClient.builder().exchangeFunction(request -> Mono.fromCallable(() -> backend.apply(request))).build();
+    }
+
+    private static HttpHeaders eTag(String eTag) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(eTag);
+        return headers;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.chaos.monkey.shopping.gateway.cache;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import rx.Observable;
+import rx.subjects.PublishSubject;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class ProductResponseCacheTest {
+
+    private final ProductResponse remote = new ProductResponse(ResponseType.REMOTE_SERVICE,
+            Collections.singletonList(new Product(1, "LEGO Star Wars Yodas Hut", ProductCategory.TOYS)));
+
+    private final ProductResponse fallback = new ProductResponse(ResponseType.FALLBACK, Collections.emptyList());
+
+    @Test
+    public void servesCachedResponseWithinTtl() {
+        ProductResponseCache cache = new ProductResponseCache(new SimpleMeterRegistry(), true, 60000, 60000, 10);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals(ResponseType.REMOTE_SERVICE, cache.get("hystrix/toys",
+                () -> Observable.fromCallable(() -> { calls.incrementAndGet(); return remote; })).join().getResponseType());
+
+        ProductResponse cached = cache.get("hystrix/toys",
+                () -> Observable.fromCallable(() -> { calls.incrementAndGet(); return remote; })).join();
+        cache.getReactive("reactive/toys", () -> Mono.just(remote)).block();
+        ProductResponse cachedReactive = cache.getReactive("reactive/toys",
+                () -> Mono.fromCallable(() -> { calls.incrementAndGet(); return remote; })).block();
+
+        assertEquals(ResponseType.CACHED, cached.getResponseType());
+        assertEquals(remote.getProducts(), cached.getProducts());
+        assertEquals(ResponseType.CACHED, cachedReactive.getResponseType());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void staleResponseIsServedWhileOneCommandRefreshesIt() {
+        ProductResponseCache cache = new ProductResponseCache(new SimpleMeterRegistry(), true, 0, 60000, 10);
+        cache.get("hystrix/toys", () -> Observable.just(remote)).join();
+
+        AtomicInteger refreshes = new AtomicInteger();
+        PublishSubject<ProductResponse> refresh = PublishSubject.create();
+        for (int i = 0; i < 5; i++) {
+            ProductResponse stale = cache.get("hystrix/toys", () -> {
+                refreshes.incrementAndGet();
+                return refresh;
+            }).join();
+            assertEquals(ResponseType.CACHED, stale.getResponseType());
+            assertEquals(remote.getProducts(), stale.getProducts());
+        }
+        assertEquals(1, refreshes.get());
+
+        // once the refresh is done the next stale read refreshes again
+        refresh.onNext(remote);
+        refresh.onCompleted();
+        cache.get("hystrix/toys", () -> {
+            refreshes.incrementAndGet();
+            return Observable.just(remote);
+        }).join();
+        assertEquals(2, refreshes.get());
+    }
+
+    @Test
+    public void failedRefreshKeepsTheStaleResponse() {
+        ProductResponseCache cache = new ProductResponseCache(new SimpleMeterRegistry(), true, 0, 60000, 10);
+        cache.get("hystrix/toys", () -> Observable.just(remote)).join();
+        cache.getReactive("reactive/toys", () -> Mono.just(remote)).block();
+
+        cache.get("hystrix/toys", () -> Observable.error(new IllegalStateException("backend down"))).join();
+        cache.get("hystrix/toys", () -> Observable.just(fallback)).join();
+        cache.getReactive("reactive/toys", () -> Mono.error(new IllegalStateException("backend down"))).block();
+
+        ProductResponse stale = cache.get("hystrix/toys", () -> Observable.just(fallback)).join();
+        assertEquals(ResponseType.CACHED, stale.getResponseType());
+        assertEquals(remote.getProducts(), stale.getProducts());
+        assertEquals(ResponseType.CACHED,
+                cache.getReactive("reactive/toys", () -> Mono.just(fallback)).block().getResponseType());
+    }
+
+    @Test
+    public void doesNotStoreFallbackResponses() {
+        ProductResponseCache cache = new ProductResponseCache(new SimpleMeterRegistry(), true, 60000, 60000, 10);
+
+        assertEquals(ResponseType.FALLBACK, cache.get("hystrix/toys", () -> Observable.just(fallback)).join().getResponseType());
+
+        assertEquals(ResponseType.REMOTE_SERVICE,
+                cache.get("hystrix/toys", () -> Observable.just(remote)).join().getResponseType());
+    }
+
+    @Test
+    public void modesHaveTheirOwnEntries() {
+        ProductResponseCache cache = new ProductResponseCache(new SimpleMeterRegistry(), true, 60000, 60000, 10);
+        cache.getReactive(ProductResponseCache.key("reactive", "toys"), () -> Mono.just(remote)).block();
+
+        assertEquals(ResponseType.REMOTE_SERVICE, cache.get(ProductResponseCache.key("hystrix", "toys"),
+                () -> Observable.just(remote)).join().getResponseType());
+    }
+}
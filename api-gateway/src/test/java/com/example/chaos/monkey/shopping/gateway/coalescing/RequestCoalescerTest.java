@@ -0,0 +1,114 @@
+package com.example.chaos.monkey.shopping.gateway.coalescing;
+
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import rx.Observable;
+import rx.observers.TestSubscriber;
+import rx.subjects.PublishSubject;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class RequestCoalescerTest {
+
+    private final ProductResponse response = new ProductResponse(ResponseType.REMOTE_SERVICE, Collections.emptyList());
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RequestCoalescer coalescer = new RequestCoalescer(meterRegistry, true);
+
+    @Test
+    public void concurrentCommandsShareOneFlight() {
+        AtomicInteger calls = new AtomicInteger();
+        PublishSubject<ProductResponse> command = PublishSubject.create();
+
+        List<TestSubscriber<ProductResponse>> waiters = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            TestSubscriber<ProductResponse> waiter = new TestSubscriber<>();
+            coalescer.coalesce("toys", () -> {
+                calls.incrementAndGet();
+                return command;
+            }).subscribe(waiter);
+            waiters.add(waiter);
+        }
+
+        command.onNext(response);
+        command.onCompleted();
+
+        assertEquals(1, calls.get());
+        for (TestSubscriber<ProductResponse> waiter : waiters) {
+            waiter.assertValue(response);
+            waiter.assertCompleted();
+        }
+        assertEquals(99, meterRegistry.counter("startpage.coalesced", "call", "toys").count(), 0);
+    }
+
+    @Test
+    public void nextCommandAfterFlightStartsANewOne() {
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            coalescer.coalesce("toys", () -> {
+                calls.incrementAndGet();
+                return Observable.error(new IllegalStateException());
+            }).onErrorResumeNext(Observable.empty()).toBlocking().subscribe();
+        }
+
+        assertEquals(3, calls.get());
+        assertEquals(0, meterRegistry.counter("startpage.coalesced", "call", "toys").count(), 0);
+    }
+
+    @Test
+    public void concurrentReactiveCallsShareOneFlight() {
+        AtomicInteger calls = new AtomicInteger();
+        MonoProcessor<ProductResponse> backend = MonoProcessor.create();
+
+        List<MonoProcessor<ProductResponse>> waiters = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            waiters.add(coalescer.coalesceReactive("toys", () -> {
+                calls.incrementAndGet();
+                return backend;
+            }).toProcessor());
+        }
+
+        backend.onNext(response);
+
+        assertEquals(1, calls.get());
+        for (MonoProcessor<ProductResponse> waiter : waiters) {
+            assertSame(response, waiter.block(Duration.ofSeconds(1)));
+        }
+
+        coalescer.coalesceReactive("toys", () -> {
+            calls.incrementAndGet();
+            return Mono.just(response);
+        }).block(Duration.ofSeconds(1));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void disabledCoalescerCallsEveryTime() {
+        RequestCoalescer disabled = new RequestCoalescer(meterRegistry, false);
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            disabled.coalesce("toys", () -> {
+                calls.incrementAndGet();
+                return Observable.never();
+            }).subscribe();
+        }
+
+        assertEquals(3, calls.get());
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.chaos.monkey.shopping.gateway.commands;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class ProductSectionsCommandTest {
+
+    private static final String URL = "http://localhost:8083/hotdeals/sections";
+
+    private final HystrixCommandGroupKey group = HystrixCommandGroupKey.Factory.asKey("sections");
+    private final RestTemplate restTemplate = new RestTemplate();
+    private final MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).build();
+
+    @Test
+    public void servedSectionsAreRemoteServiceResponses() {
+        server.expect(requestTo(URL + "?names=hotdeals,toys"))
+                .andExpect(header(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE))
+                .andRespond(withSuccess("[{\"name\":\"hotdeals\",\"status\":\"OK\",\"products\":"
+                        + "[{\"id\":1,\"name\":\"LEGO Star Wars Yodas Hut\",\"category\":\"TOYS\"}]},"
+                        + "{\"name\":\"toys\",\"status\":\"UNAVAILABLE\",\"products\":[]}]", MediaType.APPLICATION_JSON));
+
+        Map<String, ProductResponse> responses = command(1000).execute();
+
+        assertEquals(1, responses.size());
+        assertEquals(ResponseType.REMOTE_SERVICE, responses.get("hotdeals").getResponseType());
+        assertEquals(Collections.singletonList(new Product(1, "LEGO Star Wars Yodas Hut", ProductCategory.TOYS)),
+                responses.get("hotdeals").getProducts());
+        assertFalse(responses.containsKey("toys"));
+        server.verify();
+    }
+
+    @Test
+    public void failedRequestFallsBackForEverySection() {
+        server.expect(requestTo(URL + "?names=hotdeals,toys")).andRespond(withServerError());
+
+        Map<String, ProductResponse> responses = command(1000).execute();
+
+        assertEquals(2, responses.size());
+        assertEquals(ResponseType.FALLBACK, responses.get("hotdeals").getResponseType());
+        assertEquals(ResponseType.FALLBACK, responses.get("toys").getResponseType());
+    }
+
+    private ProductSectionsCommand command(int timeout) {
+        return new ProductSectionsCommand(group, timeout, restTemplate, URL, MediaType.APPLICATION_JSON_VALUE,
+                Arrays.asList("hotdeals", "toys"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.chaos.monkey.shopping.gateway.limit;
+
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import com.netflix.hystrix.HystrixCommand;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import rx.Observable;
+import rx.Subscription;
+import rx.subjects.PublishSubject;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class CommandConcurrencyLimiterTest {
+
+    private final ProductResponse remote = new ProductResponse(ResponseType.REMOTE_SERVICE, Collections.emptyList());
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CommandConcurrencyLimiter limiter = new CommandConcurrencyLimiter(meterRegistry, true, 1, 1, 1);
+
+    @Test
+    public void shedsCommandsAboveLimit() {
+        AtomicInteger executed = new AtomicInteger();
+        PublishSubject<ProductResponse> running = PublishSubject.create();
+
+        limiter.execute("toys", () -> command(executed, running)).subscribe();
+
+        ProductResponse shed = limiter.execute("toys", () -> command(executed, Observable.just(remote)))
+                .toBlocking().single();
+
+        assertEquals(1, executed.get());
+        assertEquals(ResponseType.FALLBACK, shed.getResponseType());
+        assertEquals(1, meterRegistry.counter("startpage.concurrency.rejected", "backend", "toys").count(), 0);
+        assertEquals(1, meterRegistry.get("startpage.concurrency.in.flight").tag("backend", "toys").gauge().value(), 0);
+
+        // limits are per backend
+        assertEquals(ResponseType.REMOTE_SERVICE, limiter.execute("fashion", () -> command(executed, Observable.just(remote)))
+                .toBlocking().single().getResponseType());
+
+        // the permit is released with the response of the running command
+        running.onNext(remote);
+        running.onCompleted();
+
+        assertEquals(ResponseType.REMOTE_SERVICE, limiter.execute("toys", () -> command(executed, Observable.just(remote)))
+                .toBlocking().single().getResponseType());
+        assertEquals(3, executed.get());
+    }
+
+    @Test
+    public void unsubscribingReleasesThePermit() {
+        AtomicInteger executed = new AtomicInteger();
+
+        Subscription pending = limiter.execute("toys", () -> command(executed, Observable.never())).subscribe();
+        pending.unsubscribe();
+
+        assertEquals(ResponseType.REMOTE_SERVICE, limiter.execute("toys", () -> command(executed, Observable.just(remote)))
+                .toBlocking().single().getResponseType());
+        assertEquals(0, meterRegistry.get("startpage.concurrency.in.flight").tag("backend", "toys").gauge().value(), 0);
+    }
+
+    @Test
+    public void disabledLimiterRunsEveryCommand() {
+        CommandConcurrencyLimiter disabled = new CommandConcurrencyLimiter(meterRegistry, false, 1, 1, 1);
+        AtomicInteger executed = new AtomicInteger();
+
+        disabled.execute("toys", () -> command(executed, Observable.never())).subscribe();
+
+        assertEquals(ResponseType.REMOTE_SERVICE, disabled.execute("toys", () -> command(executed, Observable.just(remote)))
+                .toBlocking().single().getResponseType());
+        assertEquals(2, executed.get());
+    }
+
+    private static HystrixCommand<ProductResponse> command(AtomicInteger executed, Observable<ProductResponse> response) {
+        return new HystrixCommand<ProductResponse>(HystrixCommandGroupKey.Factory.asKey("test")) {
+
+            @Override
+            protected ProductResponse run() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Observable<ProductResponse> toObservable() {
+                executed.incrementAndGet();
+                return response;
+            }
+        };
+    }
+}
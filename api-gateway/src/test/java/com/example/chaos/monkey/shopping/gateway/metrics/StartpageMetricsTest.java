@@ -0,0 +1,90 @@
+package com.example.chaos.monkey.shopping.gateway.metrics;
+
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import com.example.chaos.monkey.shopping.gateway.domain.Startpage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import rx.Observable;
+
+import java.util.Collections;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class StartpageMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StartpageMetrics metrics = new StartpageMetrics(meterRegistry);
+
+    @Test
+    public void backendCallsAreTimedPerType() {
+        metrics.time("hystrix", "toys", Observable.just(response(ResponseType.REMOTE_SERVICE))).toBlocking().single();
+        metrics.time("hystrix", "toys", Observable.just(response(ResponseType.FALLBACK))).toBlocking().single();
+        metrics.time("reactive", "toys", Mono.just(response(ResponseType.REMOTE_SERVICE))).block();
+
+        assertEquals(1, timerCount("hystrix", "toys", ResponseType.REMOTE_SERVICE));
+        assertEquals(1, timerCount("hystrix", "toys", ResponseType.FALLBACK));
+        assertEquals(1, timerCount("reactive", "toys", ResponseType.REMOTE_SERVICE));
+        assertEquals(1, failures("hystrix", "fallback"), 0);
+    }
+
+    @Test
+    public void errorsAndTimeoutsAreCountedAsFailures() {
+        metrics.time("reactive", "toys", Mono.<ProductResponse>error(new TimeoutException()))
+                .onErrorResume(t -> Mono.empty()).block();
+        metrics.time("reactive", "toys", Mono.empty()).block();
+        metrics.time("hystrix", "toys", Observable.<ProductResponse>error(new IllegalStateException()))
+                .onErrorResumeNext(Observable.empty()).toBlocking().subscribe();
+
+        assertEquals(1, failures("reactive", "timeout"), 0);
+        assertEquals(1, failures("reactive", "error"), 0);
+        assertEquals(1, failures("hystrix", "error"), 0);
+        assertEquals(2, timerCount("reactive", "toys", ResponseType.ERROR));
+    }
+
+    @Test
+    public void unsubscribedCallIsNotTimed() {
+        Mono<ProductResponse> call = metrics.time("reactive", "toys", Mono.just(response(ResponseType.REMOTE_SERVICE)));
+
+        assertEquals(0, meterRegistry.find("startpage.backend.requests").timers().size());
+        call.block();
+        assertEquals(1, timerCount("reactive", "toys", ResponseType.REMOTE_SERVICE));
+    }
+
+    @Test
+    public void pageIsTimedAndItsSectionsCounted() {
+        Startpage page = new Startpage();
+        page.setFashionResponse(response(ResponseType.REMOTE_SERVICE));
+        page.setToysResponse(response(ResponseType.CACHED));
+        page.setHotDealsResponse(response(ResponseType.FALLBACK));
+
+        metrics.page("hystrix", page, System.nanoTime());
+
+        assertEquals(1, meterRegistry.get("startpage.requests").tag("mode", "hystrix").timer().count());
+        assertEquals(1, sections("fashion", ResponseType.REMOTE_SERVICE), 0);
+        assertEquals(1, sections("toys", ResponseType.CACHED), 0);
+        assertEquals(1, sections("hotdeals", ResponseType.FALLBACK), 0);
+    }
+
+    private long timerCount(String mode, String backend, ResponseType type) {
+        return meterRegistry.get("startpage.backend.requests")
+                .tags("mode", mode, "backend", backend, "type", type.name()).timer().count();
+    }
+
+    private double failures(String mode, String reason) {
+        return meterRegistry.get("startpage.backend.failures").tags("mode", mode, "reason", reason).counter().count();
+    }
+
+    private double sections(String section, ResponseType type) {
+        return meterRegistry.get("startpage.sections").tags("section", section, "type", type.name()).counter().count();
+    }
+
+    private static ProductResponse response(ResponseType type) {
+        return new ProductResponse(type, Collections.emptyList());
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.chaos.monkey.shopping.gateway.resilience;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import com.example.chaos.monkey.shopping.gateway.cache.ProductETagCache;
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class ResilientProductClientTest {
+
+    private static final String URL = "http://localhost:8082/toys/bestseller";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicReference<Mono<ClientResponse>> backend = new AtomicReference<>(ok());
+    private final WebClient webClient = WebClient.builder()
+            .exchangeFunction(request -> backend.get())
+            .build();
+
+    @Test
+    public void answeredCallIsARemoteServiceResponse() {
+        ProductResponse response = client(1000, 10).getProducts("toys", URL).block(Duration.ofSeconds(1));
+
+        assertEquals(ResponseType.REMOTE_SERVICE, response.getResponseType());
+        assertEquals(Collections.singletonList(new Product(1, "LEGO Star Wars Yodas Hut", ProductCategory.TOYS)),
+                response.getProducts());
+    }
+
+    @Test
+    public void errorStatusAndTimeoutAreFallbacks() {
+        ResilientProductClient client = client(50, 10);
+
+        backend.set(Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build()));
+        assertEquals(ResponseType.FALLBACK, client.getProducts("toys", URL).block(Duration.ofSeconds(1)).getResponseType());
+
+        backend.set(Mono.never());
+        assertEquals(ResponseType.FALLBACK, client.getProducts("toys", URL).block(Duration.ofSeconds(1)).getResponseType());
+    }
+
+    @Test
+    public void openCircuitAnswersWithoutWaitingForTheTimeout() {
+        ResilientProductClient client = client(5000, 10);
+
+        // a full ring buffer of failures opens the circuit
+        backend.set(Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build()));
+        for (int i = 0; i < 20; i++) {
+            client.getProducts("toys", URL).block(Duration.ofSeconds(1));
+        }
+
+        // the backend would now hang until the timeout, an open circuit must not call it
+        backend.set(Mono.never());
+        assertEquals(ResponseType.FALLBACK, client.getProducts("toys", URL).block(Duration.ofSeconds(1)).getResponseType());
+
+        // circuits are per backend
+        backend.set(ok());
+        assertEquals(ResponseType.REMOTE_SERVICE,
+                client.getProducts("fashion", URL).block(Duration.ofSeconds(1)).getResponseType());
+    }
+
+    @Test
+    public void fullBulkheadRejectsWithoutWaiting() {
+        ResilientProductClient client = client(5000, 1);
+
+        backend.set(Mono.never());
+        Disposable pending = client.getProducts("toys", URL).subscribe();
+        assertEquals(0, meterRegistry.get("resilience4j.bulkhead.available_concurrent_calls").tag("name", "toys")
+                .gauge().value(), 0);
+
+        backend.set(ok());
+        assertEquals(ResponseType.FALLBACK, client.getProducts("toys", URL).block(Duration.ofSeconds(1)).getResponseType());
+
+        pending.dispose();
+    }
+
+    private ResilientProductClient client(long timeoutMillis, int maxConcurrentCalls) {
+        return new ResilientProductClient(webClient, new ProductETagCache("json"), meterRegistry, timeoutMillis, maxConcurrentCalls);
+    }
+
+    private static Mono<ClientResponse> ok() {
+        return Mono.fromCallable(() -> ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                .body("[{\"id\":1,\"name\":\"LEGO Star Wars Yodas Hut\",\"category\":\"TOYS\"}]")
+                .build());
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.chaos.monkey.shopping.gateway.rest;
+
+import com.example.chaos.monkey.shopping.gateway.cache.ProductETagCache;
+import com.example.chaos.monkey.shopping.gateway.cache.ProductResponseCache;
+import com.example.chaos.monkey.shopping.gateway.coalescing.RequestCoalescer;
+import com.example.chaos.monkey.shopping.gateway.domain.Startpage;
+import com.example.chaos.monkey.shopping.gateway.limit.CommandConcurrencyLimiter;
+import com.example.chaos.monkey.shopping.gateway.metrics.StartpageMetrics;
+import com.example.chaos.monkey.shopping.gateway.resilience.ResilientProductClient;
+import com.netflix.config.ConfigurationManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class ApiGatewayRestControllerTest {
+
+    private static final String SECTIONS = "http://localhost:8083/hotdeals/sections";
+    private static final String FASHION = "http://localhost:8081/fashion/bestseller";
+    private static final String TOYS = "http://localhost:8082/toys/bestseller";
+    private static final String HOTDEALS = "http://localhost:8083/hotdeals";
+    private static final String TIMEOUT = "hystrix.command.%s.execution.isolation.thread.timeoutInMilliseconds";
+    private static final List<String> COMMANDS = Arrays.asList("ProductSectionsCommand", "BestsellerFashionCommand",
+            "BestsellerToysCommand", "HotDealsCommand");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RestTemplate restTemplate = new RestTemplate();
+    private final MockRestServiceServer server = MockRestServiceServer.bindTo(restTemplate).ignoreExpectOrder(true).build();
+    private final ProductETagCache eTagCache = new ProductETagCache("json");
+
+    private final ApiGatewayRestController controller = new ApiGatewayRestController(restTemplate,
+            new ProductResponseCache(meterRegistry, true, 60000, 300000, 100), eTagCache,
+            new ResilientProductClient(WebClient.create(), eTagCache, meterRegistry, 200, 10),
+            new CommandConcurrencyLimiter(meterRegistry, true, 20, 5, 200), new StartpageMetrics(meterRegistry),
+            new RequestCoalescer(meterRegistry, true));
+
+    @BeforeClass
+    public static void setUpTimeout() {
+        // the first decode in a fresh JVM can take longer than the 200ms of the page
+        COMMANDS.forEach(command -> ConfigurationManager.getConfigInstance()
+                .setProperty(String.format(TIMEOUT, command), 5000));
+    }
+
+    @AfterClass
+    public static void tearDownTimeout() {
+        COMMANDS.forEach(command -> ConfigurationManager.getConfigInstance()
+                .clearProperty(String.format(TIMEOUT, command)));
+    }
+
+    @Before
+    public void setUp() {
+        ReflectionTestUtils.setField(controller, "urlSections", SECTIONS);
+        ReflectionTestUtils.setField(controller, "urlFashion", FASHION);
+        ReflectionTestUtils.setField(controller, "urlToys", TOYS);
+        ReflectionTestUtils.setField(controller, "urlHotDeals", HOTDEALS);
+        ReflectionTestUtils.setField(controller, "wireFormat", "json");
+    }
+
+    @Test
+    public void batchOnlyRequestsTheSectionsTheCacheCannotAnswer() {
+        // the edge only serves hotdeals, fashion and toys fail on their own backends and stay uncached
+        server.expect(requestTo(SECTIONS + "?names=fashion,toys,hotdeals"))
+                .andRespond(withSuccess("[{\"name\":\"hotdeals\",\"status\":\"OK\",\"products\":[]}]", MediaType.APPLICATION_JSON));
+        server.expect(requestTo(SECTIONS + "?names=fashion,toys"))
+                .andRespond(withSuccess("[]", MediaType.APPLICATION_JSON));
+        server.expect(ExpectedCount.times(2), requestTo(FASHION)).andRespond(withServerError());
+        server.expect(ExpectedCount.times(2), requestTo(TOYS)).andRespond(withServerError());
+
+        Startpage first = controller.getStartpageBatch().join();
+        Startpage second = controller.getStartpageBatch().join();
+
+        assertEquals("REMOTE_SERVICE", first.getStatusHotDeals());
+        assertEquals("FALLBACK", first.getStatusToys());
+        assertEquals("CACHED", second.getStatusHotDeals());
+        server.verify();
+
+        // the batch call is timed like every other backend call
+        assertEquals(2, meterRegistry.get("startpage.backend.requests")
+                .tags("mode", "batch", "backend", "sections", "type", "REMOTE_SERVICE").timer().count());
+    }
+
+    @Test
+    public void syncStartpageIsAnsweredWithoutAsyncDispatch() throws Exception {
+        expectProductLists();
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new SyncStartpageController(controller)).build();
+
+        mockMvc.perform(get("/startpage"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.statusFashion").value("REMOTE_SERVICE"))
+                .andExpect(jsonPath("$.statusToys").value("REMOTE_SERVICE"))
+                .andExpect(jsonPath("$.statusHotDeals").value("REMOTE_SERVICE"));
+        server.verify();
+    }
+
+    @Test
+    public void asyncStartpageIsCompletedFromTheCommands() throws Exception {
+        expectProductLists();
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new AsyncStartpageController(controller)).build();
+
+        MvcResult started = mockMvc.perform(get("/startpage"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.statusFashion").value("REMOTE_SERVICE"))
+                .andExpect(jsonPath("$.statusToys").value("REMOTE_SERVICE"))
+                .andExpect(jsonPath("$.statusHotDeals").value("REMOTE_SERVICE"));
+        server.verify();
+    }
+
+    private void expectProductLists() {
+        for (String url : Arrays.asList(FASHION, TOYS, HOTDEALS)) {
+            server.expect(requestTo(url)).andRespond(withSuccess("[]", MediaType.APPLICATION_JSON));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.chaos.monkey.shopping.gateway.commands;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductBuilder;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import com.example.chaos.monkey.shopping.gateway.cache.ProductETagCache;
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code run()} of the api-gateway commands against a stubbed backend that answers from memory, once with the full
+ * body on every call and once with {@code 304 Not Modified} for the known ETag. {@code execute()} adds the Hystrix
+ * thread pool hand-off on top.
+ *
+ * @author Benjamin Wilms
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandRunBenchmark {
+
+    private static final String URL = "http://localhost:8081/toys/bestseller";
+    private static final String ETAG = "\"benchmark\"";
+
+    @Param({"3", "100"})
+    private int productCount;
+
+    @Param({"false", "true"})
+    private boolean conditional;
+
+    private RestTemplate restTemplate;
+    private ProductETagCache eTagCache;
+    private HystrixCommandGroupKey groupKey;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        List<Product> products = new ArrayList<>(productCount);
+        for (int i = 0; i < productCount; i++) {
+            products.add(new ProductBuilder().setId(i).setName("Product " + i)
+                    .setCategory(ProductCategory.TOYS).createProduct());
+        }
+        byte[] json = new ObjectMapper().writeValueAsBytes(products);
+
+        restTemplate = new RestTemplate((uri, method) -> new MockClientHttpRequest(method, uri) {
+            @Override
+            protected ClientHttpResponse executeInternal() {
+                if (conditional && getHeaders().getIfNoneMatch().contains(ETAG)) {
+                    return new MockClientHttpResponse(new byte[0], HttpStatus.NOT_MODIFIED);
+                }
+
+                MockClientHttpResponse response = new MockClientHttpResponse(json, HttpStatus.OK);
+                response.getHeaders().setContentType(MediaType.APPLICATION_JSON_UTF8);
+                if (conditional) {
+                    response.getHeaders().setETag(ETAG);
+                }
+                return response;
+            }
+        });
+
+        eTagCache = new ProductETagCache("json");
+        groupKey = HystrixCommandGroupKey.Factory.asKey("toys");
+    }
+
+    @Benchmark
+    public ProductResponse run() throws Exception {
+        return new BestsellerToysCommand(groupKey, 200, restTemplate, URL, eTagCache).run();
+    }
+
+    @Benchmark
+    public ProductResponse execute() {
+        return new BestsellerToysCommand(groupKey, 200, restTemplate, URL, eTagCache).execute();
+    }
+}
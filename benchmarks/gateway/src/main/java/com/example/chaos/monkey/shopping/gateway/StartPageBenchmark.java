@@ -0,0 +1,156 @@
+package com.example.chaos.monkey.shopping.gateway;
+
+import brave.Tracing;
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductBuilder;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import com.example.chaos.monkey.shopping.gateway.batch.ProductSectionsClient;
+import com.example.chaos.monkey.shopping.gateway.cache.ProductETagCache;
+import com.example.chaos.monkey.shopping.gateway.cache.ProductResponseCache;
+import com.example.chaos.monkey.shopping.gateway.coalescing.RequestCoalescer;
+import com.example.chaos.monkey.shopping.gateway.dispatch.InProcessRouteDispatcher;
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import com.example.chaos.monkey.shopping.gateway.domain.Startpage;
+import com.example.chaos.monkey.shopping.gateway.errors.ErrorEventReporter;
+import com.example.chaos.monkey.shopping.gateway.hedging.HedgingPolicy;
+import com.example.chaos.monkey.shopping.gateway.limit.RouteConcurrencyLimiter;
+import com.example.chaos.monkey.shopping.gateway.metrics.StartpageMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request path of the reactive startpage without any network: zipping the three sections into a {@link Startpage}
+ * (with and without the response cache) and decoding a backend response in
+ * {@link StartPageController#processResponse}.
+ *
+ * @author Benjamin Wilms
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StartPageBenchmark {
+
+    private static final String URI = "http://localhost:8081/toys/bestseller";
+    private static final String ETAG = "\"benchmark\"";
+
+    @Param({"3", "100"})
+    private int productCount;
+
+    private Tracing tracing;
+    private StartPageController uncachedController;
+    private StartPageController cachedController;
+
+    private ProductResponse hotDeals;
+    private ProductResponse fashion;
+    private ProductResponse toys;
+
+    private String json;
+    private ProductETagCache.Entry eTagEntry;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        tracing = Tracing.newBuilder().build();
+
+        uncachedController = controller(false, new ProductETagCache());
+        cachedController = controller(true, new ProductETagCache());
+
+        List<Product> products = products(productCount);
+        hotDeals = new ProductResponse(ResponseType.REMOTE_SERVICE, products);
+        fashion = new ProductResponse(ResponseType.REMOTE_SERVICE, products);
+        toys = new ProductResponse(ResponseType.REMOTE_SERVICE, products);
+
+        // fill the response cache, every further call is a fresh hit
+        aggregateCached();
+
+        json = new ObjectMapper().writeValueAsString(products);
+
+        ProductETagCache eTagCache = new ProductETagCache();
+        eTagCache.put(URI, ETAG, products);
+        eTagEntry = eTagCache.get(URI);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        tracing.close();
+    }
+
+    @Benchmark
+    public Startpage aggregateRemote() {
+        return uncachedController.aggregateResults("reactive", 0, Mono.just(hotDeals), Mono.just(fashion), Mono.just(toys))
+                .block();
+    }
+
+    @Benchmark
+    public Startpage aggregateCached() {
+        return cachedController.aggregateResults("reactive", 0, Mono.just(hotDeals), Mono.just(fashion), Mono.just(toys))
+                .block();
+    }
+
+    @Benchmark
+    public ProductResponse decodeProducts() {
+        ClientResponse response = ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_UTF8_VALUE)
+                .header(HttpHeaders.ETAG, ETAG)
+                .body(json)
+                .build();
+
+        return uncachedController.processResponse(response, URI, null).block();
+    }
+
+    @Benchmark
+    public ProductResponse notModified() {
+        ClientResponse response = ClientResponse.create(HttpStatus.NOT_MODIFIED).build();
+
+        return uncachedController.processResponse(response, URI, eTagEntry).block();
+    }
+
+    private StartPageController controller(boolean cacheEnabled, ProductETagCache eTagCache) {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ErrorEventReporter errorEvents = new ErrorEventReporter(10000, 10000, 100);
+
+        return new StartPageController(WebClient.create(), tracing.tracer(), Schedulers.immediate(),
+                new ProductResponseCache(registry, cacheEnabled, 5000, 300000, 100), eTagCache,
+                new HedgingPolicy(registry, false, 0.95, 10, 10), new StartpageMetrics(registry),
+                errorEvents, new RequestCoalescer(registry, true), new RestTemplate(),
+                new InProcessRouteDispatcher(new RouteConcurrencyLimiter(registry, false, 20, 5, 200), errorEvents),
+                new ProductSectionsClient(WebClient.create(), "http://localhost:8083/hotdeals/sections", "smile", 1000));
+    }
+
+    private static List<Product> products(int count) {
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            products.add(new ProductBuilder().setId(i).setName("Product " + i)
+                    .setCategory(ProductCategory.TOYS).createProduct());
+        }
+        return products;
+    }
+}
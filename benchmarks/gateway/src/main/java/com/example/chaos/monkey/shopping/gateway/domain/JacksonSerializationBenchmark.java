@@ -0,0 +1,87 @@
+package com.example.chaos.monkey.shopping.gateway.domain;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductBuilder;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson cost of the payloads on the startpage path: the {@link Startpage} the gateway writes, the
+ * {@link ProductResponse} sections and a single {@link Product}, plus reading a backend product list.
+ *
+ * @author Benjamin Wilms
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonSerializationBenchmark {
+
+    private static final TypeReference<List<Product>> PRODUCT_LIST = new TypeReference<List<Product>>() {
+    };
+
+    @Param({"3", "100"})
+    private int productCount;
+
+    private ObjectMapper objectMapper;
+    private Startpage startpage;
+    private ProductResponse productResponse;
+    private Product product;
+    private byte[] productListJson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        objectMapper = new ObjectMapper();
+
+        List<Product> products = new ArrayList<>(productCount);
+        for (int i = 0; i < productCount; i++) {
+            products.add(new ProductBuilder().setId(i).setName("Product " + i)
+                    .setCategory(ProductCategory.FASHION).createProduct());
+        }
+
+        product = products.get(0);
+        productResponse = new ProductResponse(ResponseType.REMOTE_SERVICE, products);
+        startpage = new Startpage(42, "REMOTE_SERVICE", "REMOTE_SERVICE", "REMOTE_SERVICE",
+                productResponse, productResponse, productResponse);
+        productListJson = objectMapper.writeValueAsBytes(products);
+    }
+
+    @Benchmark
+    public byte[] writeStartpage() throws Exception {
+        return objectMapper.writeValueAsBytes(startpage);
+    }
+
+    @Benchmark
+    public byte[] writeProductResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(productResponse);
+    }
+
+    @Benchmark
+    public byte[] writeProduct() throws Exception {
+        return objectMapper.writeValueAsBytes(product);
+    }
+
+    @Benchmark
+    public List<Product> readProductList() throws Exception {
+        return objectMapper.readValue(productListJson, PRODUCT_LIST);
+    }
+}
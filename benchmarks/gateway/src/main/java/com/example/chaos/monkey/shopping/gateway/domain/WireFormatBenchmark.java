@@ -0,0 +1,75 @@
+package com.example.chaos.monkey.shopping.gateway.domain;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductBuilder;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding a backend product list as JSON and as Smile, the two wire formats the catalogue services
+ * offer. The payload sizes of both formats are listed in the benchmarks README.
+ *
+ * @author Benjamin Wilms
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final TypeReference<List<Product>> PRODUCT_LIST = new TypeReference<List<Product>>() {
+    };
+
+    @Param({"json", "smile"})
+    private String format;
+
+    @Param({"3", "100"})
+    private int productCount;
+
+    private ObjectMapper objectMapper;
+    private List<Product> products;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        objectMapper = "smile".equals(format) ? new ObjectMapper(new SmileFactory()) : new ObjectMapper();
+
+        products = new ArrayList<>(productCount);
+        for (int i = 0; i < productCount; i++) {
+            products.add(new ProductBuilder().setId(i).setName("LEGO Star Wars Product " + i)
+                    .setCategory(ProductCategory.TOYS).createProduct());
+        }
+
+        encoded = objectMapper.writeValueAsBytes(products);
+    }
+
+    @Benchmark
+    public byte[] writeProductList() throws Exception {
+        return objectMapper.writeValueAsBytes(products);
+    }
+
+    @Benchmark
+    public List<Product> readProductList() throws Exception {
+        return objectMapper.readValue(encoded, PRODUCT_LIST);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.chaos.monkey.shopping.gateway.errors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Throughput of the error path under an exception assault: printing every stack trace to a shared (discarding)
+ * console stream as the startpage used to, against {@link ErrorEventReporter}. Four threads stand in for the Netty
+ * event loops contending for the stream.
+ *
+ * @author Benjamin Wilms
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ErrorReportingBenchmark {
+
+    private PrintStream console;
+    private ErrorEventReporter reporter;
+    private TimeoutException exception;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        console = new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        reporter = new ErrorEventReporter(10000, 10000, 100);
+        exception = new TimeoutException("assault");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        reporter.shutdown();
+    }
+
+    @Benchmark
+    public void printStackTrace() {
+        console.println("on error resume");
+        exception.printStackTrace(console);
+    }
+
+    @Benchmark
+    public void errorEventReporter() {
+        reporter.report("hotdeals", exception);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.chaos.monkey.shopping.gateway.snapshot;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductBuilder;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import com.example.chaos.monkey.shopping.gateway.domain.Startpage;
+import com.example.chaos.monkey.shopping.gateway.errors.ErrorEventReporter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.codec.HttpMessageWriter;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.server.HandlerStrategies;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.reactive.result.view.ViewResolver;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing the startpage into a response: the bytes kept ready by the {@link StartpageSnapshotAssembler} against
+ * building the {@link Startpage} and encoding it with Jackson per request.
+ *
+ * @author Benjamin Wilms
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StartpageSnapshotBenchmark {
+
+    @Param({"3", "100"})
+    private int productCount;
+
+    private ErrorEventReporter errorEvents;
+    private StartpageSnapshotAssembler assembler;
+    private HandlerStrategies strategies;
+    private ServerResponse.Context context;
+    private ProductResponse section;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<Product> products = new ArrayList<>(productCount);
+        for (int i = 0; i < productCount; i++) {
+            products.add(new ProductBuilder().setId(i).setName("Product " + i)
+                    .setCategory(ProductCategory.TOYS).createProduct());
+        }
+        section = new ProductResponse(ResponseType.REMOTE_SERVICE, products);
+
+        errorEvents = new ErrorEventReporter(10000, 10000, 100);
+        assembler = new StartpageSnapshotAssembler(() -> Mono.just(page()), new ObjectMapper(),
+                new SimpleMeterRegistry(), errorEvents, 60000, 300000);
+        assembler.assemble();
+
+        strategies = HandlerStrategies.withDefaults();
+        context = new ServerResponse.Context() {
+            @Override
+            public List<HttpMessageWriter<?>> messageWriters() {
+                return strategies.messageWriters();
+            }
+
+            @Override
+            public List<ViewResolver> viewResolvers() {
+                return strategies.viewResolvers();
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        assembler.shutdown();
+        errorEvents.shutdown();
+    }
+
+    @Benchmark
+    public MockServerWebExchange serveSnapshot() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/startpage/snapshot"));
+        ServerRequest request = ServerRequest.create(exchange, strategies.messageReaders());
+
+        assembler.serve(request).flatMap(response -> response.writeTo(exchange, context)).block();
+        return exchange;
+    }
+
+    @Benchmark
+    public MockServerWebExchange buildAndEncode() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/startpage"));
+
+        ServerResponse.ok().body(Mono.fromSupplier(this::page), Startpage.class)
+                .flatMap(response -> response.writeTo(exchange, context)).block();
+        return exchange;
+    }
+
+    private Startpage page() {
+        Startpage page = new Startpage();
+        page.setHotDealsResponse(section);
+        page.setFashionResponse(section);
+        page.setToysResponse(section);
+        page.setStatusHotDeals(section.getResponseType().name());
+        page.setStatusFashion(section.getResponseType().name());
+        page.setStatusToys(section.getResponseType().name());
+        return page;
+    }
+}
@@ -1,28 +1,46 @@
 package com.example.chaos.monkey.shopping.gateway;
 
+import brave.Span;
 import brave.Tracer;
 import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.gateway.errors.ErrorEventReporter;
+import com.example.chaos.monkey.shopping.gateway.limit.RouteConcurrencyLimiter;
+import com.example.chaos.monkey.shopping.startup.StartupConfiguration;
 import com.netflix.hystrix.HystrixInvokable;
 import com.netflix.hystrix.exception.HystrixRuntimeException;
 import com.netflix.hystrix.strategy.HystrixPlugins;
 import com.netflix.hystrix.strategy.executionhook.HystrixCommandExecutionHook;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cloud.gateway.route.Route;
 import org.springframework.cloud.gateway.route.RouteLocator;
 import org.springframework.cloud.gateway.route.builder.RouteLocatorBuilder;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.HYSTRIX_EXECUTION_EXCEPTION_ATTR;
 
 @SpringBootApplication
+@Import(StartupConfiguration.class)
 @RestController
 public class GatewayApplication {
 
@@ -35,12 +53,18 @@ public class GatewayApplication {
     @Value("${rest.endpoint.hotdeals}")
     private String urlHotDeals;
 
-    @Value("${server.port}")
-    private int serverPort;
+    @Value("${startpage.legacy.pool-size:20}")
+    private int legacyPoolSize;
+
+    @Value("${startpage.legacy.queue-size:100}")
+    private int legacyQueueSize;
+
     private Tracer tracer;
+    private ErrorEventReporter errorEvents;
 
-    public GatewayApplication(Tracer tracer) {
+    public GatewayApplication(Tracer tracer, ErrorEventReporter errorEvents) {
         this.tracer = tracer;
+        this.errorEvents = errorEvents;
     }
 
     public static void main(String[] args) {
@@ -48,57 +72,78 @@ public class GatewayApplication {
     }
 
     @GetMapping("/fallback")
-    public ResponseEntity<List<Product>> fallback() {
+    public ResponseEntity<List<Product>> fallback(ServerWebExchange exchange) {
 
-        tracer.currentSpan().tag("fallback", "true");
+        Span currentSpan = tracer.currentSpan();
+        if (currentSpan != null) {
+            currentSpan.tag("fallback", "true");
+        }
+
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        Throwable cause = exchange.getAttribute(HYSTRIX_EXECUTION_EXCEPTION_ATTR);
+        errorEvents.report(route != null ? route.getId() : "unknown",
+                "fallback-" + (cause != null ? cause.getClass().getSimpleName() : "unknown"), cause);
 
-        System.out.println("fallback enabled");
         HttpHeaders headers = new HttpHeaders();
         headers.add("fallback", "true");
         return ResponseEntity.ok().headers(headers).body(Collections.emptyList());
     }
 
     @Bean
-    public RouteLocator routes(RouteLocatorBuilder builder) {
+    public RouteLocator routes(RouteLocatorBuilder builder, RouteConcurrencyLimiter concurrencyLimiter) {
+        // the concurrency limit is the first filter of every route, so shed requests never reach Hystrix
         return builder.routes()
                 .route("hotdeals", p -> p.path("/hotdeals**")
-                        .filters(f ->
-                                f.hystrix(c -> c.setName("hotdeals").setFallbackUri("forward:/fallback")))
+                        .filters(f -> f.filter(concurrencyLimiter.forRoute("hotdeals"))
+                                .hystrix(c -> c.setName("hotdeals").setFallbackUri("forward:/fallback")))
                         .uri(urlHotDeals))
 
                 .route("fashion", p -> p.path("/fashion/**")
-                        .filters(f -> f.hystrix(c -> c.setName("fashion").setFallbackUri("forward:/fallback")))
+                        .filters(f -> f.filter(concurrencyLimiter.forRoute("fashion"))
+                                .hystrix(c -> c.setName("fashion").setFallbackUri("forward:/fallback")))
                         .uri(urlFashion))
 
                 .route("toys", p -> p.path("/toys/**")
-                        .filters(f -> f.hystrix(c -> c.setName("toys").setFallbackUri("forward:/fallback")))
+                        .filters(f -> f.filter(concurrencyLimiter.forRoute("toys"))
+                                .hystrix(c -> c.setName("toys").setFallbackUri("forward:/fallback")))
                         .uri(urlToys))
 
 
                 // Load-balanced routes
                 .route("loadbalanced-hotdeals", p -> p.path("/lb/hotdeals**")
-                        .filters(f -> f.retry(c -> c.setRetries(2).setSeries(HttpStatus.Series.SERVER_ERROR))
+                        .filters(f -> f.filter(concurrencyLimiter.forRoute("loadbalanced-hotdeals"))
+                                .retry(c -> c.setRetries(2).setSeries(HttpStatus.Series.SERVER_ERROR))
                                 .hystrix(c -> c.setName("hotdeals").setFallbackUri("forward:/fallback"))
                                 .rewritePath("(\\/lb)", ""))
                         .uri("lb://hotdeals"))
 
                 .route("loadbalanced-fashion", p -> p.path("/lb/fashion/**")
-                        .filters(f -> f.retry(c -> c.setRetries(2).setSeries(HttpStatus.Series.SERVER_ERROR))
+                        .filters(f -> f.filter(concurrencyLimiter.forRoute("loadbalanced-fashion"))
+                                .retry(c -> c.setRetries(2).setSeries(HttpStatus.Series.SERVER_ERROR))
                                 .hystrix(c -> c.setName("fashion").setFallbackUri("forward:/fallback"))
                                 .rewritePath("(\\/lb)", ""))
                         .uri("lb://fashion-bestseller"))
 
                 .route("loadbalanced-toys", p -> p.path("/lb/toys/**")
-                        .filters(f -> f.retry(c -> c.setRetries(2).setSeries(HttpStatus.Series.SERVER_ERROR))
+                        .filters(f -> f.filter(concurrencyLimiter.forRoute("loadbalanced-toys"))
+                                .retry(c -> c.setRetries(2).setSeries(HttpStatus.Series.SERVER_ERROR))
                                 .hystrix(c -> c.setName("toys").setFallbackUri("forward:/fallback"))
                                 .rewritePath("(\\/lb)", ""))
                         .uri("lb://toys-bestseller"))
                 .build();
     }
 
-    @Bean
-    public WebClient webClient() {
-        return WebClient.builder().baseUrl("http://localhost:" + serverPort).build();
+    /**
+     * Bounded pool for the blocking legacy startpage, exposed as {@code executor.*} metrics tagged with
+     * {@code name=startpage.legacy}.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler legacyStartpageScheduler(MeterRegistry meterRegistry) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(legacyPoolSize, legacyPoolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(legacyQueueSize), new CustomizableThreadFactory("startpage-legacy-"));
+        executor.allowCoreThreadTimeOut(true);
+
+        return Schedulers.fromExecutorService(ExecutorServiceMetrics.monitor(meterRegistry, executor, "startpage.legacy"));
     }
 
 }
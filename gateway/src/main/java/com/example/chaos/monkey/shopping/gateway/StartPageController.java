@@ -3,14 +3,31 @@ package com.example.chaos.monkey.shopping.gateway;
 import brave.Span;
 import brave.Tracer;
 import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductMediaTypes;
+import com.example.chaos.monkey.shopping.gateway.batch.ProductSectionsClient;
+import com.example.chaos.monkey.shopping.gateway.cache.ProductETagCache;
+import com.example.chaos.monkey.shopping.gateway.cache.ProductResponseCache;
+import com.example.chaos.monkey.shopping.gateway.coalescing.RequestCoalescer;
+import com.example.chaos.monkey.shopping.gateway.dispatch.InProcessRouteDispatcher;
 import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
 import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
 import com.example.chaos.monkey.shopping.gateway.domain.Startpage;
+import com.example.chaos.monkey.shopping.gateway.domain.StartpageEvent;
+import com.example.chaos.monkey.shopping.gateway.domain.StartpageSection;
+import com.example.chaos.monkey.shopping.gateway.domain.StartpageSummary;
+import com.example.chaos.monkey.shopping.gateway.errors.ErrorEventReporter;
+import com.example.chaos.monkey.shopping.gateway.hedging.HedgingPolicy;
+import com.example.chaos.monkey.shopping.gateway.metrics.StartpageMetrics;
+import com.example.chaos.monkey.shopping.gateway.snapshot.StartpageSnapshotAssembler;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.gateway.support.TimeoutException;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -18,13 +35,22 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.server.NotAcceptableStatusException;
 import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.scheduler.Scheduler;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.function.Function;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 /**
  * @author Ryan Baxter, Benjamin Wilms
@@ -41,6 +67,21 @@ public class StartPageController {
     @Value("${rest.endpoint.hotdeals}")
     private String urlHotDeals;
 
+    // reactive, legacy or batch, snapshot is served by the StartpageSnapshotConfiguration routes
+    @Value("${startpage.default-mode:reactive}")
+    private String defaultMode;
+
+    @Value("${startpage.timeout-millis:1000}")
+    private long timeoutMillis;
+
+    // in-process = the cb page runs the routes' limit and Hystrix commands itself, loopback = calls the routes over HTTP
+    @Value("${startpage.circuit-breaker.dispatch:in-process}")
+    private String circuitBreakerDispatch;
+
+    // smile or json, see ProductMediaTypes
+    @Value("${startpage.wire-format:smile}")
+    private String wireFormat;
+
     private String initialSpan = "chaostoolkit";
 
     private RestTemplate restClient;
@@ -48,11 +89,34 @@ public class StartPageController {
     private ProductResponse errorResponse;
     private WebClient webClient;
     private Tracer tracer;
-
-    public StartPageController(WebClient webClient, Tracer tracer) {
+    private Scheduler legacyScheduler;
+    private ProductResponseCache productResponseCache;
+    private ProductETagCache productETagCache;
+    private HedgingPolicy hedgingPolicy;
+    private StartpageMetrics startpageMetrics;
+    private ErrorEventReporter errorEvents;
+    private RequestCoalescer requestCoalescer;
+    private InProcessRouteDispatcher routeDispatcher;
+    private ProductSectionsClient productSectionsClient;
+
+    public StartPageController(WebClient webClient, Tracer tracer, Scheduler legacyStartpageScheduler,
+                               ProductResponseCache productResponseCache, ProductETagCache productETagCache,
+                               HedgingPolicy hedgingPolicy, StartpageMetrics startpageMetrics,
+                               ErrorEventReporter errorEvents, RequestCoalescer requestCoalescer,
+                               RestTemplate legacyRestTemplate, InProcessRouteDispatcher routeDispatcher,
+                               ProductSectionsClient productSectionsClient) {
         this.webClient = webClient;
         this.tracer = tracer;
-        this.restClient = new RestTemplate();
+        this.legacyScheduler = legacyStartpageScheduler;
+        this.productResponseCache = productResponseCache;
+        this.productETagCache = productETagCache;
+        this.hedgingPolicy = hedgingPolicy;
+        this.startpageMetrics = startpageMetrics;
+        this.errorEvents = errorEvents;
+        this.requestCoalescer = requestCoalescer;
+        this.restClient = legacyRestTemplate;
+        this.routeDispatcher = routeDispatcher;
+        this.productSectionsClient = productSectionsClient;
 
         this.errorResponse = new ProductResponse();
         errorResponse.setResponseType(ResponseType.ERROR);
@@ -63,22 +127,163 @@ public class StartPageController {
     @RequestMapping(value = {"/startpage", "/startpage/{version}"}, method = RequestMethod.GET)
     public Mono<Startpage> delegateStartpageRequest(@PathVariable Optional<String> version) {
 
-        System.out.println("Current Span (startpage): " + this.tracer.currentSpan());
-
         if (version.isPresent()) {
             if (version.get().equalsIgnoreCase("cb")) {
                 return getStartpageCircuitBreaker();
             } else if (version.get().equalsIgnoreCase("lb")) {
                 return getStartpageLoadBalanced();
+            } else if (version.get().equalsIgnoreCase("legacy")) {
+                return getStartpageLegacy();
+            } else if (version.get().equalsIgnoreCase("reactive")) {
+                return getStartpageReactive();
+            } else if (version.get().equalsIgnoreCase("batch")) {
+                return getStartpageBatch();
             }
         }
         //default landing
-        return getStartpageLegacy();
+        if (defaultMode.equalsIgnoreCase("legacy")) {
+            return getStartpageLegacy();
+        } else if (defaultMode.equalsIgnoreCase("batch")) {
+            return getStartpageBatch();
+        }
+        return getStartpageReactive();
 
     }
 
+    /**
+     * The startpage as a stream of {@link StartpageSection}s in the order the backends answer, followed by a
+     * {@link StartpageSummary}. Written as NDJSON or Server-Sent Events depending on the Accept header, so the first
+     * section is on the wire as soon as the fastest backend is done.
+     */
+    @GetMapping(value = {"/startpage/stream", "/startpage/{version}/stream"},
+            produces = {MediaType.APPLICATION_STREAM_JSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<StartpageEvent> streamStartpageRequest(@PathVariable Optional<String> version) {
+        Sections sections;
+
+        if (version.isPresent() && version.get().equalsIgnoreCase("cb")) {
+            sections = getSectionsCircuitBreaker();
+        } else if (version.isPresent() && version.get().equalsIgnoreCase("lb")) {
+            sections = getSectionsLoadBalanced();
+        } else if (version.isPresent() && version.get().equalsIgnoreCase("batch")) {
+            sections = getSectionsBatch("batch");
+        } else {
+            // the blocking legacy page cannot hand out single sections, it is streamed like the reactive one
+            sections = getSectionsReactive("reactive");
+        }
+
+        return streamResults(sections).doFinally(signal -> sections.finish());
+    }
+
+    /**
+     * The stream has no plain JSON form, so any other Accept header is answered with 406 instead of falling through
+     * to {@code /startpage/{version}} with a version of {@code stream}.
+     */
+    @GetMapping({"/startpage/stream", "/startpage/{version}/stream"})
+    public Flux<StartpageEvent> streamNotAcceptable() {
+        throw new NotAcceptableStatusException(Arrays.asList(MediaType.APPLICATION_STREAM_JSON, MediaType.TEXT_EVENT_STREAM));
+    }
+
+    /**
+     * One build of the page for the {@link StartpageSnapshotAssembler}, bypassing the response cache so every section
+     * is fetched from its backend. Failed sections are {@link ResponseType#ERROR}, no metrics are recorded for the page.
+     *
+     * @param source {@code batch} fetches the sections like the batch page, everything else like the reactive page
+     */
+    public Mono<Startpage> assembleStartpage(String source) {
+        Sections sections = source.equalsIgnoreCase("batch") ? getSectionsBatch("snapshot") : getSectionsReactive("snapshot");
+
+        Mono<ProductResponse> hotdeals = sections.hotdeals.get();
+        Mono<ProductResponse> fashion = sections.fashion.get();
+        Mono<ProductResponse> toys = sections.toys.get();
+        sections.lookedUp.run();
+
+        return Mono.zip(hotdeals, fashion, toys).map(t -> {
+            Startpage p = new Startpage();
+            p.setHotDealsResponse(t.getT1());
+            p.setFashionResponse(t.getT2());
+            p.setToysResponse(t.getT3());
+            return p;
+        }).doFinally(signal -> sections.finish());
+    }
+
+    private Mono<Startpage> getStartpageReactive() {
+        Sections sections = getSectionsReactive("reactive");
+        return aggregateResults(sections).doFinally(signal -> sections.finish());
+    }
 
     private Mono<Startpage> getStartpageCircuitBreaker() {
+        Sections sections = getSectionsCircuitBreaker();
+        return aggregateResults(sections).doFinally(signal -> sections.finish());
+    }
+
+    private Mono<Startpage> getStartpageBatch() {
+        Sections sections = getSectionsBatch("batch");
+        return aggregateResults(sections).doFinally(signal -> sections.finish());
+    }
+
+    private Mono<Startpage> getStartpageLoadBalanced() {
+        Sections sections = getSectionsLoadBalanced();
+        return aggregateResults(sections);
+    }
+
+    /**
+     * Calls the three backends directly and concurrently with the non-blocking {@link WebClient}, so the page is
+     * ready as soon as the slowest backend has answered and no event-loop thread is ever blocked.
+     */
+    private Sections getSectionsReactive(String mode) {
+        long start = System.currentTimeMillis();
+
+        Span newSpan = this.tracer.nextSpan().name("allProductsReactive");
+        newSpan.tag("circuit.breaker", "false");
+        newSpan.tag("load.balanced", "false");
+
+        try (Tracer.SpanInScope ws = this.tracer.withSpanInScope(newSpan.start())) {
+
+            Mono<ProductResponse> hotdeals = getProductResponseReactive(mode, "hotdeals", urlHotDeals, newSpan);
+            Mono<ProductResponse> fashionBestSellers = getProductResponseReactive(mode, "fashion", urlFashion, newSpan);
+            Mono<ProductResponse> toysBestSellers = getProductResponseReactive(mode, "toys", urlToys, newSpan);
+
+            return new Sections(mode, start, newSpan, hotdeals, fashionBestSellers, toysBestSellers);
+        }
+    }
+
+    /**
+     * One request to the sections endpoint of a catalogue service (see {@link ProductSectionsClient}) for the sections
+     * whose response cache lookup invoked the loader, sent once all three have been looked up. A section the
+     * service does not serve is fetched from its own backend like on the reactive page, a failed batch is an
+     * {@link ResponseType#ERROR} for every section that waited for it.
+     */
+    private Sections getSectionsBatch(String mode) {
+        long start = System.currentTimeMillis();
+
+        Span newSpan = this.tracer.nextSpan().name("allProductsBatch");
+        newSpan.tag("circuit.breaker", "false");
+        newSpan.tag("load.balanced", "false");
+
+        try (Tracer.SpanInScope ws = this.tracer.withSpanInScope(newSpan.start())) {
+
+            List<String> names = new ArrayList<>(3);
+            MonoProcessor<Void> lookedUp = MonoProcessor.create();
+            Mono<Map<String, ProductResponse>> batch = lookedUp.then(Mono.defer(() -> startpageMetrics.timeBatch(mode,
+                    productSectionsClient.fetch(names))))
+                    .doOnError(t -> {
+                        if (t instanceof java.util.concurrent.TimeoutException) {
+                            newSpan.tag("failure", "timeout");
+                        }
+                        errorEvents.report("sections", t);
+                    })
+                    .cache();
+
+            return new Sections(mode, start, newSpan,
+                    () -> getBatchSection(mode, batch, names, "hotdeals", urlHotDeals, newSpan),
+                    () -> getBatchSection(mode, batch, names, "fashion", urlFashion, newSpan),
+                    () -> getBatchSection(mode, batch, names, "toys", urlToys, newSpan),
+                    lookedUp::onComplete);
+        }
+    }
+
+
+    private Sections getSectionsCircuitBreaker() {
         long start = System.currentTimeMillis();
 
         Span newSpan = this.tracer.nextSpan().name("allProductsCircuitBreaker");
@@ -87,16 +292,14 @@ public class StartPageController {
 
         try (Tracer.SpanInScope ws = this.tracer.withSpanInScope(newSpan.start())) {
 
-            Mono<ProductResponse> hotdeals = webClient.get().uri("/hotdeals").exchange().flatMap(responseProcessor)
-                    .doOnError(t -> {
-                        System.out.println("on error");
-                    })
+            Mono<ProductResponse> hotdeals = requestCoalescer.coalesce("/hotdeals",
+                    () -> startpageMetrics.time("cb", "hotdeals", route("hotdeals", "/hotdeals", urlHotDeals, newSpan)))
                     .onErrorResume(t -> {
-                        System.out.println("on error resume");
-                        t.printStackTrace();
+                        errorEvents.report("hotdeals", t);
                         return Mono.just(errorResponse);
                     });
-            Mono<ProductResponse> fashionBestSellers = webClient.get().uri("/fashion/bestseller").exchange().flatMap(responseProcessor)
+            Mono<ProductResponse> fashionBestSellers = requestCoalescer.coalesce("/fashion/bestseller",
+                    () -> startpageMetrics.time("cb", "fashion", route("fashion", "/fashion/bestseller", urlFashion, newSpan)))
                     .onErrorResume(t -> {
                         if (t instanceof TimeoutException) {
                             newSpan.tag("failure", "timeout");
@@ -104,93 +307,134 @@ public class StartPageController {
                             newSpan.tag("failure", "responseStatusException");
                         }
 
-                        t.printStackTrace();
+                        errorEvents.report("fashion", t);
                         return Mono.just(errorResponse);
                     });
-            Mono<ProductResponse> toysBestSellers = webClient.get().uri("/toys/bestseller").exchange().flatMap(responseProcessor)
+            Mono<ProductResponse> toysBestSellers = requestCoalescer.coalesce("/toys/bestseller",
+                    () -> startpageMetrics.time("cb", "toys", route("toys", "/toys/bestseller", urlToys, newSpan)))
                     .onErrorResume(t -> {
-                        t.printStackTrace();
+                        errorEvents.report("toys", t);
                         return Mono.just(errorResponse);
                     });
 
-            return aggregateResults(start, hotdeals, fashionBestSellers, toysBestSellers);
-        } finally {
-            newSpan.finish();
+            return new Sections("cb", start, newSpan, hotdeals, fashionBestSellers, toysBestSellers);
         }
 
 
     }
 
 
-    private Mono<Startpage> getStartpageLoadBalanced() {
+    private Sections getSectionsLoadBalanced() {
         long start = System.currentTimeMillis();
 
 
+        // the server span of this request, Sleuth finishes it once the page has been written
         Span continuedSpan = this.tracer.toSpan(this.tracer.currentSpan().context());
 
-        try {
-
-            continuedSpan.name("allProductsLoadBalanced");
-            continuedSpan.tag("load.balanced", "true");
-            continuedSpan.tag("circuit.breaker", "true");
-
-
-            Mono<ProductResponse> hotdeals = webClient.get().uri("/lb/hotdeals").exchange().flatMap(responseProcessor)
-                    .onErrorResume(t -> {
-                        t.printStackTrace();
-                        return Mono.just(errorResponse);
-                    });
-            Mono<ProductResponse> fashionBestSellers = webClient.get().uri("/lb/fashion/bestseller").exchange().flatMap(responseProcessor)
-                    .onErrorResume(t -> {
-                        t.printStackTrace();
-                        return Mono.just(errorResponse);
-                    });
-            Mono<ProductResponse> toysBestSellers = webClient.get().uri("/lb/toys/bestseller").exchange().flatMap(responseProcessor)
-                    .onErrorResume(t -> {
-                        t.printStackTrace();
-                        return Mono.just(errorResponse);
-                    });
-
-            return aggregateResults(start, hotdeals, fashionBestSellers, toysBestSellers);
-
-        } finally {
-            continuedSpan.flush();
-        }
+        continuedSpan.name("allProductsLoadBalanced");
+        continuedSpan.tag("load.balanced", "true");
+        continuedSpan.tag("circuit.breaker", "true");
+
+
+        Mono<ProductResponse> hotdeals = requestCoalescer.coalesce("/lb/hotdeals",
+                () -> startpageMetrics.time("lb", "hotdeals",
+                        hedgingPolicy.hedge("hotdeals", () -> exchange("/lb/hotdeals"),
+                                StartPageController::isRemote)))
+                .onErrorResume(t -> {
+                    errorEvents.report("hotdeals", t);
+                    return Mono.just(errorResponse);
+                });
+        Mono<ProductResponse> fashionBestSellers = requestCoalescer.coalesce("/lb/fashion/bestseller",
+                () -> startpageMetrics.time("lb", "fashion",
+                        hedgingPolicy.hedge("fashion", () -> exchange("/lb/fashion/bestseller"),
+                                StartPageController::isRemote)))
+                .onErrorResume(t -> {
+                    errorEvents.report("fashion", t);
+                    return Mono.just(errorResponse);
+                });
+        Mono<ProductResponse> toysBestSellers = requestCoalescer.coalesce("/lb/toys/bestseller",
+                () -> startpageMetrics.time("lb", "toys",
+                        hedgingPolicy.hedge("toys", () -> exchange("/lb/toys/bestseller"),
+                                StartPageController::isRemote)))
+                .onErrorResume(t -> {
+                    errorEvents.report("toys", t);
+                    return Mono.just(errorResponse);
+                });
+
+        return new Sections("lb", start, null, hotdeals, fashionBestSellers, toysBestSellers);
     }
 
+    /**
+     * The legacy page still uses the blocking {@link RestTemplate}, so it is built on the bounded legacy scheduler
+     * instead of the Netty event loop. If the pool and its queue are full, the page is shed like a route call the
+     * concurrency limiter rejects: every section is a {@link ResponseType#FALLBACK} right away.
+     */
     private Mono<Startpage> getStartpageLegacy() {
 
         Span newSpan = this.tracer.nextSpan().name("allProductsLegacy");
         newSpan.tag("circuit.breaker", "false");
         newSpan.tag("load.balanced", "false");
 
-        try (Tracer.SpanInScope ws = this.tracer.withSpanInScope(newSpan.start())) {
+        return Mono.fromCallable(() -> {
+            try (Tracer.SpanInScope ws = this.tracer.withSpanInScope(newSpan.start())) {
 
-            Startpage page = new Startpage();
+                Startpage page = new Startpage();
 
-            long start = System.currentTimeMillis();
+                long start = System.currentTimeMillis();
+                long startNanos = System.nanoTime();
 
-            // Get Responses from remote services
-            page.setFashionResponse(getProductResponse(urlFashion));
-            page.setToysResponse(getProductResponse(urlToys));
-            page.setHotDealsResponse(getProductResponse(urlHotDeals));
+                // Get Responses from remote services
+                page.setFashionResponse(startpageMetrics.time("legacy", "fashion", () -> getProductResponse(urlFashion)));
+                page.setToysResponse(startpageMetrics.time("legacy", "toys", () -> getProductResponse(urlToys)));
+                page.setHotDealsResponse(startpageMetrics.time("legacy", "hotdeals", () -> getProductResponse(urlHotDeals)));
 
-            // Summary
-            page.setStatusFashion(page.getFashionResponse().getResponseType().name());
-            page.setStatusToys(page.getToysResponse().getResponseType().name());
-            page.setStatusHotDeals(page.getHotDealsResponse().getResponseType().name());
+                // Summary
+                page.setStatusFashion(page.getFashionResponse().getResponseType().name());
+                page.setStatusToys(page.getToysResponse().getResponseType().name());
+                page.setStatusHotDeals(page.getHotDealsResponse().getResponseType().name());
 
-            // Request duration
-            page.setDuration(System.currentTimeMillis() - start);
+                // Request duration
+                page.setDuration(System.currentTimeMillis() - start);
+                startpageMetrics.page("legacy", page, startNanos);
 
-            return Mono.just(page);
-        } finally {
-            newSpan.finish();
-        }
+                return page;
+            }
+        }).subscribeOn(legacyScheduler)
+                .onErrorResume(RejectedExecutionException.class, e -> Mono.just(shedStartpageLegacy(newSpan)))
+                .doFinally(signal -> newSpan.finish());
 
     }
 
-    private Mono<Startpage> aggregateResults(long start, Mono<ProductResponse> hotdeals, Mono<ProductResponse> fashionBestSellers, Mono<ProductResponse> toysBestSellers) {
+    private Startpage shedStartpageLegacy(Span span) {
+        span.start().tag("failure", "shed");
+        long startNanos = System.nanoTime();
+
+        ProductResponse fallback = new ProductResponse(ResponseType.FALLBACK, Collections.emptyList());
+        Startpage page = new Startpage();
+        page.setFashionResponse(fallback);
+        page.setToysResponse(fallback);
+        page.setHotDealsResponse(fallback);
+        page.setStatusFashion(ResponseType.FALLBACK.name());
+        page.setStatusToys(ResponseType.FALLBACK.name());
+        page.setStatusHotDeals(ResponseType.FALLBACK.name());
+        startpageMetrics.page("legacy", page, startNanos);
+
+        return page;
+    }
+
+    Mono<Startpage> aggregateResults(String mode, long start, Mono<ProductResponse> hotdeals, Mono<ProductResponse> fashionBestSellers, Mono<ProductResponse> toysBestSellers) {
+        return aggregateResults(new Sections(mode, start, null, hotdeals, fashionBestSellers, toysBestSellers));
+    }
+
+    private Mono<Startpage> aggregateResults(Sections sections) {
+        String mode = sections.mode;
+        long start = sections.start;
+        long startNanos = System.nanoTime();
+        Mono<ProductResponse> hotdeals = productResponseCache.get(ProductResponseCache.key(mode, "hotdeals"), sections.hotdeals);
+        Mono<ProductResponse> fashionBestSellers = productResponseCache.get(ProductResponseCache.key(mode, "fashion"), sections.fashion);
+        Mono<ProductResponse> toysBestSellers = productResponseCache.get(ProductResponseCache.key(mode, "toys"), sections.toys);
+        sections.lookedUp.run();
+
         Mono<Startpage> page = Mono.zip(hotdeals, fashionBestSellers, toysBestSellers).flatMap(t -> {
             Startpage p = new Startpage();
             ProductResponse deals = t.getT1();
@@ -204,17 +448,76 @@ public class StartPageController {
             p.setStatusToys(toys.getResponseType().name());
             // Request duration
             p.setDuration(System.currentTimeMillis() - start);
+            startpageMetrics.page(mode, p, startNanos);
 
             return Mono.just(p);
         });
         return page;
     }
 
+    /**
+     * Emits every section as soon as its backend has answered (or failed), fastest first, and ends with a
+     * {@link StartpageSummary} once all three are in. The sections go through the same response cache as
+     * {@link #aggregateResults}.
+     */
+    Flux<StartpageEvent> streamResults(String mode, long start, Mono<ProductResponse> hotdeals, Mono<ProductResponse> fashionBestSellers, Mono<ProductResponse> toysBestSellers) {
+        return streamResults(new Sections(mode, start, null, hotdeals, fashionBestSellers, toysBestSellers));
+    }
+
+    private Flux<StartpageEvent> streamResults(Sections loaders) {
+        String mode = loaders.mode;
+        long start = loaders.start;
+        return Flux.defer(() -> {
+            long startNanos = System.nanoTime();
+            Startpage p = new Startpage();
+            StartpageSummary summary = new StartpageSummary();
+
+            Mono<ProductResponse> hotdeals = productResponseCache.get(ProductResponseCache.key(mode, "hotdeals"), loaders.hotdeals);
+            Mono<ProductResponse> fashionBestSellers = productResponseCache.get(ProductResponseCache.key(mode, "fashion"), loaders.fashion);
+            Mono<ProductResponse> toysBestSellers = productResponseCache.get(ProductResponseCache.key(mode, "toys"), loaders.toys);
+            loaders.lookedUp.run();
+
+            Flux<StartpageEvent> sections = Flux.merge(
+                    hotdeals.map(deals -> {
+                        p.setHotDealsResponse(deals);
+                        p.setStatusHotDeals(deals.getResponseType().name());
+                        summary.setDurationHotDeals(System.currentTimeMillis() - start);
+                        return new StartpageSection("hotdeals", summary.getDurationHotDeals(), deals);
+                    }),
+                    fashionBestSellers.map(fashion -> {
+                        p.setFashionResponse(fashion);
+                        p.setStatusFashion(fashion.getResponseType().name());
+                        summary.setDurationFashion(System.currentTimeMillis() - start);
+                        return new StartpageSection("fashion", summary.getDurationFashion(), fashion);
+                    }),
+                    toysBestSellers.map(toys -> {
+                        p.setToysResponse(toys);
+                        p.setStatusToys(toys.getResponseType().name());
+                        summary.setDurationToys(System.currentTimeMillis() - start);
+                        return new StartpageSection("toys", summary.getDurationToys(), toys);
+                    }));
+
+            return sections.concatWith(Mono.fromCallable(() -> {
+                p.setDuration(System.currentTimeMillis() - start);
+                startpageMetrics.page(mode, p, startNanos);
+
+                summary.setDuration(p.getDuration());
+                summary.setStatusFashion(p.getStatusFashion());
+                summary.setStatusToys(p.getStatusToys());
+                summary.setStatusHotDeals(p.getStatusHotDeals());
+                return summary;
+            }));
+        });
+    }
+
 
     private ProductResponse getProductResponse(String url) {
         ProductResponse response = new ProductResponse();
 
-        response.setProducts(restClient.exchange(url, HttpMethod.GET, null, new ParameterizedTypeReference<List<Product>>() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT, ProductMediaTypes.accept(wireFormat));
+
+        response.setProducts(restClient.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), new ParameterizedTypeReference<List<Product>>() {
         }).getBody());
 
         response.setResponseType(ResponseType.REMOTE_SERVICE);
@@ -222,25 +525,131 @@ public class StartPageController {
         return response;
     }
 
+    private Mono<ProductResponse> getBatchSection(String mode, Mono<Map<String, ProductResponse>> batch, List<String> names,
+                                                  String section, String url, Span span) {
+        names.add(section);
+        return batch.flatMap(responses -> responses.containsKey(section)
+                ? Mono.just(responses.get(section))
+                : getProductResponseReactive(mode, section, url, span))
+                .onErrorResume(t -> Mono.just(errorResponse));
+    }
+
+    private Mono<ProductResponse> getProductResponseReactive(String mode, String backend, String url, Span span) {
+        return requestCoalescer.coalesce(url, () -> startpageMetrics.time(mode, backend,
+                exchange(url).timeout(Duration.ofMillis(timeoutMillis))))
+                .onErrorResume(t -> {
+                    if (t instanceof java.util.concurrent.TimeoutException) {
+                        span.tag("failure", "timeout");
+                    }
+                    errorEvents.report(backend, t);
+                    return Mono.just(errorResponse);
+                });
+    }
+
+    /**
+     * Calls a backend through its gateway route, either in-process with the route's limit and Hystrix command or over
+     * HTTP through the gateway itself.
+     */
+    private Mono<ProductResponse> route(String route, String path, String url, Span span) {
+        if (circuitBreakerDispatch.equalsIgnoreCase("loopback")) {
+            return exchange(path);
+        }
+        return routeDispatcher.dispatch(route, span, () -> exchange(url));
+    }
+
+    /**
+     * Requests the product list conditionally if an ETag for this URI is known. Relative URIs are resolved against
+     * the gateway itself, absolute URIs call the backend directly.
+     */
+    // only answers of the service itself win a hedged race, not an early fallback or error
+    private static boolean isRemote(ProductResponse response) {
+        return response.getResponseType() == ResponseType.REMOTE_SERVICE;
+    }
+
+    private Mono<ProductResponse> exchange(String uri) {
+        ProductETagCache.Entry cached = productETagCache.get(uri);
+
+        WebClient.RequestHeadersSpec<?> request = webClient.get().uri(uri)
+                .header(HttpHeaders.ACCEPT, ProductMediaTypes.accept(wireFormat));
+        if (cached != null) {
+            request = request.header(HttpHeaders.IF_NONE_MATCH, cached.getETag());
+        }
+
+        return request.exchange().flatMap(clientResponse -> processResponse(clientResponse, uri, cached));
+    }
+
     private ParameterizedTypeReference<Product> productParameterizedTypeReference =
             new ParameterizedTypeReference<Product>() {
             };
 
-    private Function<ClientResponse, Mono<ProductResponse>> responseProcessor = clientResponse -> {
+    Mono<ProductResponse> processResponse(ClientResponse clientResponse, String uri, ProductETagCache.Entry cached) {
         HttpHeaders headers = clientResponse.headers().asHttpHeaders();
 
+        // background cache refreshes run without a current span
+        Span currentSpan = this.tracer.currentSpan();
+
         if (headers.containsKey("fallback") && headers.get("fallback").contains("true")) {
-            this.tracer.currentSpan().tag("failure", "fallback");
+            if (currentSpan != null) {
+                currentSpan.tag("failure", "fallback");
+            }
 
             return Mono.just(new ProductResponse(ResponseType.FALLBACK, Collections.emptyList()));
 
         } else if (clientResponse.statusCode().isError()) {
-            this.tracer.currentSpan().tag("failure", "error");
+            if (currentSpan != null) {
+                currentSpan.tag("failure", "error");
+            }
             // HTTP Error Codes are not handled by Hystrix!?
             return Mono.just(new ProductResponse(ResponseType.ERROR, Collections.emptyList()));
+
+        } else if (clientResponse.statusCode() == HttpStatus.NOT_MODIFIED && cached != null) {
+            // Unchanged since the last request, skip decoding
+            return clientResponse.bodyToMono(Void.class)
+                    .then(Mono.just(new ProductResponse(ResponseType.REMOTE_SERVICE, cached.getProducts())));
         }
 
         return clientResponse.bodyToFlux(productParameterizedTypeReference).collectList()
+                .doOnNext(products -> productETagCache.put(uri, headers.getETag(), products))
                 .flatMap(products -> Mono.just(new ProductResponse(ResponseType.REMOTE_SERVICE, products)));
-    };
+    }
+
+    /**
+     * The three pending sections of one startpage request and the span that has to be finished with it.
+     */
+    private static class Sections {
+
+        private final String mode;
+        private final long start;
+        private final Span span;
+        private final Supplier<Mono<ProductResponse>> hotdeals;
+        private final Supplier<Mono<ProductResponse>> fashion;
+        private final Supplier<Mono<ProductResponse>> toys;
+        private final Runnable lookedUp;
+
+        private Sections(String mode, long start, Span span, Mono<ProductResponse> hotdeals,
+                         Mono<ProductResponse> fashion, Mono<ProductResponse> toys) {
+            this(mode, start, span, () -> hotdeals, () -> fashion, () -> toys, () -> {
+            });
+        }
+
+        // the loaders are invoked by the response cache for the sections it cannot answer, lookedUp after all three
+        private Sections(String mode, long start, Span span, Supplier<Mono<ProductResponse>> hotdeals,
+                         Supplier<Mono<ProductResponse>> fashion, Supplier<Mono<ProductResponse>> toys,
+                         Runnable lookedUp) {
+            this.mode = mode;
+            this.start = start;
+            this.span = span;
+            this.hotdeals = hotdeals;
+            this.fashion = fashion;
+            this.toys = toys;
+            this.lookedUp = lookedUp;
+        }
+
+        // finished with the page, so the failure tags set by the backend calls end up in the span
+        private void finish() {
+            if (span != null) {
+                span.finish();
+            }
+        }
+    }
 }
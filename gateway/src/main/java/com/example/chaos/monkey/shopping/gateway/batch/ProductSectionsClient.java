@@ -0,0 +1,68 @@
+package com.example.chaos.monkey.shopping.gateway.batch;
+
+import com.example.chaos.monkey.shopping.domain.ProductMediaTypes;
+import com.example.chaos.monkey.shopping.domain.ProductSection;
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fetches several startpage sections with one request to the {@code sections} endpoint of a catalogue service
+ * ({@code rest.endpoint.sections}), instead of one request per backend.
+ * <p>
+ * A section the service answered {@link ProductSection.Status#OK} becomes a {@link ResponseType#REMOTE_SERVICE}
+ * response, a section it does not serve is left out so the caller can fetch it from its own backend. Timeouts,
+ * connection failures and error status codes fail the whole batch.
+ *
+ * @author Benjamin Wilms
+ */
+@Component
+public class ProductSectionsClient {
+
+    private final WebClient webClient;
+    private final String url;
+    private final String wireFormat;
+    private final long timeoutMillis;
+
+    public ProductSectionsClient(WebClient webClient,
+                                 @Value("${rest.endpoint.sections}") String url,
+                                 @Value("${startpage.wire-format:smile}") String wireFormat,
+                                 @Value("${startpage.timeout-millis:1000}") long timeoutMillis) {
+        this.webClient = webClient;
+        this.url = url;
+        this.wireFormat = wireFormat;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public Mono<Map<String, ProductResponse>> fetch(List<String> names) {
+        String uri = UriComponentsBuilder.fromHttpUrl(url).queryParam("names", String.join(",", names)).toUriString();
+
+        return webClient.get().uri(uri)
+                .header(HttpHeaders.ACCEPT, ProductMediaTypes.accept(wireFormat))
+                .retrieve()
+                .bodyToFlux(ProductSection.class)
+                .collectList()
+                .timeout(Duration.ofMillis(timeoutMillis))
+                .map(ProductSectionsClient::toResponses);
+    }
+
+    static Map<String, ProductResponse> toResponses(List<ProductSection> sections) {
+        Map<String, ProductResponse> responses = new HashMap<>();
+        for (ProductSection section : sections) {
+            if (section.getStatus() == ProductSection.Status.OK && section.getProducts() != null) {
+                responses.put(section.getName(), new ProductResponse(ResponseType.REMOTE_SERVICE, section.getProducts()));
+            }
+        }
+        return responses;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.chaos.monkey.shopping.gateway.cache;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Remembers the last decoded product list and its ETag per backend URI, so that requests can be sent with
+ * {@code If-None-Match} and a {@code 304 Not Modified} answer can reuse the list without decoding a body.
+ *
+ * @author Benjamin Wilms
+ */
+@Component
+public class ProductETagCache {
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public Entry get(String uri) {
+        return entries.get(uri);
+    }
+
+    public void put(String uri, String eTag, List<Product> products) {
+        if (eTag == null) {
+            entries.remove(uri);
+        } else {
+            entries.put(uri, new Entry(eTag, Collections.unmodifiableList(products)));
+        }
+    }
+
+    public static class Entry {
+
+        private final String eTag;
+        private final List<Product> products;
+
+        private Entry(String eTag, List<Product> products) {
+            this.eTag = eTag;
+            this.products = products;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public List<Product> getProducts() {
+            return products;
+        }
+    }
+}
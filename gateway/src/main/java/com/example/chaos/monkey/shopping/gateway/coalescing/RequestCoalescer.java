@@ -0,0 +1,65 @@
+package com.example.chaos.monkey.shopping.gateway.coalescing;
+
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for the backend calls of the startpage: concurrent calls with the same key share one in-flight
+ * {@link Mono} instead of each sending an identical request. A flight ends with its result (or error), the next call
+ * after that starts a new one, so nothing is kept beyond the duration of the backend request.
+ * <p>
+ * Calls that joined a running flight are counted in {@code startpage.coalesced}.
+ *
+ * @author Benjamin Wilms
+ */
+@Component
+public class RequestCoalescer {
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final ConcurrentMap<String, Flight> flights = new ConcurrentHashMap<>();
+
+    public RequestCoalescer(MeterRegistry meterRegistry,
+                            @Value("${startpage.coalescing.enabled:true}") boolean enabled) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+    }
+
+    public Mono<ProductResponse> coalesce(String key, Supplier<Mono<ProductResponse>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+
+        return Mono.defer(() -> {
+            Flight flight = flights.computeIfAbsent(key, k -> new Flight(k, call.get()));
+
+            if (!flight.started.compareAndSet(false, true)) {
+                meterRegistry.counter("startpage.coalesced", "call", key).increment();
+            }
+            return flight.response;
+        });
+    }
+
+    int inFlight() {
+        return flights.size();
+    }
+
+    private class Flight {
+
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final Mono<ProductResponse> response;
+
+        private Flight(String key, Mono<ProductResponse> call) {
+            // a waiter that cancels does not cancel the flight for the others
+            this.response = call.doFinally(signal -> flights.remove(key, this)).cache();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.chaos.monkey.shopping.gateway.dispatch;
+
+import brave.Span;
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import com.example.chaos.monkey.shopping.gateway.errors.ErrorEventReporter;
+import com.example.chaos.monkey.shopping.gateway.limit.RouteConcurrencyLimiter;
+import com.netflix.concurrency.limits.Limiter;
+import com.netflix.hystrix.HystrixCommandGroupKey;
+import com.netflix.hystrix.HystrixCommandKey;
+import com.netflix.hystrix.HystrixObservableCommand;
+import org.springframework.cloud.gateway.filter.factory.HystrixGatewayFilterFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import rx.Observable;
+import rx.RxReactiveStreams;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Runs a backend call with the same protection as the gateway route of that backend, without the HTTP round trip
+ * through the gateway's own server: the route's concurrency limit, then a Hystrix command with the route's command
+ * key, so timeouts, circuit breaker state and metrics are shared with the route.
+ * <p>
+ * Where the route would forward to {@code /fallback}, the call answers with a {@link ResponseType#FALLBACK} section,
+ * tags the span and reports the error event just like the fallback endpoint.
+ *
+ * @author Benjamin Wilms
+ */
+@Component
+public class InProcessRouteDispatcher {
+
+    // the group Spring Cloud Gateway uses for the commands of its Hystrix filters
+    private static final HystrixCommandGroupKey ROUTE_GROUP =
+            HystrixCommandGroupKey.Factory.asKey(HystrixGatewayFilterFactory.class.getSimpleName());
+
+    private final RouteConcurrencyLimiter concurrencyLimiter;
+    private final ErrorEventReporter errorEvents;
+
+    public InProcessRouteDispatcher(RouteConcurrencyLimiter concurrencyLimiter, ErrorEventReporter errorEvents) {
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.errorEvents = errorEvents;
+    }
+
+    /**
+     * @param route the route id, also the Hystrix command name of all routes of the startpage
+     * @param span  tagged on fallback, may be {@code null}
+     */
+    public Mono<ProductResponse> dispatch(String route, Span span, Supplier<Mono<ProductResponse>> call) {
+        return Mono.defer(() -> {
+            Optional<Limiter.Listener> acquired = concurrencyLimiter.acquire(route);
+
+            if (!acquired.isPresent()) {
+                // shed like the route's limit filter, which only counts the rejection
+                return Mono.just(fallback(span));
+            }
+
+            Limiter.Listener listener = acquired.get();
+            AtomicBoolean released = new AtomicBoolean();
+
+            return Mono.from(RxReactiveStreams.toPublisher(new RouteCommand(route, span, call).toObservable()))
+                    .doOnNext(response -> {
+                        if (released.compareAndSet(false, true)) {
+                            if (response.getResponseType() == ResponseType.REMOTE_SERVICE) {
+                                listener.onSuccess();
+                            } else {
+                                listener.onDropped();
+                            }
+                        }
+                    })
+                    .doOnError(t -> {
+                        if (released.compareAndSet(false, true)) {
+                            listener.onDropped();
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (released.compareAndSet(false, true)) {
+                            listener.onIgnore();
+                        }
+                    });
+        });
+    }
+
+    private static ProductResponse fallback(Span span) {
+        if (span != null) {
+            span.tag("failure", "fallback");
+        }
+        return new ProductResponse(ResponseType.FALLBACK, Collections.emptyList());
+    }
+
+    private class RouteCommand extends HystrixObservableCommand<ProductResponse> {
+
+        private final String route;
+        private final Span span;
+        private final Supplier<Mono<ProductResponse>> call;
+
+        private RouteCommand(String route, Span span, Supplier<Mono<ProductResponse>> call) {
+            super(Setter.withGroupKey(ROUTE_GROUP).andCommandKey(HystrixCommandKey.Factory.asKey(route)));
+            this.route = route;
+            this.span = span;
+            this.call = call;
+        }
+
+        @Override
+        protected Observable<ProductResponse> construct() {
+            return RxReactiveStreams.toObservable(call.get());
+        }
+
+        @Override
+        protected Observable<ProductResponse> resumeWithFallback() {
+            Throwable cause = getExecutionException();
+            errorEvents.report(route, "fallback-" + (cause != null ? cause.getClass().getSimpleName() : "unknown"), cause);
+
+            return Observable.just(fallback(span));
+        }
+    }
+}
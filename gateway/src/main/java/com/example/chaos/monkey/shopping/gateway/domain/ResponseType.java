@@ -5,5 +5,5 @@ package com.example.chaos.monkey.shopping.gateway.domain;
  */
 public enum ResponseType {
 
-    REMOTE_SERVICE, SECOND_TRY, FALLBACK, ERROR;
+    REMOTE_SERVICE, SECOND_TRY, FALLBACK, ERROR, CACHED;
 }
@@ -0,0 +1,16 @@
+package com.example.chaos.monkey.shopping.gateway.domain;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+/**
+ * Element of the streamed startpage, written with a {@code type} of {@code section} or {@code summary}.
+ *
+ * @author Benjamin Wilms
+ */
+@JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+@JsonSubTypes({
+        @JsonSubTypes.Type(value = StartpageSection.class, name = "section"),
+        @JsonSubTypes.Type(value = StartpageSummary.class, name = "summary")})
+public interface StartpageEvent {
+}
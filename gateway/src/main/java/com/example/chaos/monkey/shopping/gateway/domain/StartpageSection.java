@@ -0,0 +1,20 @@
+package com.example.chaos.monkey.shopping.gateway.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One section of the streamed startpage, {@code duration} is the time since the request started.
+ *
+ * @author Benjamin Wilms
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class StartpageSection implements StartpageEvent {
+
+    private String section;
+    private long duration;
+    private ProductResponse response;
+}
@@ -0,0 +1,26 @@
+package com.example.chaos.monkey.shopping.gateway.domain;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Last element of the streamed startpage: the statuses of {@link Startpage} and when each section was written.
+ *
+ * @author Benjamin Wilms
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@JsonPropertyOrder({ "duration", "statusFashion", "statusToys", "statusHotDeals", "durationFashion", "durationToys", "durationHotDeals" })
+public class StartpageSummary implements StartpageEvent {
+
+    private long duration;
+    private String statusFashion;
+    private String statusToys;
+    private String statusHotDeals;
+    private long durationFashion;
+    private long durationToys;
+    private long durationHotDeals;
+}
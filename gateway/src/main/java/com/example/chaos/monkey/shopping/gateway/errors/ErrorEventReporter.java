@@ -0,0 +1,140 @@
+package com.example.chaos.monkey.shopping.gateway.errors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Failures on the startpage path are reported here instead of being printed where they happen. Reporting only
+ * counts the failure per backend and failure type and, at most once per interval and key, queues the exception as
+ * a sample, so the Netty event loop never formats a stack trace or waits for the console.
+ * <p>
+ * A single background thread logs the sampled stack traces and, every summary interval, one line with the counts
+ * since the last summary. Samples that do not fit into the queue are only counted.
+ *
+ * @author Benjamin Wilms
+ */
+@Component
+public class ErrorEventReporter {
+
+    private static final Logger log = LoggerFactory.getLogger(ErrorEventReporter.class);
+
+    private final long sampleIntervalNanos;
+    private final ConcurrentMap<String, Key> keys = new ConcurrentHashMap<>();
+    private final BlockingQueue<Sample> samples;
+    private final LongAdder droppedSamples = new LongAdder();
+    private final ScheduledExecutorService executor;
+
+    public ErrorEventReporter(@Value("${startpage.error-events.sample-interval-millis:10000}") long sampleIntervalMillis,
+                              @Value("${startpage.error-events.summary-interval-millis:10000}") long summaryIntervalMillis,
+                              @Value("${startpage.error-events.queue-size:100}") int queueSize) {
+        this.sampleIntervalNanos = TimeUnit.MILLISECONDS.toNanos(sampleIntervalMillis);
+        this.samples = new ArrayBlockingQueue<>(queueSize);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("error-events-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        executor.scheduleWithFixedDelay(this::logSamples, 1, 1, TimeUnit.SECONDS);
+        executor.scheduleWithFixedDelay(this::logSummary, summaryIntervalMillis, summaryIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void report(String backend, Throwable t) {
+        report(backend, t.getClass().getSimpleName(), t);
+    }
+
+    /**
+     * @param t may be {@code null} if there is no exception, e.g. for a fallback without known cause
+     */
+    public void report(String backend, String failure, Throwable t) {
+        Key key = keys.computeIfAbsent(backend + "/" + failure, Key::new);
+        key.count.increment();
+
+        long now = System.nanoTime();
+        long nextSample = key.nextSample.get();
+        if (now - nextSample >= 0 && key.nextSample.compareAndSet(nextSample, now + sampleIntervalNanos)) {
+            if (!samples.offer(new Sample(key.name, t))) {
+                droppedSamples.increment();
+            }
+        }
+    }
+
+    Map<String, Long> counts() {
+        Map<String, Long> counts = new TreeMap<>();
+        keys.forEach((name, key) -> counts.put(name, key.count.sum()));
+        return counts;
+    }
+
+    int queuedSamples() {
+        return samples.size();
+    }
+
+    private void logSamples() {
+        Sample sample;
+        while ((sample = samples.poll()) != null) {
+            if (sample.throwable != null) {
+                log.warn("Sampled startpage failure {}", sample.key, sample.throwable);
+            } else {
+                log.warn("Sampled startpage failure {}", sample.key);
+            }
+        }
+    }
+
+    private void logSummary() {
+        StringBuilder summary = new StringBuilder();
+        keys.values().stream().sorted((a, b) -> a.name.compareTo(b.name)).forEach(key -> {
+            long count = key.count.sumThenReset();
+            if (count > 0) {
+                summary.append(summary.length() == 0 ? "" : ", ").append(key.name).append('=').append(count);
+            }
+        });
+
+        long dropped = droppedSamples.sumThenReset();
+        if (summary.length() > 0) {
+            log.warn("Startpage failures since last summary: {} ({} samples dropped)", summary, dropped);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        logSamples();
+        logSummary();
+    }
+
+    private static class Key {
+
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final AtomicLong nextSample = new AtomicLong(System.nanoTime());
+
+        private Key(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class Sample {
+
+        private final String key;
+        private final Throwable throwable;
+
+        private Sample(String key, Throwable throwable) {
+            this.key = key;
+            this.throwable = throwable;
+        }
+    }
+}
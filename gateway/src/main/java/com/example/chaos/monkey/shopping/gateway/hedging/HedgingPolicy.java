@@ -0,0 +1,137 @@
+package com.example.chaos.monkey.shopping.gateway.hedging;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.Signal;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests: if an attempt has not answered within the configured percentile of the latencies observed for
+ * its backend, a second attempt is started and the first successful answer wins. An unsuccessful answer (an error or
+ * a result the caller does not accept, like a fallback) only wins if the other attempt is not successful either, the
+ * primary's answer is returned then.
+ * <p>
+ * The latency of every primary attempt is recorded once it has completed, also if it failed or the hedge answered
+ * first, so the percentile is not taken over the fast answers only. A primary attempt is therefore only cancelled
+ * with the request, not when the hedge wins.
+ * <p>
+ * Every primary attempt adds {@code budget-percent} hundredths of a token to a shared budget and every hedge costs
+ * one token, so hedging never adds more than that share of extra load.
+ *
+ * @author Benjamin Wilms
+ */
+@Component
+public class HedgingPolicy {
+
+    private static final int SAMPLES = 256;
+    private static final int RECALCULATE_EVERY = 32;
+    private static final long MAX_BUDGET = 1000;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long budgetPercent;
+    private final MeterRegistry meterRegistry;
+
+    // hundredths of a hedge
+    private final AtomicLong budget = new AtomicLong();
+    private final ConcurrentMap<String, LatencySamples> latencies = new ConcurrentHashMap<>();
+
+    public HedgingPolicy(MeterRegistry meterRegistry,
+                         @Value("${startpage.hedging.enabled:true}") boolean enabled,
+                         @Value("${startpage.hedging.percentile:0.95}") double percentile,
+                         @Value("${startpage.hedging.min-delay-millis:10}") long minDelayMillis,
+                         @Value("${startpage.hedging.budget-percent:10}") long budgetPercent) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.budgetPercent = budgetPercent;
+    }
+
+    /**
+     * @param successful whether a result may win the race, e.g. only responses from the remote service
+     */
+    public <T> Mono<T> hedge(String backend, Supplier<Mono<T>> attempt, Predicate<? super T> successful) {
+        if (!enabled) {
+            return attempt.get();
+        }
+
+        LatencySamples samples = latencies.computeIfAbsent(backend, key -> new LatencySamples());
+
+        budget.accumulateAndGet(budgetPercent, (current, deposit) -> Math.min(current + deposit, MAX_BUDGET * 100));
+
+        return Mono.defer(() -> {
+            // subscribed right away, and not cancelled by the race so that its latency is recorded
+            MonoProcessor<Signal<T>> primary = timed(attempt, samples).materialize().toProcessor();
+
+            // only started while the primary is still running
+            Mono<Signal<T>> hedged = Mono.delay(Duration.ofNanos(Math.max(samples.delayNanos, minDelayNanos)))
+                    .takeUntilOther(primary)
+                    .flatMap(tick -> {
+                        if (budget.getAndUpdate(current -> current >= 100 ? current - 100 : current) < 100) {
+                            meterRegistry.counter("startpage.hedging.requests", "backend", backend, "outcome", "budget_exhausted").increment();
+                            return Mono.empty();
+                        }
+                        meterRegistry.counter("startpage.hedging.requests", "backend", backend, "outcome", "hedged").increment();
+                        return attempt.get().materialize();
+                    });
+
+            return Flux.merge(primary, hedged)
+                    .filter(signal -> signal.isOnNext() && successful.test(signal.get()))
+                    .next()
+                    .switchIfEmpty(primary)
+                    .doOnCancel(primary::cancel)
+                    .<T>dematerialize();
+        });
+    }
+
+    /**
+     * @return the current hedge delay of a backend, {@link Long#MAX_VALUE} until enough latencies have been recorded
+     */
+    long delayNanos(String backend) {
+        LatencySamples samples = latencies.get(backend);
+        return samples == null ? Long.MAX_VALUE : samples.delayNanos;
+    }
+
+    private <T> Mono<T> timed(Supplier<Mono<T>> attempt, LatencySamples samples) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return attempt.get().doFinally(signal -> samples.record(System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * Ring buffer of the last latencies, written by the event-loop threads the attempts complete on.
+     */
+    private class LatencySamples {
+
+        private final long[] values = new long[SAMPLES];
+        private long count;
+        // no hedging until enough samples have been recorded
+        private volatile long delayNanos = Long.MAX_VALUE;
+
+        private synchronized void record(long nanos) {
+            values[(int) (count % SAMPLES)] = nanos;
+            count++;
+
+            if (count % RECALCULATE_EVERY == 0) {
+                long[] sorted = Arrays.copyOf(values, (int) Math.min(count, SAMPLES));
+                Arrays.sort(sorted);
+                delayNanos = sorted[(int) Math.min(sorted.length - 1, Math.floor(percentile * sorted.length))];
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.chaos.monkey.shopping.gateway.http;
+
+import com.example.chaos.monkey.shopping.http.HostConnectionPools;
+import com.example.chaos.monkey.shopping.http.PooledHttpClients;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+
+/**
+ * Pooled keep-alive HTTP clients with connect and read timeouts (see {@link PooledHttpClients}): one
+ * {@link HostConnectionPools} shared by the gateway routes and the startpage {@link WebClient}, and a pooling Apache
+ * HttpClient behind the legacy {@link RestTemplate}.
+ *
+ * @author Benjamin Wilms
+ */
+@Configuration
+public class HttpClientConfiguration {
+
+    @Value("${server.port}")
+    private int serverPort;
+
+    @Bean
+    public PooledHttpClients pooledHttpClients(Environment environment) {
+        return PooledHttpClients.of(environment);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public HostConnectionPools gatewayConnectionPools(PooledHttpClients pooledHttpClients,
+                                                      MeterRegistry meterRegistry) {
+        return pooledHttpClients.connectionPools("gateway", meterRegistry);
+    }
+
+    /**
+     * Replaces the client Spring Cloud Gateway would create for its routes.
+     */
+    @Bean
+    public HttpClient gatewayHttpClient(PooledHttpClients pooledHttpClients,
+                                        HostConnectionPools gatewayConnectionPools) {
+        return pooledHttpClients.httpClient(gatewayConnectionPools);
+    }
+
+    @Bean
+    public WebClient webClient(HttpClient gatewayHttpClient) {
+        return WebClient.builder().baseUrl("http://localhost:" + serverPort)
+                .clientConnector(new ReactorClientHttpConnector(gatewayHttpClient)).build();
+    }
+
+    @Bean
+    public RestTemplate legacyRestTemplate(PooledHttpClients pooledHttpClients, MeterRegistry meterRegistry) {
+        return pooledHttpClients.restTemplate("legacy", meterRegistry);
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.chaos.monkey.shopping.gateway.limit;
+
+import com.netflix.concurrency.limits.Limiter;
+import com.netflix.concurrency.limits.limit.Gradient2Limit;
+import com.netflix.concurrency.limits.limiter.SimpleLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Adaptive per-route concurrency limit in front of the Hystrix filters. The limit follows the measured round trip
+ * times (gradient of the short-term against the long-term RTT), so it grows while a backend keeps up and shrinks as
+ * soon as requests start to queue.
+ * <p>
+ * Requests above the limit are not forwarded at all but answered immediately with {@code 503} and the same
+ * {@code fallback: true} header as {@code /fallback}, so the startpage maps them to a fallback section instead of
+ * waiting for the Hystrix timeout. Fallback, 5xx and failed exchanges count as dropped and lower the limit.
+ *
+ * @author Benjamin Wilms
+ */
+@Component
+public class RouteConcurrencyLimiter {
+
+    private static final byte[] EMPTY_PRODUCTS = "[]".getBytes(StandardCharsets.UTF_8);
+
+    private static final Limiter.Listener NO_LIMIT = new Limiter.Listener() {
+        @Override
+        public void onSuccess() {
+        }
+
+        @Override
+        public void onIgnore() {
+        }
+
+        @Override
+        public void onDropped() {
+        }
+    };
+
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentMap<String, SimpleLimiter<Void>> limiters = new ConcurrentHashMap<>();
+
+    public RouteConcurrencyLimiter(MeterRegistry meterRegistry,
+                                   @Value("${startpage.concurrency-limit.enabled:true}") boolean enabled,
+                                   @Value("${startpage.concurrency-limit.initial-limit:20}") int initialLimit,
+                                   @Value("${startpage.concurrency-limit.min-limit:5}") int minLimit,
+                                   @Value("${startpage.concurrency-limit.max-limit:200}") int maxLimit) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    public GatewayFilter forRoute(String route) {
+        if (!enabled) {
+            return (exchange, chain) -> chain.filter(exchange);
+        }
+
+        SimpleLimiter<Void> limiter = limiters.computeIfAbsent(route, this::createLimiter);
+
+        return (exchange, chain) -> {
+            Optional<Limiter.Listener> acquired = acquire(route, limiter);
+
+            if (!acquired.isPresent()) {
+                return reject(exchange);
+            }
+
+            Limiter.Listener listener = acquired.get();
+            AtomicBoolean released = new AtomicBoolean();
+
+            return chain.filter(exchange)
+                    .doOnSuccess(v -> {
+                        if (released.compareAndSet(false, true)) {
+                            if (isDropped(exchange.getResponse())) {
+                                listener.onDropped();
+                            } else {
+                                listener.onSuccess();
+                            }
+                        }
+                    })
+                    .doOnError(t -> {
+                        if (released.compareAndSet(false, true)) {
+                            listener.onDropped();
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (released.compareAndSet(false, true)) {
+                            listener.onIgnore();
+                        }
+                    });
+        };
+    }
+
+    /**
+     * A slot of the route's limit for a call that bypasses the route's filter chain, empty if the call has to be shed.
+     */
+    public Optional<Limiter.Listener> acquire(String route) {
+        if (!enabled) {
+            return Optional.of(NO_LIMIT);
+        }
+
+        return acquire(route, limiters.computeIfAbsent(route, this::createLimiter));
+    }
+
+    private Optional<Limiter.Listener> acquire(String route, SimpleLimiter<Void> limiter) {
+        Optional<Limiter.Listener> acquired = limiter.acquire(null);
+
+        if (!acquired.isPresent()) {
+            meterRegistry.counter("gateway.concurrency.rejected", "route", route).increment();
+        }
+        return acquired;
+    }
+
+    private SimpleLimiter<Void> createLimiter(String route) {
+        SimpleLimiter<Void> limiter = SimpleLimiter.newBuilder()
+                .named(route)
+                .limit(Gradient2Limit.newBuilder()
+                        .initialLimit(initialLimit)
+                        .minLimit(minLimit)
+                        .maxConcurrency(maxLimit)
+                        .build())
+                .build();
+
+        Tags tags = Tags.of("route", route);
+        meterRegistry.gauge("gateway.concurrency.limit", tags, limiter, SimpleLimiter::getLimit);
+        meterRegistry.gauge("gateway.concurrency.in.flight", tags, limiter, SimpleLimiter::getInflight);
+
+        return limiter;
+    }
+
+    private static boolean isDropped(ServerHttpResponse response) {
+        List<String> fallback = response.getHeaders().get("fallback");
+        HttpStatus status = response.getStatusCode();
+
+        return (fallback != null && fallback.contains("true")) || (status != null && status.is5xxServerError());
+    }
+
+    private static Mono<Void> reject(ServerWebExchange exchange) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().add("fallback", "true");
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON_UTF8);
+
+        DataBuffer body = response.bufferFactory().wrap(EMPTY_PRODUCTS);
+        return response.writeWith(Mono.just(body));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.chaos.monkey.shopping.gateway.loadbalancer;
+
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.LoadBalancerClientFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR;
+import static org.springframework.cloud.gateway.support.ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR;
+
+/**
+ * Feeds {@link InstanceLatencyStats} with the in-flight count and latency of every request of an {@code lb://} route,
+ * after {@link LoadBalancerClientFilter} has chosen the instance. Cancelled requests (e.g. Hystrix timeouts) are
+ * recorded with the time until cancellation.
+ *
+ * @author Benjamin Wilms
+ */
+@Component
+public class InstanceLatencyFilter implements GlobalFilter, Ordered {
+
+    private final InstanceLatencyStats stats;
+
+    public InstanceLatencyFilter(InstanceLatencyStats stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(GATEWAY_ROUTE_ATTR);
+        URI url = exchange.getAttribute(GATEWAY_REQUEST_URL_ATTR);
+
+        if (route == null || url == null || !"lb".equals(route.getUri().getScheme())) {
+            return chain.filter(exchange);
+        }
+
+        String hostPort = url.getHost() + ":" + url.getPort();
+        long start = System.nanoTime();
+        stats.requestStarted(hostPort);
+
+        return chain.filter(exchange)
+                .doFinally(signal -> stats.requestFinished(hostPort, System.nanoTime() - start));
+    }
+
+    @Override
+    public int getOrder() {
+        return LoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 1;
+    }
+}
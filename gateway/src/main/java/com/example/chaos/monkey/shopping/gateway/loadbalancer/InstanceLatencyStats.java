@@ -0,0 +1,87 @@
+package com.example.chaos.monkey.shopping.gateway.loadbalancer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-instance peak EWMA latency and in-flight request count of the load-balanced routes, keyed by
+ * {@code host:port}.
+ * <p>
+ * A slow response raises the average at once, while fast responses and idle time only let it decay, so an instance
+ * under a latency assault is drained quickly and probed again once its average has decayed.
+ *
+ * @author Benjamin Wilms
+ */
+@Component
+public class InstanceLatencyStats {
+
+    private final MeterRegistry meterRegistry;
+    private final double decayNanos;
+    private final ConcurrentMap<String, Instance> instances = new ConcurrentHashMap<>();
+
+    public InstanceLatencyStats(MeterRegistry meterRegistry,
+                                @Value("${startpage.load-balancer.decay-millis:10000}") long decayMillis) {
+        this.meterRegistry = meterRegistry;
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(decayMillis);
+    }
+
+    public void requestStarted(String hostPort) {
+        instance(hostPort).inFlight.incrementAndGet();
+    }
+
+    public void requestFinished(String hostPort, long latencyNanos) {
+        Instance instance = instance(hostPort);
+        instance.inFlight.decrementAndGet();
+        instance.record(latencyNanos, System.nanoTime());
+    }
+
+    /**
+     * Expected cost of sending one more request to the instance: decayed latency times (in-flight requests + 1).
+     * Unknown instances cost nothing, so they get traffic and latency samples first.
+     */
+    public double cost(String hostPort) {
+        Instance instance = instances.get(hostPort);
+        if (instance == null) {
+            return 0;
+        }
+        return instance.latency(System.nanoTime()) * (instance.inFlight.get() + 1);
+    }
+
+    private Instance instance(String hostPort) {
+        return instances.computeIfAbsent(hostPort, key -> {
+            Instance instance = new Instance();
+            Gauge.builder("gateway.loadbalancer.latency.ewma", instance, i -> i.latency(System.nanoTime()) / 1_000_000)
+                    .tag("instance", key)
+                    .baseUnit("milliseconds")
+                    .register(meterRegistry);
+            Gauge.builder("gateway.loadbalancer.in.flight", instance.inFlight, AtomicInteger::get)
+                    .tag("instance", key)
+                    .register(meterRegistry);
+            return instance;
+        });
+    }
+
+    private class Instance {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private double ewmaNanos;
+        private long lastUpdate = System.nanoTime();
+
+        private synchronized void record(long latencyNanos, long now) {
+            double weight = Math.exp(-(now - lastUpdate) / decayNanos);
+            ewmaNanos = latencyNanos > ewmaNanos ? latencyNanos : ewmaNanos * weight + latencyNanos * (1 - weight);
+            lastUpdate = now;
+        }
+
+        private synchronized double latency(long now) {
+            return ewmaNanos * Math.exp(-(now - lastUpdate) / decayNanos);
+        }
+    }
+}
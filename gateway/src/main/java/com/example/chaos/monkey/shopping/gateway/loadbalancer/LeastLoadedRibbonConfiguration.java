@@ -0,0 +1,18 @@
+package com.example.chaos.monkey.shopping.gateway.loadbalancer;
+
+import com.netflix.loadbalancer.IRule;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Ribbon client configuration for all {@code lb://} routes. Deliberately not annotated with {@code @Configuration}:
+ * it must only be picked up by the per-client Ribbon contexts, each of which needs its own rule instance.
+ *
+ * @author Benjamin Wilms
+ */
+public class LeastLoadedRibbonConfiguration {
+
+    @Bean
+    public IRule ribbonRule(InstanceLatencyStats stats) {
+        return new LeastLoadedRule(stats);
+    }
+}
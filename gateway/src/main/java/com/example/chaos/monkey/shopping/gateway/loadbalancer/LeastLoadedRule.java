@@ -0,0 +1,61 @@
+package com.example.chaos.monkey.shopping.gateway.loadbalancer;
+
+import com.netflix.client.config.IClientConfig;
+import com.netflix.loadbalancer.AbstractLoadBalancerRule;
+import com.netflix.loadbalancer.Server;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Power of two choices: picks two random reachable instances and routes to the one with the lower
+ * {@link InstanceLatencyStats#cost(String) cost}, so slow or busy instances are avoided without herding all traffic
+ * onto the single fastest one.
+ *
+ * @author Benjamin Wilms
+ */
+public class LeastLoadedRule extends AbstractLoadBalancerRule {
+
+    private final InstanceLatencyStats stats;
+
+    /**
+     * Used by Ribbon's {@code ZoneAwareLoadBalancer} to clone the rule for its per-zone balancers, which are only
+     * consulted with more than one zone. Without stats the choice between the two candidates is random.
+     */
+    public LeastLoadedRule() {
+        this(null);
+    }
+
+    public LeastLoadedRule(InstanceLatencyStats stats) {
+        this.stats = stats;
+    }
+
+    @Override
+    public Server choose(Object key) {
+        List<Server> servers = getLoadBalancer().getReachableServers();
+
+        if (servers.isEmpty()) {
+            return null;
+        } else if (servers.size() == 1) {
+            return servers.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(servers.size());
+        int second = random.nextInt(servers.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        Server a = servers.get(first);
+        Server b = servers.get(second);
+        if (stats == null) {
+            return a;
+        }
+        return stats.cost(a.getHostPort()) <= stats.cost(b.getHostPort()) ? a : b;
+    }
+
+    @Override
+    public void initWithNiwsConfig(IClientConfig clientConfig) {
+    }
+}
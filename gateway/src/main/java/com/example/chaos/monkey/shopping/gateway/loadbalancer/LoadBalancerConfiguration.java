@@ -0,0 +1,17 @@
+package com.example.chaos.monkey.shopping.gateway.loadbalancer;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.netflix.ribbon.RibbonClients;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Replaces Ribbon's round-robin with the latency-aware {@link LeastLoadedRule} unless
+ * {@code startpage.load-balancer.rule} is set to {@code round-robin}.
+ *
+ * @author Benjamin Wilms
+ */
+@Configuration
+@ConditionalOnProperty(name = "startpage.load-balancer.rule", havingValue = "least-loaded", matchIfMissing = true)
+@RibbonClients(defaultConfiguration = LeastLoadedRibbonConfiguration.class)
+public class LoadBalancerConfiguration {
+}
@@ -0,0 +1,105 @@
+package com.example.chaos.monkey.shopping.gateway.metrics;
+
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import com.example.chaos.monkey.shopping.gateway.domain.Startpage;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Latency breakdown of the startpage, tagged with the startpage {@code mode} (reactive, cb, lb, legacy, batch):
+ * <ul>
+ * <li>{@code startpage.backend.requests}: timer per {@code backend} and resulting {@code type}, one sample per call
+ * that actually left the gateway (cache hits are not timed), batch calls for several sections are
+ * {@code backend=sections}</li>
+ * <li>{@code startpage.backend.failures}: counter per {@code backend} and {@code reason} (fallback, timeout, error)</li>
+ * <li>{@code startpage.sections}: counter per {@code section} and {@link ResponseType} as delivered to the client</li>
+ * <li>{@code startpage.requests}: timer of the whole page</li>
+ * </ul>
+ * Percentile histograms are switched on for all {@code startpage.*} timers in {@code application.yml}.
+ *
+ * @author Benjamin Wilms
+ */
+@Component
+public class StartpageMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public StartpageMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Mono<ProductResponse> time(String mode, String backend, Mono<ProductResponse> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+
+            return call
+                    .doOnSuccess(response -> recordBackend(mode, backend,
+                            response != null ? response.getResponseType() : ResponseType.ERROR, start))
+                    .doOnError(t -> recordBackend(mode, backend, ResponseType.ERROR,
+                            isTimeout(t) ? "timeout" : "error", start));
+        });
+    }
+
+    public <T> Mono<T> timeBatch(String mode, Mono<T> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+
+            return call
+                    .doOnSuccess(sections -> recordBackend(mode, "sections", ResponseType.REMOTE_SERVICE, start))
+                    .doOnError(t -> recordBackend(mode, "sections", ResponseType.ERROR,
+                            isTimeout(t) ? "timeout" : "error", start));
+        });
+    }
+
+    public ProductResponse time(String mode, String backend, Supplier<ProductResponse> call) {
+        long start = System.nanoTime();
+
+        try {
+            ProductResponse response = call.get();
+            recordBackend(mode, backend, response.getResponseType(), start);
+            return response;
+        } catch (RuntimeException e) {
+            recordBackend(mode, backend, ResponseType.ERROR, start);
+            throw e;
+        }
+    }
+
+    public void page(String mode, Startpage page, long startNanos) {
+        meterRegistry.timer("startpage.requests", "mode", mode)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+
+        section(mode, "fashion", page.getFashionResponse());
+        section(mode, "toys", page.getToysResponse());
+        section(mode, "hotdeals", page.getHotDealsResponse());
+    }
+
+    private void section(String mode, String section, ProductResponse response) {
+        meterRegistry.counter("startpage.sections", "mode", mode, "section", section,
+                "type", response.getResponseType().name()).increment();
+    }
+
+    private void recordBackend(String mode, String backend, ResponseType type, long startNanos) {
+        String reason = type == ResponseType.FALLBACK ? "fallback" : type == ResponseType.ERROR ? "error" : null;
+        recordBackend(mode, backend, type, reason, startNanos);
+    }
+
+    private void recordBackend(String mode, String backend, ResponseType type, String failureReason, long startNanos) {
+        meterRegistry.timer("startpage.backend.requests", "mode", mode, "backend", backend, "type", type.name())
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+
+        if (failureReason != null) {
+            meterRegistry.counter("startpage.backend.failures", "mode", mode, "backend", backend, "reason", failureReason)
+                    .increment();
+        }
+    }
+
+    private static boolean isTimeout(Throwable t) {
+        return t instanceof TimeoutException || t instanceof org.springframework.cloud.gateway.support.TimeoutException;
+    }
+}
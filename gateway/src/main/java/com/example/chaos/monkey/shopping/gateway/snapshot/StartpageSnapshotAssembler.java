@@ -0,0 +1,261 @@
+package com.example.chaos.monkey.shopping.gateway.snapshot;
+
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import com.example.chaos.monkey.shopping.gateway.domain.Startpage;
+import com.example.chaos.monkey.shopping.gateway.errors.ErrorEventReporter;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Keeps a serialized {@link Startpage} ready, so serving the page is a copy of the same bytes for every user. A single
+ * background thread assembles the page every refresh interval and whenever {@link #refresh()} is called, e.g. by a
+ * backend that changed its products. Nothing is assembled before the first request for the snapshot.
+ * <p>
+ * A section whose backend fails keeps the products of its last successful fetch as {@link ResponseType#CACHED} for up
+ * to the max staleness, like the response cache of the other startpage modes. The status and fetch time of every
+ * section are in the {@code X-Startpage-Sections} header, the age of the snapshot in {@code Age} and the
+ * {@code startpage.snapshot.age} and {@code startpage.snapshot.section.age} gauges.
+ *
+ * @author Benjamin Wilms
+ */
+public class StartpageSnapshotAssembler {
+
+    static final String SECTIONS_HEADER = "X-Startpage-Sections";
+
+    // backstop only, the sections time out on their own
+    private static final Duration ASSEMBLY_TIMEOUT = Duration.ofSeconds(10);
+
+    private final Supplier<Mono<Startpage>> source;
+    private final ObjectMapper objectMapper;
+    private final ErrorEventReporter errorEvents;
+    private final long refreshMillis;
+    private final long maxStaleMillis;
+    private final Timer assemblyTimer;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicBoolean assembling = new AtomicBoolean();
+    private final AtomicBoolean refreshRequested = new AtomicBoolean();
+    private final MonoProcessor<Snapshot> first = MonoProcessor.create();
+    private final ScheduledExecutorService executor;
+    private volatile Snapshot current;
+
+    /**
+     * @param source one uncached build of the page, failed sections as {@link ResponseType#ERROR} or
+     *               {@link ResponseType#FALLBACK}
+     */
+    public StartpageSnapshotAssembler(Supplier<Mono<Startpage>> source, ObjectMapper objectMapper,
+                                      MeterRegistry meterRegistry, ErrorEventReporter errorEvents,
+                                      long refreshMillis, long maxStaleMillis) {
+        this.source = source;
+        this.objectMapper = objectMapper;
+        this.errorEvents = errorEvents;
+        this.refreshMillis = refreshMillis;
+        this.maxStaleMillis = maxStaleMillis;
+        this.assemblyTimer = meterRegistry.timer("startpage.snapshot.assembly");
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("startpage-snapshot-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+
+        meterRegistry.gauge("startpage.snapshot.age", Tags.empty(), this,
+                assembler -> ageSeconds(assembler.current, snapshot -> snapshot.assembledAt));
+        meterRegistry.gauge("startpage.snapshot.section.age", Tags.of("section", "hotdeals"), this,
+                assembler -> ageSeconds(assembler.current, snapshot -> snapshot.hotdeals.fetchedAt));
+        meterRegistry.gauge("startpage.snapshot.section.age", Tags.of("section", "fashion"), this,
+                assembler -> ageSeconds(assembler.current, snapshot -> snapshot.fashion.fetchedAt));
+        meterRegistry.gauge("startpage.snapshot.section.age", Tags.of("section", "toys"), this,
+                assembler -> ageSeconds(assembler.current, snapshot -> snapshot.toys.fetchedAt));
+    }
+
+    public Mono<ServerResponse> serve(ServerRequest request) {
+        Snapshot snapshot = current;
+        if (snapshot == null) {
+            start();
+            return first.flatMap(ready -> serve(request, ready));
+        }
+        return serve(request, snapshot);
+    }
+
+    /**
+     * Assembles a new snapshot as soon as the running assembly (if any) is done.
+     */
+    public void refresh() {
+        start();
+        executor.execute(this::assemble);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    Snapshot current() {
+        return current;
+    }
+
+    private Mono<ServerResponse> serve(ServerRequest request, Snapshot snapshot) {
+        long age = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - snapshot.assembledAt);
+
+        for (String ifNoneMatch : request.headers().header(HttpHeaders.IF_NONE_MATCH)) {
+            if (ifNoneMatch.contains(snapshot.eTag)) {
+                return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(snapshot.eTag)
+                        .header(HttpHeaders.AGE, Long.toString(age)).build();
+            }
+        }
+
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .eTag(snapshot.eTag)
+                .header(HttpHeaders.AGE, Long.toString(age))
+                .header(SECTIONS_HEADER, snapshot.sectionsHeader)
+                .syncBody(snapshot.json);
+    }
+
+    private void start() {
+        if (started.compareAndSet(false, true)) {
+            executor.scheduleWithFixedDelay(this::assemble, 0, refreshMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void assemble() {
+        if (!assembling.compareAndSet(false, true)) {
+            // picked up by the running assembly once it is done
+            refreshRequested.set(true);
+            return;
+        }
+
+        long start = System.nanoTime();
+        source.get()
+                .timeout(ASSEMBLY_TIMEOUT)
+                .doFinally(signal -> {
+                    assemblyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    assembling.set(false);
+                    if (refreshRequested.getAndSet(false)) {
+                        executor.execute(this::assemble);
+                    }
+                })
+                .subscribe(page -> publish(page, start), t -> errorEvents.report("snapshot", t));
+    }
+
+    private void publish(Startpage page, long startNanos) {
+        Snapshot previous = current;
+        long now = System.currentTimeMillis();
+
+        Section hotdeals = section(page.getHotDealsResponse(), previous != null ? previous.hotdeals : null, now);
+        Section fashion = section(page.getFashionResponse(), previous != null ? previous.fashion : null, now);
+        Section toys = section(page.getToysResponse(), previous != null ? previous.toys : null, now);
+
+        Startpage snapshot = new Startpage();
+        snapshot.setHotDealsResponse(hotdeals.response);
+        snapshot.setFashionResponse(fashion.response);
+        snapshot.setToysResponse(toys.response);
+        snapshot.setStatusHotDeals(hotdeals.response.getResponseType().name());
+        snapshot.setStatusFashion(fashion.response.getResponseType().name());
+        snapshot.setStatusToys(toys.response.getResponseType().name());
+
+        try {
+            // the ETag leaves out the duration, it only changes with the sections
+            String eTag = "W/\"" + md5Hex(objectMapper.writeValueAsBytes(snapshot)) + "\"";
+            snapshot.setDuration(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+
+            current = new Snapshot(objectMapper.writeValueAsBytes(snapshot), eTag, now, hotdeals, fashion, toys);
+            first.onNext(current);
+        } catch (JsonProcessingException e) {
+            errorEvents.report("snapshot", e);
+        }
+    }
+
+    private Section section(ProductResponse response, Section previous, long now) {
+        if (response.getResponseType() == ResponseType.REMOTE_SERVICE) {
+            return new Section(response, now);
+        }
+        if (previous != null && previous.fetchedAt > 0 && now - previous.fetchedAt <= maxStaleMillis) {
+            return new Section(new ProductResponse(ResponseType.CACHED, previous.response.getProducts()), previous.fetchedAt);
+        }
+        return new Section(response, 0);
+    }
+
+    private static double ageSeconds(Snapshot snapshot, Function<Snapshot, Long> fetchedAt) {
+        if (snapshot == null || fetchedAt.apply(snapshot) == 0) {
+            return Double.NaN;
+        }
+        return (System.currentTimeMillis() - fetchedAt.apply(snapshot)) / 1000.0;
+    }
+
+    private static String md5Hex(byte[] bytes) {
+        try {
+            StringBuilder hex = new StringBuilder(32);
+            for (byte b : MessageDigest.getInstance("MD5").digest(bytes)) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+
+    /**
+     * One assembled page with everything a response needs except the age.
+     */
+    static final class Snapshot {
+
+        final byte[] json;
+        final String eTag;
+        final long assembledAt;
+        final Section hotdeals;
+        final Section fashion;
+        final Section toys;
+        final String sectionsHeader;
+
+        private Snapshot(byte[] json, String eTag, long assembledAt, Section hotdeals, Section fashion, Section toys) {
+            this.json = json;
+            this.eTag = eTag;
+            this.assembledAt = assembledAt;
+            this.hotdeals = hotdeals;
+            this.fashion = fashion;
+            this.toys = toys;
+            this.sectionsHeader = "hotdeals=" + hotdeals + ", fashion=" + fashion + ", toys=" + toys;
+        }
+    }
+
+    /**
+     * A section of the snapshot and when its products were fetched, 0 if it has none.
+     */
+    static final class Section {
+
+        final ProductResponse response;
+        final long fetchedAt;
+
+        private Section(ProductResponse response, long fetchedAt) {
+            this.response = response;
+            this.fetchedAt = fetchedAt;
+        }
+
+        @Override
+        public String toString() {
+            return fetchedAt == 0 ? response.getResponseType().name()
+                    : response.getResponseType().name() + ";fetched=" + fetchedAt;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.chaos.monkey.shopping.gateway.snapshot;
+
+import com.example.chaos.monkey.shopping.gateway.StartPageController;
+import com.example.chaos.monkey.shopping.gateway.errors.ErrorEventReporter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RequestPredicate;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * {@code /startpage/snapshot}, and {@code /startpage} itself with {@code startpage.default-mode: snapshot}, served
+ * from the {@link StartpageSnapshotAssembler}. Router functions are matched before the annotated
+ * {@link StartPageController}, so the snapshot is written without going through the controller.
+ * {@code POST /startpage/snapshot/refresh} is the change notification for the backends.
+ *
+ * @author Benjamin Wilms
+ */
+@Configuration
+public class StartpageSnapshotConfiguration {
+
+    @Value("${startpage.default-mode:reactive}")
+    private String defaultMode;
+
+    // reactive or batch, how the assembler fetches the sections
+    @Value("${startpage.snapshot.source:reactive}")
+    private String source;
+
+    @Value("${startpage.snapshot.refresh-millis:1000}")
+    private long refreshMillis;
+
+    @Value("${startpage.snapshot.max-stale-millis:300000}")
+    private long maxStaleMillis;
+
+    @Bean(destroyMethod = "shutdown")
+    public StartpageSnapshotAssembler startpageSnapshotAssembler(StartPageController startPageController,
+                                                                 ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                                                                 ErrorEventReporter errorEvents) {
+        return new StartpageSnapshotAssembler(() -> startPageController.assembleStartpage(source), objectMapper,
+                meterRegistry, errorEvents, refreshMillis, maxStaleMillis);
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> startpageSnapshotRoutes(StartpageSnapshotAssembler startpageSnapshotAssembler) {
+        RequestPredicate snapshot = GET("/startpage/snapshot");
+        if (defaultMode.equalsIgnoreCase("snapshot")) {
+            snapshot = snapshot.or(GET("/startpage"));
+        }
+
+        return route(snapshot, startpageSnapshotAssembler::serve)
+                .andRoute(POST("/startpage/snapshot/refresh"), request -> {
+                    startpageSnapshotAssembler.refresh();
+                    return ServerResponse.accepted().build();
+                });
+    }
+}
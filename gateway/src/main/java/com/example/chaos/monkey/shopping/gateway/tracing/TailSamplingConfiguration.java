@@ -0,0 +1,33 @@
+package com.example.chaos.monkey.shopping.gateway.tracing;
+
+import brave.propagation.Propagation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Wraps Sleuth's {@link Propagation.Factory} in a {@link TailSamplingPropagation}, so that only the unsampled traces
+ * the {@link TailSamplingSpanHandler} admits are recorded locally.
+ *
+ * @author Benjamin Wilms
+ */
+@Configuration
+@ConditionalOnProperty(name = "startpage.tail-sampling.enabled", havingValue = "true", matchIfMissing = true)
+public class TailSamplingConfiguration {
+
+    // static, so that the post processor does not pull in the handler and its dependencies early
+    @Bean
+    public static BeanPostProcessor tailSamplingPropagationPostProcessor(
+            ObjectProvider<TailSamplingSpanHandler> handler) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof Propagation.Factory && !(bean instanceof TailSamplingPropagation)
+                        ? new TailSamplingPropagation((Propagation.Factory) bean, handler::getObject)
+                        : bean;
+            }
+        };
+    }
+}
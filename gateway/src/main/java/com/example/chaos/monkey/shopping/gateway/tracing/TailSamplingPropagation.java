@@ -0,0 +1,52 @@
+package com.example.chaos.monkey.shopping.gateway.tracing;
+
+import brave.propagation.Propagation;
+import brave.propagation.TraceContext;
+
+import java.util.function.Supplier;
+
+/**
+ * Sleuth's propagation, except that every new trace context is passed to
+ * {@link TailSamplingSpanHandler#admit(TraceContext)}, which decides whether an unsampled trace is recorded locally.
+ *
+ * @author Benjamin Wilms
+ */
+public class TailSamplingPropagation extends Propagation.Factory {
+
+    private final Propagation.Factory delegate;
+    private final Supplier<TailSamplingSpanHandler> handlerSupplier;
+    private volatile TailSamplingSpanHandler handler;
+
+    /**
+     * @param handlerSupplier looked up once the first span is created, the handler is created after the propagation
+     */
+    public TailSamplingPropagation(Propagation.Factory delegate, Supplier<TailSamplingSpanHandler> handlerSupplier) {
+        this.delegate = delegate;
+        this.handlerSupplier = handlerSupplier;
+    }
+
+    @Override
+    public <K> Propagation<K> create(Propagation.KeyFactory<K> keyFactory) {
+        return delegate.create(keyFactory);
+    }
+
+    @Override
+    public boolean supportsJoin() {
+        return delegate.supportsJoin();
+    }
+
+    @Override
+    public boolean requires128BitTraceId() {
+        return delegate.requires128BitTraceId();
+    }
+
+    @Override
+    public TraceContext decorate(TraceContext context) {
+        TailSamplingSpanHandler tailSampling = handler;
+        if (tailSampling == null) {
+            tailSampling = handlerSupplier.get();
+            handler = tailSampling;
+        }
+        return tailSampling.admit(delegate.decorate(context));
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.chaos.monkey.shopping.gateway.tracing;
+
+import brave.ErrorParser;
+import brave.Span;
+import brave.handler.FinishedSpanHandler;
+import brave.handler.MutableSpan;
+import brave.propagation.TraceContext;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import zipkin2.Endpoint;
+import zipkin2.reporter.Reporter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tail-based keep decision for the traces the head sampler ({@code spring.sleuth.sampler.rate}) did not sample.
+ * <p>
+ * An unsampled trace is recorded locally only if it is admitted by {@link #admit(TraceContext)} when its first span in
+ * the gateway is created (see {@link TailSamplingPropagation}), and only while the local roots of fewer than
+ * {@code max-traces} admitted traces are still open. The spans created for it afterwards inherit the recording. Any other unsampled trace stays
+ * unrecorded, as without this handler.
+ * <p>
+ * The spans of an admitted trace are buffered. As soon as one of them carries an {@code error}, {@code fallback} or
+ * {@code failure} tag, a 5xx status or took longer than the slow threshold, the buffered spans are reported and the
+ * trace is kept. If the local root (the server span of the incoming request) finishes first, the trace is dropped.
+ * Spans finishing after the decision follow it. Reporting goes through the regular asynchronous, batching Zipkin
+ * {@link Reporter}.
+ * <p>
+ * The downstream services only see the head decision, so a trace kept here contains the gateway spans only.
+ *
+ * @author Benjamin Wilms
+ */
+@Component
+@ConditionalOnProperty(name = "startpage.tail-sampling.enabled", havingValue = "true", matchIfMissing = true)
+public class TailSamplingSpanHandler extends FinishedSpanHandler {
+
+    // marks the first context of a trace that was not admitted, its children inherit it
+    private static final Object NOT_ADMITTED = new Object();
+
+    private final Reporter<zipkin2.Span> reporter;
+    private final ErrorParser errorParser;
+    private final String serviceName;
+    private final MeterRegistry meterRegistry;
+    private final long slowThresholdMicros;
+    private final long maxTraces;
+    private final Cache<String, LocalTrace> traces;
+    private final AtomicLong openTraces = new AtomicLong();
+
+    public TailSamplingSpanHandler(Reporter<zipkin2.Span> reporter, ErrorParser errorParser, MeterRegistry meterRegistry,
+                                   @Value("${spring.zipkin.service.name:${spring.application.name:default}}") String serviceName,
+                                   @Value("${startpage.tail-sampling.slow-threshold-millis:300}") long slowThresholdMillis,
+                                   @Value("${startpage.tail-sampling.max-traces:10000}") long maxTraces,
+                                   @Value("${startpage.tail-sampling.trace-timeout-millis:30000}") long traceTimeoutMillis) {
+        this.reporter = reporter;
+        this.errorParser = errorParser;
+        this.serviceName = serviceName;
+        this.meterRegistry = meterRegistry;
+        this.slowThresholdMicros = TimeUnit.MILLISECONDS.toMicros(slowThresholdMillis);
+        this.maxTraces = maxTraces;
+        this.traces = Caffeine.newBuilder()
+                .maximumSize(maxTraces)
+                .expireAfterWrite(traceTimeoutMillis, TimeUnit.MILLISECONDS)
+                .executor(Runnable::run)
+                .removalListener((String traceId, LocalTrace trace, RemovalCause cause) -> closeTrace(trace))
+                .build();
+    }
+
+    /**
+     * Decides whether an unsampled trace is recorded locally, called for every new trace context.
+     *
+     * @return the context, marked as {@link TraceContext#sampledLocal()} if the trace is recorded
+     */
+    TraceContext admit(TraceContext context) {
+        if (!Boolean.FALSE.equals(context.sampled()) || context.sampledLocal()
+                || context.extra().contains(NOT_ADMITTED)) {
+            // head-sampled, or the trace was already admitted or refused at its first span here
+            return context;
+        }
+
+        // requests the gateway sends to itself arrive without the local marker, but their trace is known
+        LocalTrace known = traces.getIfPresent(context.traceIdString());
+        if (known != null || openTraces.get() < maxTraces) {
+            if (known == null) {
+                openTraces.incrementAndGet();
+                traces.put(context.traceIdString(), new LocalTrace());
+            }
+            return context.toBuilder().sampledLocal(true).build();
+        }
+
+        countDecision("skipped");
+        List<Object> extra = new ArrayList<>(context.extra());
+        extra.add(NOT_ADMITTED);
+        return context.toBuilder().extra(Collections.unmodifiableList(extra)).build();
+    }
+
+    @Override
+    public boolean handle(TraceContext context, MutableSpan span) {
+        if (!Boolean.FALSE.equals(context.sampled())) {
+            // head-sampled, reported as usual
+            return true;
+        }
+
+        LocalTrace trace = traces.getIfPresent(context.traceIdString());
+        if (trace == null) {
+            // the trace was dropped or expired
+            return true;
+        }
+
+        // requests the gateway sends to itself join the caller's trace and span (shared), they are not a local root
+        boolean localRoot = (span.kind() == Span.Kind.SERVER && !span.shared()) || context.parentIdAsLong() == 0L;
+        for (FinishedSpan finished : trace.add(new FinishedSpan(context, span), keepReason(span), localRoot)) {
+            reporter.report(toZipkin(finished.context, finished.span));
+        }
+        if (localRoot && closeTrace(trace) && !trace.isKept()) {
+            // kept traces stay until they expire for the spans finishing after the local root
+            traces.invalidate(context.traceIdString());
+        }
+        return true;
+    }
+
+    /**
+     * @return if the trace was open
+     */
+    private boolean closeTrace(LocalTrace trace) {
+        if (trace != null && trace.close()) {
+            openTraces.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private String keepReason(MutableSpan span) {
+        if (span.error() != null || span.tag("error") != null) {
+            return "error";
+        }
+        if (span.tag("fallback") != null) {
+            return "fallback";
+        }
+        if (span.tag("failure") != null) {
+            return "failure";
+        }
+        String status = span.tag("http.status_code");
+        if (status != null && status.startsWith("5")) {
+            return "error";
+        }
+        if (span.startTimestamp() != 0 && span.finishTimestamp() - span.startTimestamp() >= slowThresholdMicros) {
+            return "slow";
+        }
+        return null;
+    }
+
+    private void countDecision(String decision) {
+        meterRegistry.counter("gateway.tracing.tail.decisions", "decision", decision).increment();
+    }
+
+    // the conversion of the Zipkin reporter of head-sampled spans, through the public span API
+    private zipkin2.Span toZipkin(TraceContext context, MutableSpan span) {
+        if (span.error() != null && span.tag("error") == null) {
+            errorParser.error(span.error(), span);
+        }
+
+        zipkin2.Span.Builder zipkin = zipkin2.Span.newBuilder()
+                .traceId(context.traceIdString())
+                .parentId(context.parentIdString())
+                .id(context.spanIdString())
+                .debug(context.debug())
+                .shared(span.shared())
+                .name(span.name())
+                .localEndpoint(Endpoint.newBuilder()
+                        .serviceName(span.localServiceName() != null ? span.localServiceName() : serviceName)
+                        .ip(span.localIp())
+                        .port(span.localPort())
+                        .build());
+        if (span.kind() != null) {
+            zipkin.kind(zipkin2.Span.Kind.valueOf(span.kind().name()));
+        }
+        if (span.startTimestamp() != 0) {
+            zipkin.timestamp(span.startTimestamp());
+            if (span.finishTimestamp() != 0) {
+                zipkin.duration(Math.max(span.finishTimestamp() - span.startTimestamp(), 1));
+            }
+        }
+        if (span.remoteServiceName() != null || span.remoteIp() != null) {
+            zipkin.remoteEndpoint(Endpoint.newBuilder()
+                    .serviceName(span.remoteServiceName())
+                    .ip(span.remoteIp())
+                    .port(span.remotePort())
+                    .build());
+        }
+        span.forEachTag(zipkin2.Span.Builder::putTag, zipkin);
+        span.forEachAnnotation(zipkin2.Span.Builder::addAnnotation, zipkin);
+        return zipkin.build();
+    }
+
+    private class LocalTrace {
+
+        private List<FinishedSpan> spans = new ArrayList<>();
+        private boolean decided;
+        private boolean kept;
+        private boolean closed;
+
+        /**
+         * @return if the local root was still open
+         */
+        private synchronized boolean close() {
+            boolean open = !closed;
+            closed = true;
+            return open;
+        }
+
+        private synchronized boolean isKept() {
+            return kept;
+        }
+
+        /**
+         * @return the spans to report now
+         */
+        private synchronized List<FinishedSpan> add(FinishedSpan finished, String reason, boolean localRoot) {
+            if (decided) {
+                return kept ? Collections.singletonList(finished) : Collections.emptyList();
+            }
+
+            spans.add(finished);
+            if (reason == null && !localRoot) {
+                return Collections.emptyList();
+            }
+
+            decided = true;
+            kept = reason != null;
+            countDecision(kept ? reason : "dropped");
+            List<FinishedSpan> toReport = kept ? spans : Collections.emptyList();
+            spans = Collections.emptyList();
+            return toReport;
+        }
+    }
+
+    private static class FinishedSpan {
+
+        private final TraceContext context;
+        private final MutableSpan span;
+
+        private FinishedSpan(TraceContext context, MutableSpan span) {
+            this.context = context;
+            this.span = span;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.chaos.monkey.shopping.gateway;
+
+import brave.Tracing;
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import com.example.chaos.monkey.shopping.gateway.batch.ProductSectionsClient;
+import com.example.chaos.monkey.shopping.gateway.cache.ProductETagCache;
+import com.example.chaos.monkey.shopping.gateway.cache.ProductResponseCache;
+import com.example.chaos.monkey.shopping.gateway.coalescing.RequestCoalescer;
+import com.example.chaos.monkey.shopping.gateway.dispatch.InProcessRouteDispatcher;
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import com.example.chaos.monkey.shopping.gateway.domain.Startpage;
+import com.example.chaos.monkey.shopping.gateway.domain.StartpageEvent;
+import com.example.chaos.monkey.shopping.gateway.domain.StartpageSection;
+import com.example.chaos.monkey.shopping.gateway.domain.StartpageSummary;
+import com.example.chaos.monkey.shopping.gateway.errors.ErrorEventReporter;
+import com.example.chaos.monkey.shopping.gateway.hedging.HedgingPolicy;
+import com.example.chaos.monkey.shopping.gateway.limit.RouteConcurrencyLimiter;
+import com.example.chaos.monkey.shopping.gateway.metrics.StartpageMetrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class StartPageControllerTest {
+
+    private final ProductResponse remote = new ProductResponse(ResponseType.REMOTE_SERVICE,
+            Collections.singletonList(new Product(1, "LEGO Star Wars Yodas Hut", ProductCategory.TOYS)));
+
+    private final List<zipkin2.Span> spans = new CopyOnWriteArrayList<>();
+    private final Tracing tracing = Tracing.newBuilder().spanReporter(spans::add).build();
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ErrorEventReporter errorEvents = new ErrorEventReporter(60000, 60000, 100);
+    private final List<String> sectionRequests = new CopyOnWriteArrayList<>();
+    // the sections endpoint only serves hotdeals
+    private final WebClient sectionsWebClient = WebClient.builder().exchangeFunction(request -> {
+        sectionRequests.add(request.url().getQuery());
+        return Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body("[{\"name\":\"hotdeals\",\"status\":\"OK\",\"products\":[]}]")
+                .build());
+    }).build();
+    // the product backends answer right away, except hotdeals
+    private Duration hotDealsDelay = Duration.ofMillis(100);
+    private HttpStatus backendStatus = HttpStatus.OK;
+    private final WebClient backendWebClient = WebClient.builder().exchangeFunction(request -> {
+        Mono<ClientResponse> response = Mono.just(ClientResponse.create(backendStatus)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body("[]")
+                .build());
+        return request.url().getPath().startsWith("/hotdeals") ? response.delayElement(hotDealsDelay) : response;
+    }).build();
+    private final RestTemplate legacyRestTemplate = new RestTemplate();
+    private final StartPageController controller = controller(Schedulers.immediate());
+
+    @Before
+    public void setUp() {
+        setBackends(controller);
+    }
+
+    @After
+    public void tearDown() {
+        errorEvents.shutdown();
+        tracing.close();
+    }
+
+    @Test
+    public void sectionsCachedByOneModeAreFetchedAgainByAnother() {
+        controller.aggregateResults("reactive", 0, Mono.just(remote), Mono.just(remote), Mono.just(remote)).block();
+
+        AtomicInteger cbCalls = new AtomicInteger();
+        Mono<ProductResponse> cb = Mono.fromCallable(() -> {
+            cbCalls.incrementAndGet();
+            return remote;
+        });
+        Startpage circuitBreaker = controller.aggregateResults("cb", 0, cb, cb, cb).block();
+
+        assertEquals(3, cbCalls.get());
+        assertEquals("REMOTE_SERVICE", circuitBreaker.getStatusToys());
+        assertEquals("CACHED", controller.aggregateResults("reactive", 0, Mono.never(), Mono.never(), Mono.never())
+                .block().getStatusToys());
+    }
+
+    @Test
+    public void batchOnlyRequestsTheSectionsTheCacheCannotAnswer() {
+        // fashion and toys fail on their own backends and stay uncached
+        backendStatus = HttpStatus.SERVICE_UNAVAILABLE;
+
+        Startpage first = controller.delegateStartpageRequest(Optional.of("batch")).block();
+        Startpage second = controller.delegateStartpageRequest(Optional.of("batch")).block();
+
+        assertEquals("REMOTE_SERVICE", first.getStatusHotDeals());
+        assertEquals("CACHED", second.getStatusHotDeals());
+        assertEquals(Arrays.asList("names=hotdeals,fashion,toys", "names=fashion,toys"), sectionRequests);
+    }
+
+    @Test
+    public void legacyPageIsFetchedWithTheRestTemplate() {
+        MockRestServiceServer server = MockRestServiceServer.bindTo(legacyRestTemplate).build();
+        String toys = "[{\"id\":1,\"name\":\"LEGO Star Wars Yodas Hut\",\"category\":\"TOYS\"}]";
+        // fetched one after the other in this order
+        for (String url : Arrays.asList("http://localhost:8081/fashion/bestseller",
+                "http://localhost:8082/toys/bestseller", "http://localhost:8083/hotdeals")) {
+            server.expect(requestTo(url)).andRespond(withSuccess(toys, MediaType.APPLICATION_JSON));
+        }
+
+        Startpage page = controller.delegateStartpageRequest(Optional.of("legacy")).block(Duration.ofSeconds(5));
+
+        server.verify();
+        assertEquals("REMOTE_SERVICE", page.getStatusFashion());
+        assertEquals("REMOTE_SERVICE", page.getStatusToys());
+        assertEquals("REMOTE_SERVICE", page.getStatusHotDeals());
+        assertEquals(remote.getProducts(), page.getToysResponse().getProducts());
+    }
+
+    @Test
+    public void legacyPageIsShedWhenThePoolIsFull() {
+        StartPageController full = controller(Schedulers.fromExecutor(task -> {
+            throw new RejectedExecutionException("startpage-legacy queue is full");
+        }));
+        setBackends(full);
+
+        Startpage page = full.delegateStartpageRequest(Optional.of("legacy")).block(Duration.ofSeconds(5));
+
+        assertEquals("FALLBACK", page.getStatusFashion());
+        assertEquals("FALLBACK", page.getStatusToys());
+        assertEquals("FALLBACK", page.getStatusHotDeals());
+        assertEquals(3, registry.find("startpage.sections").tags("mode", "legacy", "type", "FALLBACK").counters()
+                .stream().mapToDouble(Counter::count).sum(), 0);
+        assertEquals("shed", spans.stream().filter(span -> "allproductslegacy".equals(span.name())).findFirst()
+                .map(span -> span.tags().get("failure")).orElse(null));
+    }
+
+    @Test
+    public void streamEmitsTheFastestSectionFirstAndTheSummaryLast() {
+        StepVerifier.create(controller.streamResults("reactive", System.currentTimeMillis(),
+                Mono.just(remote).delayElement(Duration.ofMillis(100)), Mono.just(remote), Mono.just(remote)))
+                .assertNext(event -> assertEquals("fashion", ((StartpageSection) event).getSection()))
+                .assertNext(event -> assertEquals("toys", ((StartpageSection) event).getSection()))
+                .assertNext(event -> {
+                    StartpageSection hotDeals = (StartpageSection) event;
+                    assertEquals("hotdeals", hotDeals.getSection());
+                    assertTrue(hotDeals.getDuration() >= 100);
+                })
+                .assertNext(event -> {
+                    StartpageSummary summary = (StartpageSummary) event;
+                    assertEquals("REMOTE_SERVICE", summary.getStatusHotDeals());
+                    assertEquals("REMOTE_SERVICE", summary.getStatusFashion());
+                    assertEquals("REMOTE_SERVICE", summary.getStatusToys());
+                    assertTrue(summary.getDuration() >= summary.getDurationHotDeals());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    public void cancelledStreamFinishesTheSpan() {
+        hotDealsDelay = Duration.ofSeconds(10);
+
+        StepVerifier.create(controller.streamStartpageRequest(Optional.empty()))
+                .expectNextCount(2)
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+
+        assertEquals(1, spans.stream().filter(span -> "allproductsreactive".equals(span.name())).count());
+    }
+
+    @Test
+    public void streamIsWrittenAsNdjsonAndRefusedAsPlainJson() {
+        // well above a cold start of the JSON codecs
+        hotDealsDelay = Duration.ofSeconds(1);
+        WebTestClient client = WebTestClient.bindToController(controller).build();
+        // binding injected the unresolved @Value placeholders
+        setBackends(controller);
+
+        client.get().uri("/startpage/stream").accept(MediaType.APPLICATION_JSON).exchange()
+                .expectStatus().isEqualTo(HttpStatus.NOT_ACCEPTABLE);
+
+        List<StartpageEvent> events = client.get().uri("/startpage/stream").accept(MediaType.APPLICATION_STREAM_JSON).exchange()
+                .expectStatus().isOk()
+                .returnResult(StartpageEvent.class).getResponseBody()
+                .collectList().block(Duration.ofSeconds(5));
+
+        assertEquals(4, events.size());
+        assertEquals("hotdeals", ((StartpageSection) events.get(2)).getSection());
+        assertTrue(events.get(3) instanceof StartpageSummary);
+    }
+
+    private StartPageController controller(Scheduler legacyScheduler) {
+        return new StartPageController(backendWebClient, tracing.tracer(), legacyScheduler,
+                new ProductResponseCache(registry, true, 60000, 300000, 100), new ProductETagCache(),
+                new HedgingPolicy(registry, false, 0.95, 10, 10), new StartpageMetrics(registry), errorEvents,
+                new RequestCoalescer(registry, true), legacyRestTemplate,
+                new InProcessRouteDispatcher(new RouteConcurrencyLimiter(registry, false, 20, 5, 200), errorEvents),
+                new ProductSectionsClient(sectionsWebClient, "http://localhost:8083/hotdeals/sections", "smile", 1000));
+    }
+
+    private static void setBackends(StartPageController controller) {
+        ReflectionTestUtils.setField(controller, "urlHotDeals", "http://localhost:8083/hotdeals");
+        ReflectionTestUtils.setField(controller, "urlFashion", "http://localhost:8081/fashion/bestseller");
+        ReflectionTestUtils.setField(controller, "urlToys", "http://localhost:8082/toys/bestseller");
+        ReflectionTestUtils.setField(controller, "timeoutMillis", 5000L);
+        ReflectionTestUtils.setField(controller, "wireFormat", "json");
+    }
+}
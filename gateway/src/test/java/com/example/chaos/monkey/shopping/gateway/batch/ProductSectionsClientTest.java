@@ -0,0 +1,48 @@
+package com.example.chaos.monkey.shopping.gateway.batch;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import com.example.chaos.monkey.shopping.domain.ProductSection;
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class ProductSectionsClientTest {
+
+    private final List<Product> toys = Collections.singletonList(new Product(1, "LEGO Star Wars Yodas Hut", ProductCategory.TOYS));
+
+    @Test
+    public void servedSectionsAreRemoteServiceResponses() {
+        Map<String, ProductResponse> responses = ProductSectionsClient.toResponses(Arrays.asList(
+                new ProductSection("toys", ProductSection.Status.OK, toys),
+                new ProductSection("fashion", ProductSection.Status.OK, Collections.emptyList())));
+
+        assertEquals(2, responses.size());
+        assertEquals(ResponseType.REMOTE_SERVICE, responses.get("toys").getResponseType());
+        assertEquals(toys, responses.get("toys").getProducts());
+        assertEquals(ResponseType.REMOTE_SERVICE, responses.get("fashion").getResponseType());
+    }
+
+    @Test
+    public void unavailableSectionsAreLeftToTheirBackend() {
+        Map<String, ProductResponse> responses = ProductSectionsClient.toResponses(Arrays.asList(
+                new ProductSection("toys", ProductSection.Status.OK, toys),
+                new ProductSection("hotdeals", ProductSection.Status.UNAVAILABLE, Collections.emptyList()),
+                new ProductSection("fashion", null, null)));
+
+        assertEquals(1, responses.size());
+        assertFalse(responses.containsKey("hotdeals"));
+        assertFalse(responses.containsKey("fashion"));
+    }
+}
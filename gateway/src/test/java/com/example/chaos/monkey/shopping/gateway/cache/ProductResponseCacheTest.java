@@ -0,0 +1,61 @@
+package com.example.chaos.monkey.shopping.gateway.cache;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class ProductResponseCacheTest {
+
+    private final ProductResponse remote = new ProductResponse(ResponseType.REMOTE_SERVICE,
+            Collections.singletonList(new Product(1, "LEGO Star Wars Yodas Hut", ProductCategory.TOYS)));
+
+    private final ProductResponse fallback = new ProductResponse(ResponseType.FALLBACK, Collections.emptyList());
+
+    @Test
+    public void servesCachedResponseWithinTtl() {
+        ProductResponseCache cache = new ProductResponseCache(new SimpleMeterRegistry(), true, 60000, 60000, 10);
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals(ResponseType.REMOTE_SERVICE,
+                cache.get("toys", () -> Mono.fromCallable(() -> { calls.incrementAndGet(); return remote; })).block().getResponseType());
+
+        ProductResponse cached = cache.get("toys", () -> Mono.fromCallable(() -> { calls.incrementAndGet(); return remote; })).block();
+
+        assertEquals(ResponseType.CACHED, cached.getResponseType());
+        assertEquals(remote.getProducts(), cached.getProducts());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void servesStaleResponseWhenRefreshFallsBack() {
+        ProductResponseCache cache = new ProductResponseCache(new SimpleMeterRegistry(), true, 0, 60000, 10);
+
+        cache.get("toys", () -> Mono.just(remote)).block();
+
+        ProductResponse stale = cache.get("toys", () -> Mono.just(fallback)).block();
+
+        assertEquals(ResponseType.CACHED, stale.getResponseType());
+        assertEquals(remote.getProducts(), stale.getProducts());
+    }
+
+    @Test
+    public void doesNotStoreFallbackResponses() {
+        ProductResponseCache cache = new ProductResponseCache(new SimpleMeterRegistry(), true, 60000, 60000, 10);
+
+        cache.get("toys", () -> Mono.just(fallback)).block();
+
+        assertEquals(ResponseType.REMOTE_SERVICE, cache.get("toys", () -> Mono.just(remote)).block().getResponseType());
+    }
+}
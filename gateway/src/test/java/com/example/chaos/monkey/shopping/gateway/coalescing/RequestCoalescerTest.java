@@ -0,0 +1,65 @@
+package com.example.chaos.monkey.shopping.gateway.coalescing;
+
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class RequestCoalescerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RequestCoalescer coalescer = new RequestCoalescer(meterRegistry, true);
+
+    @Test
+    public void concurrentCallsShareOneFlight() {
+        AtomicInteger calls = new AtomicInteger();
+        MonoProcessor<ProductResponse> backend = MonoProcessor.create();
+
+        List<MonoProcessor<ProductResponse>> waiters = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            waiters.add(coalescer.coalesce("/toys/bestseller", () -> {
+                calls.incrementAndGet();
+                return backend;
+            }).toProcessor());
+        }
+
+        ProductResponse response = new ProductResponse(ResponseType.REMOTE_SERVICE, Collections.emptyList());
+        backend.onNext(response);
+
+        assertEquals(1, calls.get());
+        for (MonoProcessor<ProductResponse> waiter : waiters) {
+            assertSame(response, waiter.block(Duration.ofSeconds(1)));
+        }
+        assertEquals(99, meterRegistry.counter("startpage.coalesced", "call", "/toys/bestseller").count(), 0);
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    public void nextCallAfterFlightStartsANewOne() {
+        AtomicInteger calls = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            coalescer.coalesce("/toys/bestseller", () -> {
+                calls.incrementAndGet();
+                return Mono.error(new IllegalStateException());
+            }).onErrorResume(t -> Mono.empty()).block();
+        }
+
+        assertEquals(3, calls.get());
+        assertEquals(0, coalescer.inFlight());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.chaos.monkey.shopping.gateway.dispatch;
+
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import com.example.chaos.monkey.shopping.gateway.errors.ErrorEventReporter;
+import com.example.chaos.monkey.shopping.gateway.limit.RouteConcurrencyLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class InProcessRouteDispatcherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ErrorEventReporter errorEvents = new ErrorEventReporter(10000, 10000, 100);
+
+    @Test
+    public void passesBackendResponseThrough() {
+        InProcessRouteDispatcher dispatcher = dispatcher(false);
+        ProductResponse response = new ProductResponse(ResponseType.REMOTE_SERVICE, Collections.emptyList());
+
+        assertSame(response, dispatcher.dispatch("dispatch-ok", null, () -> Mono.just(response))
+                .block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    public void failedCallFallsBack() {
+        InProcessRouteDispatcher dispatcher = dispatcher(false);
+
+        ProductResponse response = dispatcher.dispatch("dispatch-error", null,
+                () -> Mono.error(new IllegalStateException())).block(Duration.ofSeconds(5));
+
+        assertEquals(ResponseType.FALLBACK, response.getResponseType());
+    }
+
+    @Test
+    public void shedsCallsAboveLimit() {
+        InProcessRouteDispatcher dispatcher = dispatcher(true);
+        AtomicInteger calls = new AtomicInteger();
+
+        Disposable pending = dispatcher.dispatch("dispatch-shed", null, () -> {
+            calls.incrementAndGet();
+            return Mono.never();
+        }).subscribe();
+
+        ProductResponse shed = dispatcher.dispatch("dispatch-shed", null, () -> {
+            calls.incrementAndGet();
+            return Mono.empty();
+        }).block(Duration.ofSeconds(5));
+
+        assertEquals(ResponseType.FALLBACK, shed.getResponseType());
+        assertEquals(1, calls.get());
+        assertEquals(1, meterRegistry.counter("gateway.concurrency.rejected", "route", "dispatch-shed").count(), 0);
+
+        pending.dispose();
+    }
+
+    private InProcessRouteDispatcher dispatcher(boolean limited) {
+        return new InProcessRouteDispatcher(new RouteConcurrencyLimiter(meterRegistry, limited, 1, 1, 1), errorEvents);
+    }
+}
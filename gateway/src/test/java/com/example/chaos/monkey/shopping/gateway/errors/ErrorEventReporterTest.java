@@ -0,0 +1,35 @@
+package com.example.chaos.monkey.shopping.gateway.errors;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class ErrorEventReporterTest {
+
+    private final ErrorEventReporter reporter = new ErrorEventReporter(60000, 60000, 100);
+
+    @After
+    public void tearDown() {
+        reporter.shutdown();
+    }
+
+    @Test
+    public void countsEveryFailureButSamplesOncePerKey() {
+        for (int i = 0; i < 1000; i++) {
+            reporter.report("toys", new TimeoutException());
+            reporter.report("fashion", new IllegalStateException());
+        }
+        reporter.report("toys", "fallback", null);
+
+        assertEquals(Long.valueOf(1000), reporter.counts().get("toys/TimeoutException"));
+        assertEquals(Long.valueOf(1000), reporter.counts().get("fashion/IllegalStateException"));
+        assertEquals(Long.valueOf(1), reporter.counts().get("toys/fallback"));
+        assertEquals(3, reporter.queuedSamples());
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.chaos.monkey.shopping.gateway.hedging;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class HedgingPolicyTest {
+
+    @Test
+    public void hedgeAnswersWhenPrimaryIsSlow() {
+        HedgingPolicy policy = new HedgingPolicy(new SimpleMeterRegistry(), true, 0.95, 1, 100);
+        warmUp(policy);
+
+        AtomicInteger attempts = new AtomicInteger();
+        String result = policy.hedge("toys", () -> attempts.getAndIncrement() == 0
+                ? Mono.just("primary").delayElement(Duration.ofSeconds(5))
+                : Mono.just("hedge"), HedgingPolicyTest::successful).block(Duration.ofSeconds(1));
+
+        assertEquals("hedge", result);
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void noHedgeWithoutBudget() {
+        HedgingPolicy policy = new HedgingPolicy(new SimpleMeterRegistry(), true, 0.95, 1, 0);
+        warmUp(policy);
+
+        AtomicInteger attempts = new AtomicInteger();
+        String result = policy.hedge("toys", () -> attempts.getAndIncrement() == 0
+                ? Mono.just("primary").delayElement(Duration.ofMillis(200))
+                : Mono.just("hedge"), HedgingPolicyTest::successful).block(Duration.ofSeconds(1));
+
+        assertEquals("primary", result);
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void earlyFallbackOfThePrimaryDoesNotBeatARunningHedge() {
+        HedgingPolicy policy = new HedgingPolicy(new SimpleMeterRegistry(), true, 0.95, 1, 100);
+        warmUp(policy);
+
+        AtomicInteger attempts = new AtomicInteger();
+        String result = policy.hedge("toys", () -> attempts.getAndIncrement() == 0
+                ? Mono.just("fallback").delayElement(Duration.ofMillis(50))
+                : Mono.just("hedge").delayElement(Duration.ofMillis(200)), HedgingPolicyTest::successful)
+                .block(Duration.ofSeconds(1));
+
+        assertEquals("hedge", result);
+    }
+
+    @Test
+    public void primaryAnswersIfNeitherAttemptIsSuccessful() {
+        HedgingPolicy policy = new HedgingPolicy(new SimpleMeterRegistry(), true, 0.95, 1, 100);
+        warmUp(policy);
+
+        AtomicInteger attempts = new AtomicInteger();
+        String result = policy.hedge("toys", () -> attempts.getAndIncrement() == 0
+                ? Mono.just("fallback").delayElement(Duration.ofMillis(100))
+                : Mono.error(new IllegalStateException("hedge failed")), HedgingPolicyTest::successful)
+                .block(Duration.ofSeconds(1));
+
+        assertEquals("fallback", result);
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void latencyOfPrimariesBeatenByTheHedgeIsRecorded() throws InterruptedException {
+        HedgingPolicy policy = new HedgingPolicy(new SimpleMeterRegistry(), true, 0.95, 1, 100);
+        warmUp(policy);
+
+        // a third of the primaries is slow, the hedge answers for them right away
+        for (int i = 0; i < 32; i++) {
+            AtomicInteger attempts = new AtomicInteger();
+            policy.hedge("toys", () -> attempts.getAndIncrement() == 0
+                    ? Mono.just("primary").delayElement(Duration.ofMillis(30))
+                    : Mono.just("hedge"), HedgingPolicyTest::successful).block(Duration.ofSeconds(1));
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (policy.delayNanos("toys") < TimeUnit.MILLISECONDS.toNanos(30) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(policy.delayNanos("toys") >= TimeUnit.MILLISECONDS.toNanos(30));
+    }
+
+    private void warmUp(HedgingPolicy policy) {
+        for (int i = 0; i < 64; i++) {
+            policy.hedge("toys", () -> Mono.just("warm-up"), HedgingPolicyTest::successful).block();
+        }
+    }
+
+    private static boolean successful(String result) {
+        return !result.equals("fallback");
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.chaos.monkey.shopping.gateway.limit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class RouteConcurrencyLimiterTest {
+
+    @Test
+    public void shedsRequestsAboveLimit() {
+        GatewayFilter filter = new RouteConcurrencyLimiter(new SimpleMeterRegistry(), true, 1, 1, 1).forRoute("toys");
+        AtomicInteger forwarded = new AtomicInteger();
+
+        Disposable pending = filter.filter(exchange(), e -> {
+            forwarded.incrementAndGet();
+            return Mono.never();
+        }).subscribe();
+
+        MockServerWebExchange shed = exchange();
+        filter.filter(shed, e -> {
+            forwarded.incrementAndGet();
+            return Mono.empty();
+        }).block(Duration.ofSeconds(1));
+
+        assertEquals(1, forwarded.get());
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, shed.getResponse().getStatusCode());
+        assertEquals("true", shed.getResponse().getHeaders().getFirst("fallback"));
+
+        // cancelling the pending request releases its permit
+        pending.dispose();
+
+        MockServerWebExchange next = exchange();
+        filter.filter(next, e -> {
+            forwarded.incrementAndGet();
+            return Mono.empty();
+        }).block(Duration.ofSeconds(1));
+
+        assertEquals(2, forwarded.get());
+        assertNull(next.getResponse().getStatusCode());
+    }
+
+    private static MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/toys/bestseller").build());
+    }
+}
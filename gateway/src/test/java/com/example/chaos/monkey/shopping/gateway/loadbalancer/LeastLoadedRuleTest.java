@@ -0,0 +1,54 @@
+package com.example.chaos.monkey.shopping.gateway.loadbalancer;
+
+import com.netflix.loadbalancer.BaseLoadBalancer;
+import com.netflix.loadbalancer.Server;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class LeastLoadedRuleTest {
+
+    @Test
+    public void avoidsSlowInstance() {
+        InstanceLatencyStats stats = new InstanceLatencyStats(new SimpleMeterRegistry(), 10000);
+        stats.requestStarted("slow:8081");
+        stats.requestFinished("slow:8081", TimeUnit.SECONDS.toNanos(5));
+        stats.requestStarted("fast:8081");
+        stats.requestFinished("fast:8081", TimeUnit.MILLISECONDS.toNanos(5));
+
+        LeastLoadedRule rule = new LeastLoadedRule(stats);
+        BaseLoadBalancer loadBalancer = new BaseLoadBalancer();
+        loadBalancer.addServers(Arrays.asList(new Server("slow", 8081), new Server("fast", 8081)));
+        rule.setLoadBalancer(loadBalancer);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals("fast:8081", rule.choose(null).getHostPort());
+        }
+    }
+
+    @Test
+    public void avoidsInstanceWithRequestsInFlight() {
+        InstanceLatencyStats stats = new InstanceLatencyStats(new SimpleMeterRegistry(), 10000);
+        stats.requestStarted("a:8081");
+        stats.requestFinished("a:8081", TimeUnit.MILLISECONDS.toNanos(10));
+        stats.requestStarted("b:8081");
+        stats.requestFinished("b:8081", TimeUnit.MILLISECONDS.toNanos(10));
+        for (int i = 0; i < 5; i++) {
+            stats.requestStarted("a:8081");
+        }
+
+        LeastLoadedRule rule = new LeastLoadedRule(stats);
+        BaseLoadBalancer loadBalancer = new BaseLoadBalancer();
+        loadBalancer.addServers(Arrays.asList(new Server("a", 8081), new Server("b", 8081)));
+        rule.setLoadBalancer(loadBalancer);
+
+        assertEquals("b:8081", rule.choose(null).getHostPort());
+    }
+}
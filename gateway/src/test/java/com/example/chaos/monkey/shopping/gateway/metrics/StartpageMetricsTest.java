@@ -0,0 +1,112 @@
+package com.example.chaos.monkey.shopping.gateway.metrics;
+
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import com.example.chaos.monkey.shopping.gateway.domain.Startpage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class StartpageMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final StartpageMetrics metrics = new StartpageMetrics(meterRegistry);
+
+    @Test
+    public void backendCallsAreTimedPerModeAndType() {
+        metrics.time("reactive", "toys", Mono.just(response(ResponseType.REMOTE_SERVICE))).block();
+        metrics.time("cb", "toys", Mono.just(response(ResponseType.FALLBACK))).block();
+        metrics.time("legacy", "fashion", () -> response(ResponseType.REMOTE_SERVICE));
+
+        assertEquals(1, timerCount("reactive", "toys", ResponseType.REMOTE_SERVICE));
+        assertEquals(1, timerCount("cb", "toys", ResponseType.FALLBACK));
+        assertEquals(1, timerCount("legacy", "fashion", ResponseType.REMOTE_SERVICE));
+        assertEquals(1, failures("cb", "toys", "fallback"), 0);
+    }
+
+    @Test
+    public void errorsAndTimeoutsAreCountedAsFailures() {
+        metrics.time("reactive", "toys", Mono.<ProductResponse>error(new TimeoutException()))
+                .onErrorResume(t -> Mono.empty()).block();
+        metrics.time("lb", "hotdeals", Mono.<ProductResponse>error(
+                new org.springframework.cloud.gateway.support.TimeoutException("timed out")))
+                .onErrorResume(t -> Mono.empty()).block();
+        metrics.time("reactive", "toys", Mono.empty()).block();
+        try {
+            metrics.time("legacy", "fashion", () -> {
+                throw new IllegalStateException();
+            });
+            fail("legacy call did not fail");
+        } catch (IllegalStateException expected) {
+            // rethrown after it was timed
+        }
+
+        assertEquals(1, failures("reactive", "toys", "timeout"), 0);
+        assertEquals(1, failures("lb", "hotdeals", "timeout"), 0);
+        assertEquals(1, failures("reactive", "toys", "error"), 0);
+        assertEquals(1, failures("legacy", "fashion", "error"), 0);
+        assertEquals(2, timerCount("reactive", "toys", ResponseType.ERROR));
+    }
+
+    @Test
+    public void batchCallsAreTimedAsTheSectionsBackend() {
+        metrics.timeBatch("batch", Mono.just("sections")).block();
+        metrics.timeBatch("batch", Mono.error(new IllegalStateException())).onErrorResume(t -> Mono.empty()).block();
+
+        assertEquals(1, timerCount("batch", "sections", ResponseType.REMOTE_SERVICE));
+        assertEquals(1, timerCount("batch", "sections", ResponseType.ERROR));
+        assertEquals(1, failures("batch", "sections", "error"), 0);
+    }
+
+    @Test
+    public void unsubscribedCallIsNotTimed() {
+        Mono<ProductResponse> call = metrics.time("reactive", "toys", Mono.just(response(ResponseType.REMOTE_SERVICE)));
+
+        assertEquals(0, meterRegistry.find("startpage.backend.requests").timers().size());
+        call.block();
+        assertEquals(1, timerCount("reactive", "toys", ResponseType.REMOTE_SERVICE));
+    }
+
+    @Test
+    public void pageIsTimedAndItsSectionsCounted() {
+        Startpage page = new Startpage();
+        page.setFashionResponse(response(ResponseType.REMOTE_SERVICE));
+        page.setToysResponse(response(ResponseType.CACHED));
+        page.setHotDealsResponse(response(ResponseType.FALLBACK));
+
+        metrics.page("lb", page, System.nanoTime());
+
+        assertEquals(1, meterRegistry.get("startpage.requests").tag("mode", "lb").timer().count());
+        assertEquals(1, sections("lb", "fashion", ResponseType.REMOTE_SERVICE), 0);
+        assertEquals(1, sections("lb", "toys", ResponseType.CACHED), 0);
+        assertEquals(1, sections("lb", "hotdeals", ResponseType.FALLBACK), 0);
+    }
+
+    private long timerCount(String mode, String backend, ResponseType type) {
+        return meterRegistry.get("startpage.backend.requests")
+                .tags("mode", mode, "backend", backend, "type", type.name()).timer().count();
+    }
+
+    private double failures(String mode, String backend, String reason) {
+        return meterRegistry.get("startpage.backend.failures")
+                .tags("mode", mode, "backend", backend, "reason", reason).counter().count();
+    }
+
+    private double sections(String mode, String section, ResponseType type) {
+        return meterRegistry.get("startpage.sections")
+                .tags("mode", mode, "section", section, "type", type.name()).counter().count();
+    }
+
+    private static ProductResponse response(ResponseType type) {
+        return new ProductResponse(type, Collections.emptyList());
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.chaos.monkey.shopping.gateway.snapshot;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import com.example.chaos.monkey.shopping.gateway.domain.ProductResponse;
+import com.example.chaos.monkey.shopping.gateway.domain.ResponseType;
+import com.example.chaos.monkey.shopping.gateway.domain.Startpage;
+import com.example.chaos.monkey.shopping.gateway.errors.ErrorEventReporter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.reactive.function.server.MockServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class StartpageSnapshotAssemblerTest {
+
+    private final List<Product> toys = Collections.singletonList(new Product(1, "LEGO Star Wars Yodas Hut", ProductCategory.TOYS));
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ErrorEventReporter errorEvents = new ErrorEventReporter(60000, 60000, 100);
+    private final Deque<Startpage> pages = new ArrayDeque<>();
+
+    private StartpageSnapshotAssembler assembler = assembler(300000);
+
+    @After
+    public void tearDown() {
+        assembler.shutdown();
+        errorEvents.shutdown();
+    }
+
+    @Test
+    public void failedSectionKeepsTheProductsOfItsLastFetch() throws Exception {
+        pages.add(page(ResponseType.REMOTE_SERVICE));
+        pages.add(page(ResponseType.ERROR));
+
+        assembler.assemble();
+        long fetchedAt = assembler.current().toys.fetchedAt;
+        assembler.assemble();
+
+        StartpageSnapshotAssembler.Snapshot snapshot = assembler.current();
+        assertEquals(ResponseType.CACHED, snapshot.toys.response.getResponseType());
+        assertEquals(toys, snapshot.toys.response.getProducts());
+        assertEquals(fetchedAt, snapshot.toys.fetchedAt);
+        assertEquals(ResponseType.REMOTE_SERVICE, snapshot.hotdeals.response.getResponseType());
+
+        Startpage served = objectMapper.readValue(snapshot.json, Startpage.class);
+        assertEquals("CACHED", served.getStatusToys());
+        assertEquals(toys, served.getToysResponse().getProducts());
+    }
+
+    @Test
+    public void failedSectionBeyondMaxStaleStaysFailed() {
+        assembler = assembler(-1);
+        pages.add(page(ResponseType.REMOTE_SERVICE));
+        pages.add(page(ResponseType.FALLBACK));
+
+        assembler.assemble();
+        assembler.assemble();
+
+        assertEquals(ResponseType.FALLBACK, assembler.current().toys.response.getResponseType());
+        assertEquals(0, assembler.current().toys.fetchedAt);
+        assertEquals("hotdeals=REMOTE_SERVICE;fetched=" + assembler.current().hotdeals.fetchedAt
+                        + ", fashion=REMOTE_SERVICE;fetched=" + assembler.current().fashion.fetchedAt + ", toys=FALLBACK",
+                assembler.current().sectionsHeader);
+    }
+
+    @Test
+    public void firstRequestWaitsForTheFirstAssembly() {
+        pages.add(page(ResponseType.REMOTE_SERVICE));
+
+        ServerResponse response = assembler.serve(MockServerRequest.builder().build()).block(Duration.ofSeconds(5));
+
+        assertEquals(HttpStatus.OK, response.statusCode());
+        assertEquals(assembler.current().eTag, response.headers().getETag());
+        assertTrue(response.headers().containsKey(StartpageSnapshotAssembler.SECTIONS_HEADER));
+    }
+
+    @Test
+    public void eTagOnlyChangesWithTheSections() {
+        pages.add(page(ResponseType.REMOTE_SERVICE));
+        pages.add(page(ResponseType.REMOTE_SERVICE));
+        pages.add(page(ResponseType.ERROR));
+
+        assembler.assemble();
+        StartpageSnapshotAssembler.Snapshot first = assembler.current();
+        assembler.assemble();
+        assertEquals(first.eTag, assembler.current().eTag);
+
+        ServerResponse notModified = assembler.serve(MockServerRequest.builder()
+                .header(HttpHeaders.IF_NONE_MATCH, first.eTag).build()).block();
+        assertEquals(HttpStatus.NOT_MODIFIED, notModified.statusCode());
+
+        assembler.assemble();
+        assertNotEquals(first.eTag, assembler.current().eTag);
+    }
+
+    private StartpageSnapshotAssembler assembler(long maxStaleMillis) {
+        return new StartpageSnapshotAssembler(() -> Mono.just(pages.remove()), objectMapper, new SimpleMeterRegistry(),
+                errorEvents, 60000, maxStaleMillis);
+    }
+
+    private Startpage page(ResponseType toysType) {
+        Startpage page = new Startpage();
+        page.setHotDealsResponse(new ProductResponse(ResponseType.REMOTE_SERVICE, Collections.emptyList()));
+        page.setFashionResponse(new ProductResponse(ResponseType.REMOTE_SERVICE, Collections.emptyList()));
+        page.setToysResponse(toysType == ResponseType.REMOTE_SERVICE ? new ProductResponse(toysType, toys)
+                : new ProductResponse(toysType, Collections.emptyList()));
+        return page;
+    }
+}
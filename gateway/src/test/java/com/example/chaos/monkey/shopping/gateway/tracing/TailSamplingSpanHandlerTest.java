@@ -0,0 +1,149 @@
+package com.example.chaos.monkey.shopping.gateway.tracing;
+
+import brave.ErrorParser;
+import brave.ScopedSpan;
+import brave.Span;
+import brave.Tracing;
+import brave.handler.MutableSpan;
+import brave.propagation.B3Propagation;
+import brave.propagation.TraceContext;
+import brave.sampler.Sampler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class TailSamplingSpanHandlerTest {
+
+    private final List<zipkin2.Span> reported = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TailSamplingSpanHandler handler = new TailSamplingSpanHandler(reported::add, new ErrorParser(),
+            meterRegistry, "gateway", 300, 100, 30000);
+
+    @Test
+    public void dropsHealthyUnsampledTrace() {
+        finish(context(1, 2, 1, false), span(Span.Kind.CLIENT, 10, null));
+        finish(context(1, 1, 0, false), span(Span.Kind.SERVER, 20, null));
+
+        assertTrue(reported.isEmpty());
+        assertEquals(1, meterRegistry.counter("gateway.tracing.tail.decisions", "decision", "dropped").count(), 0);
+    }
+
+    @Test
+    public void keepsWholeLocalTraceWithFailureTag() {
+        finish(context(1, 2, 1, false), span(Span.Kind.CLIENT, 10, "timeout"));
+        finish(context(1, 1, 0, false), span(Span.Kind.SERVER, 20, null));
+        finish(context(1, 3, 1, false), span(Span.Kind.CLIENT, 5, null));
+
+        assertEquals(3, reported.size());
+        assertEquals(1, meterRegistry.counter("gateway.tracing.tail.decisions", "decision", "failure").count(), 0);
+    }
+
+    @Test
+    public void decidesOnlyAtTheRequestFromOutside() {
+        MutableSpan joined = span(Span.Kind.SERVER, 10, null);
+        joined.setShared();
+        finish(context(1, 2, 1, false), joined);
+        finish(context(1, 3, 1, false), span(Span.Kind.CLIENT, 10, "fallback"));
+        finish(context(1, 1, 0, false), span(Span.Kind.SERVER, 20, null));
+
+        assertEquals(3, reported.size());
+    }
+
+    @Test
+    public void keepsSlowTrace() {
+        finish(context(1, 1, 0, false), span(Span.Kind.SERVER, 500, null));
+
+        assertEquals(1, reported.size());
+        assertEquals("gateway", reported.get(0).localServiceName());
+    }
+
+    @Test
+    public void reportsTheErrorOfASpanAsTag() {
+        MutableSpan failed = span(Span.Kind.SERVER, 10, null);
+        failed.error(new IllegalStateException("backend down"));
+        finish(context(1, 1, 0, false), failed);
+
+        assertEquals(1, reported.size());
+        assertEquals("backend down", reported.get(0).tags().get("error"));
+        assertEquals(zipkin2.Span.Kind.SERVER, reported.get(0).kind());
+        assertEquals(10000L, reported.get(0).durationAsLong());
+    }
+
+    @Test
+    public void recordsNoTracesBeyondTheBuffer() {
+        TailSamplingSpanHandler single = new TailSamplingSpanHandler(reported::add, new ErrorParser(), meterRegistry,
+                "gateway", 300, 1, 30000);
+
+        TraceContext first = single.admit(context(1, 1, 0, false));
+        TraceContext second = single.admit(context(2, 1, 0, false));
+        // the children of the second trace must not be recorded once the first has finished
+        single.handle(first, span(Span.Kind.SERVER, 20, null));
+        TraceContext child = single.admit(second.toBuilder().parentId(1).spanId(2).build());
+
+        assertTrue(first.sampledLocal());
+        assertFalse(second.sampledLocal());
+        assertFalse(child.sampledLocal());
+        assertEquals(1, meterRegistry.counter("gateway.tracing.tail.decisions", "decision", "skipped").count(), 0);
+    }
+
+    @Test
+    public void onlyAdmittedUnsampledTracesAreRecorded() {
+        Tracing tracing = Tracing.newBuilder()
+                .localServiceName("gateway")
+                .sampler(Sampler.NEVER_SAMPLE)
+                .propagationFactory(new TailSamplingPropagation(B3Propagation.FACTORY, () -> handler))
+                .addFinishedSpanHandler(handler)
+                .spanReporter(span -> {
+                    throw new AssertionError("unsampled span reported as sampled " + span);
+                })
+                .build();
+        try {
+            ScopedSpan root = tracing.tracer().startScopedSpan("startpage");
+            ScopedSpan child = tracing.tracer().startScopedSpan("hotdeals");
+            child.tag("fallback", "timeout");
+            child.finish();
+            root.finish();
+
+            assertFalse(root.isNoop());
+            assertEquals(2, reported.size());
+        } finally {
+            tracing.close();
+        }
+    }
+
+    @Test
+    public void leavesHeadSampledSpansToZipkinReporter() {
+        finish(context(1, 1, 0, true), span(Span.Kind.SERVER, 500, "timeout"));
+
+        assertTrue(reported.isEmpty());
+    }
+
+    private void finish(TraceContext context, MutableSpan span) {
+        assertTrue(handler.handle(handler.admit(context), span));
+    }
+
+    private static TraceContext context(long traceId, long spanId, long parentId, boolean sampled) {
+        return TraceContext.newBuilder().traceId(traceId).spanId(spanId).parentId(parentId).sampled(sampled).build();
+    }
+
+    private static MutableSpan span(Span.Kind kind, long durationMillis, String failure) {
+        MutableSpan span = new MutableSpan();
+        span.name("span");
+        span.kind(kind);
+        span.startTimestamp(1000000L);
+        span.finishTimestamp(1000000L + durationMillis * 1000);
+        if (failure != null) {
+            span.tag("failure", failure);
+        }
+        return span;
+    }
+}
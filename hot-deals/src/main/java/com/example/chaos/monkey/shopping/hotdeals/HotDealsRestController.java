@@ -1,16 +1,35 @@
 package com.example.chaos.monkey.shopping.hotdeals;
 
 
+import com.example.chaos.monkey.shopping.catalogue.GeneratedProducts;
+import com.example.chaos.monkey.shopping.catalogue.ProductCatalogue;
+import com.example.chaos.monkey.shopping.catalogue.ProductCatalogueSource;
+import com.example.chaos.monkey.shopping.catalogue.ProductColumns;
+import com.example.chaos.monkey.shopping.catalogue.SectionCatalogue;
+import com.example.chaos.monkey.shopping.domain.EncodedProductList;
 import com.example.chaos.monkey.shopping.domain.Product;
-import com.example.chaos.monkey.shopping.domain.ProductBuilder;
 import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import com.example.chaos.monkey.shopping.domain.ProductMediaTypes;
+import com.example.chaos.monkey.shopping.domain.ProductPage;
+import com.example.chaos.monkey.shopping.domain.ProductSection;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.util.Arrays;
+import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * @author Benjamin Wilms
@@ -18,22 +37,94 @@ import java.util.concurrent.atomic.AtomicLong;
 @RestController
 public class HotDealsRestController {
 
-    @GetMapping("/hotdeals")
-    public List<Product> getHotDeals() {
-        AtomicLong aLong = new AtomicLong(7);
+    // version of the catalogue snapshot a page was read from, 0 for the built-in catalogue
+    private static final String CATALOGUE_VERSION = "X-Catalogue-Version";
+
+    private final ResponseEntity<byte[]> hotDealsJson;
+    private final ResponseEntity<byte[]> hotDealsSmile;
+    private final ProductCatalogueSource catalogue;
+    private final SectionCatalogue sections;
+
+    public HotDealsRestController(ObjectMapper objectMapper,
+                                  @Value("${catalogue.generated-products:0}") int generatedProducts,
+                                  @Value("${catalogue.off-heap:false}") boolean offHeap,
+                                  @Value("${catalogue.snapshot-directory:}") String snapshotDirectory,
+                                  @Value("${catalogue.snapshot-poll-millis:5000}") long snapshotPollMillis,
+                                  @Value("${catalogue.edge.sections:hotdeals}") String[] edgeSections)
+            throws JsonProcessingException {
+        List<Product> products = SectionCatalogue.products(SectionCatalogue.HOTDEALS);
+        EncodedProductList hotDeals = new EncodedProductList(products, objectMapper);
+
+        // Encoded once, every request writes the same bytes
+        this.hotDealsJson = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON_UTF8)
+                .varyBy(HttpHeaders.ACCEPT)
+                .eTag(hotDeals.getETag())
+                .body(hotDeals.getJson());
+        this.hotDealsSmile = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(ProductMediaTypes.SMILE))
+                .varyBy(HttpHeaders.ACCEPT)
+                .eTag(hotDeals.getSmileETag())
+                .body(hotDeals.getSmile());
+
+        Supplier<ProductCatalogue> builtIn = () -> {
+            ProductColumns.Builder columns = new ProductColumns.Builder();
+            products.forEach(columns::add);
+            GeneratedProducts.addTo(columns, 3_000_000L, generatedProducts, ProductCategory.values());
+            return new ProductCatalogue(columns.build(offHeap), 0);
+        };
+        this.catalogue = snapshotDirectory.isEmpty() ? ProductCatalogueSource.fixed(builtIn.get())
+                : ProductCatalogueSource.watching(Paths.get(snapshotDirectory), snapshotPollMillis, builtIn);
+        this.sections = new SectionCatalogue(objectMapper, edgeSections);
+    }
 
-        ProductBuilder productBuilder = new ProductBuilder();
+    @PreDestroy
+    public void closeCatalogue() {
+        catalogue.close();
+    }
+
+    @GetMapping("/hotdeals")
+    public ResponseEntity<byte[]> getHotDeals(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return ProductMediaTypes.acceptsSmile(accept) ? hotDealsSmile : hotDealsJson;
+    }
 
-        Product product1 = productBuilder.setCategory(ProductCategory.FASHION).setId(aLong.getAndIncrement()).setName("Thermal Winter Warm Hot Heat" +
-                " Socks")
-                .createProduct();
+    /**
+     * Several startpage sections in one response, e.g. {@code ?names=hotdeals,fashion,toys}. Sections this service does
+     * not serve are listed as {@link ProductSection.Status#UNAVAILABLE}.
+     */
+    @GetMapping("/hotdeals/sections")
+    public ResponseEntity<byte[]> getSections(@RequestParam List<String> names,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        boolean smile = ProductMediaTypes.acceptsSmile(accept);
+        try {
+            return ResponseEntity.ok()
+                    .contentType(smile ? MediaType.parseMediaType(ProductMediaTypes.SMILE) : MediaType.APPLICATION_JSON_UTF8)
+                    .varyBy(HttpHeaders.ACCEPT)
+                    .body(sections.encode(names, smile));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
 
-        Product product2 = productBuilder.setCategory(ProductCategory.TOYS).setId(aLong.getAndIncrement()).setName("RC Quadcopter Drone with 2.0MP Camera Live")
-                .createProduct();
+    @GetMapping("/hotdeals/products")
+    public ResponseEntity<ProductPage> getProducts(@RequestParam(required = false) ProductCategory category,
+                                                   @RequestParam(required = false) String prefix,
+                                                   @RequestParam(required = false) String cursor,
+                                                   @RequestParam(defaultValue = "" + ProductCatalogue.DEFAULT_LIMIT) int limit) {
+        ProductCatalogue current = catalogue.get();
+        try {
+            return ResponseEntity.ok()
+                    .header(CATALOGUE_VERSION, Long.toString(current.getVersion()))
+                    .body(current.page(category, prefix, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        }
+    }
 
-        Product product3 = productBuilder.setCategory(ProductCategory.BOOKS).setId(aLong.getAndIncrement()).setName("Spring Boot 2: Moderne Softwareentwicklung mit Spring 5")
-                .createProduct();
-        return Arrays.asList(product1, product2, product3);
+    @GetMapping("/hotdeals/products/{id}")
+    public ResponseEntity<Product> getProduct(@PathVariable long id) {
+        Product product = catalogue.get().get(id);
+        return product == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(product);
     }
 
 }
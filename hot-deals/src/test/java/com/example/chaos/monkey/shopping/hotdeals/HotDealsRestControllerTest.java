@@ -0,0 +1,71 @@
+package com.example.chaos.monkey.shopping.hotdeals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class HotDealsRestControllerTest {
+
+    private HotDealsRestController controller;
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() throws Exception {
+        controller = new HotDealsRestController(new ObjectMapper(), 10, false, "", 5000, new String[]{"hotdeals"});
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @After
+    public void tearDown() {
+        controller.closeCatalogue();
+    }
+
+    @Test
+    public void everyRequestGetsTheSameEncodedList() throws Exception {
+        MvcResult first = mockMvc.perform(get("/hotdeals")).andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].id").value(7))
+                .andReturn();
+        MvcResult second = mockMvc.perform(get("/hotdeals")).andExpect(status().isOk()).andReturn();
+
+        assertArrayEquals(first.getResponse().getContentAsByteArray(), second.getResponse().getContentAsByteArray());
+    }
+
+    @Test
+    public void matchingETagIsNotModified() throws Exception {
+        String eTag = mockMvc.perform(get("/hotdeals")).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/hotdeals").header(HttpHeaders.IF_NONE_MATCH, eTag)).andExpect(status().isNotModified());
+        mockMvc.perform(get("/hotdeals").header(HttpHeaders.IF_NONE_MATCH, "\"other\"")).andExpect(status().isOk());
+    }
+
+    @Test
+    public void unknownProductIsNotFound() throws Exception {
+        mockMvc.perform(get("/hotdeals/products/3000000")).andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(3000000));
+        mockMvc.perform(get("/hotdeals/products/42")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void badPageRequestsAreRejected() throws Exception {
+        mockMvc.perform(get("/hotdeals/products").param("limit", "2")).andExpect(status().isOk())
+                .andExpect(header().string("X-Catalogue-Version", "0"))
+                .andExpect(jsonPath("$.products.length()").value(2));
+        mockMvc.perform(get("/hotdeals/products").param("cursor", "not*base64")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/hotdeals/products").param("limit", "0")).andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.chaos.monkey.shopping.load;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the open-loop load against the gateway (or the in-process stub) and writes the reports, also when the
+ * process is stopped early.
+ * <p>
+ * {@code java -jar load-generator.jar --base-url=http://localhost:8080 --variants=legacy,cb,lb --rate=20}
+ *
+ * @author Benjamin Wilms
+ */
+public class LoadGeneratorApplication {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadGeneratorApplication.class);
+
+    public static void main(String[] args) throws Exception {
+        LoadSettings settings = LoadSettings.parse(args);
+
+        if (settings.getStartDelaySeconds() > 0) {
+            // give the gateway and the catalogue services time to start
+            TimeUnit.SECONDS.sleep(settings.getStartDelaySeconds());
+        }
+
+        StubGateway stub = settings.isStub() ? new StubGateway() : null;
+        OpenLoopLoadGenerator generator = new OpenLoopLoadGenerator(settings,
+                stub != null ? stub.getBaseUrl() : settings.getBaseUrl());
+
+        CountDownLatch reported = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            generator.stop();
+            try {
+                reported.await(settings.getTimeoutMillis() + 5000, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        try {
+            Map<String, VariantResult> results = generator.run();
+
+            Path reportDir = Paths.get(settings.getReportDir());
+            new LoadReport(settings, results.values()).write(reportDir);
+            log.info("Reports written to {}", reportDir.toAbsolutePath());
+        } finally {
+            if (stub != null) {
+                stub.close();
+            }
+            reported.countDown();
+        }
+    }
+}
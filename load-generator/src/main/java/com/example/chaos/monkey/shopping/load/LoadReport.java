@@ -0,0 +1,151 @@
+package com.example.chaos.monkey.shopping.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes {@code load-report.json} for comparing runs and {@code load-report.html} for reading them. Latencies are
+ * in milliseconds.
+ *
+ * @author Benjamin Wilms
+ */
+public class LoadReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final LoadSettings settings;
+    private final Collection<VariantResult> results;
+
+    public LoadReport(LoadSettings settings, Collection<VariantResult> results) {
+        this.settings = settings;
+        this.results = results;
+    }
+
+    public void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(directory.resolve("load-report.json").toFile(), toMap());
+
+        Files.write(directory.resolve("load-report.html"), toHtml().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Map<String, Object> toMap() {
+        Map<String, Object> variants = new LinkedHashMap<>();
+        for (VariantResult result : results) {
+            Map<String, Object> variant = new LinkedHashMap<>();
+            variant.put("sent", result.getSent());
+            variant.put("completed", result.getCompleted());
+            variant.put("httpErrors", result.getHttpErrors());
+            variant.put("timeouts", result.getTimeouts());
+            variant.put("failures", result.getFailures());
+            variant.put("latencyMillis", latencies(result.getLatencyMicros()));
+            variant.put("responseTypes", result.getResponseTypes());
+            variant.put("sections", result.getSections());
+            variants.put(result.getVariant(), variant);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("settings", settings.asMap());
+        report.put("variants", variants);
+        return report;
+    }
+
+    private static Map<String, Object> latencies(Histogram histogram) {
+        Map<String, Object> latencies = new LinkedHashMap<>();
+        latencies.put("min", millis(histogram.getMinValue()));
+        latencies.put("mean", histogram.getMean() / 1000.0);
+        for (double percentile : PERCENTILES) {
+            latencies.put(label(percentile), millis(histogram.getValueAtPercentile(percentile)));
+        }
+        latencies.put("max", millis(histogram.getMaxValue()));
+        return latencies;
+    }
+
+    private static String label(double percentile) {
+        return "p" + BigDecimal.valueOf(percentile).stripTrailingZeros().toPlainString();
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    private String toHtml() {
+        StringBuilder html = new StringBuilder()
+                .append("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>Startpage load report</title>\n")
+                .append("<style>body{font-family:sans-serif}table{border-collapse:collapse;margin-bottom:1em}")
+                .append("td,th{border:1px solid #ccc;padding:4px 8px;text-align:right}</style>\n</head>\n<body>\n")
+                .append("<h1>Startpage load report</h1>\n<p>")
+                .append(settings.getRate()).append(" requests/s per variant for ")
+                .append(settings.getDurationSeconds()).append(" s after ")
+                .append(settings.getWarmupSeconds()).append(" s warm-up against ")
+                .append(escape(settings.isStub() ? "the in-process stub" : settings.getBaseUrl()))
+                .append(", timeout ").append(settings.getTimeoutMillis()).append(" ms</p>\n");
+
+        html.append("<h2>Latency (ms)</h2>\n<table>\n<tr><th>variant</th><th>sent</th><th>completed</th>")
+                .append("<th>http errors</th><th>timeouts</th><th>failures</th><th>mean</th>");
+        for (double percentile : PERCENTILES) {
+            html.append("<th>").append(label(percentile)).append("</th>");
+        }
+        html.append("<th>max</th></tr>\n");
+
+        for (VariantResult result : results) {
+            Histogram histogram = result.getLatencyMicros();
+            html.append("<tr><th>").append(escape(result.getVariant())).append("</th>")
+                    .append(cell(result.getSent())).append(cell(result.getCompleted()))
+                    .append(cell(result.getHttpErrors())).append(cell(result.getTimeouts()))
+                    .append(cell(result.getFailures()))
+                    .append(cell(String.format("%.2f", histogram.getMean() / 1000.0)));
+            for (double percentile : PERCENTILES) {
+                html.append(cell(millis(histogram.getValueAtPercentile(percentile))));
+            }
+            html.append(cell(millis(histogram.getMaxValue()))).append("</tr>\n");
+        }
+        html.append("</table>\n");
+
+        html.append("<h2>Sections by ResponseType</h2>\n");
+        for (VariantResult result : results) {
+            html.append("<h3>").append(escape(result.getVariant())).append("</h3>\n<table>\n");
+            result.getSections().forEach((section, counts) -> {
+                html.append("<tr><th>").append(escape(section)).append("</th>");
+                counts.forEach((status, count) -> html.append(cell(escape(status) + ": " + count)));
+                html.append("</tr>\n");
+            });
+            html.append("</table>\n");
+        }
+
+        html.append("<h2>Latency distribution (ms)</h2>\n");
+        for (VariantResult result : results) {
+            html.append("<h3>").append(escape(result.getVariant())).append("</h3>\n<pre>")
+                    .append(escape(distribution(result.getLatencyMicros()))).append("</pre>\n");
+        }
+
+        return html.append("</body>\n</html>\n").toString();
+    }
+
+    private static String distribution(Histogram histogram) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        histogram.outputPercentileDistribution(new PrintStream(out), 5, 1000.0);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String cell(Object value) {
+        return "<td>" + value + "</td>";
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.chaos.monkey.shopping.load;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Command line settings of the load generator, given as {@code --name=value}.
+ *
+ * @author Benjamin Wilms
+ */
+public class LoadSettings {
+
+    /**
+     * Gateway to load, ignored with {@code --stub=true}.
+     */
+    private String baseUrl = "http://localhost:8080";
+
+    /**
+     * Startpage variants, {@code default} is {@code /startpage} itself, everything else {@code /startpage/<variant>}.
+     */
+    private List<String> variants = Arrays.asList("legacy", "cb", "lb");
+
+    /**
+     * Requests per second and variant, sent on schedule whether earlier requests have answered or not.
+     */
+    private int rate = 20;
+
+    /**
+     * 0 = until the process is stopped.
+     */
+    private long durationSeconds = 60;
+    private long warmupSeconds = 10;
+    private long startDelaySeconds = 0;
+    private long timeoutMillis = 5000;
+    private String reportDir = "load-report";
+
+    /**
+     * Run against an in-process stub gateway instead of {@link #baseUrl}.
+     */
+    private boolean stub = false;
+
+    public static LoadSettings parse(String... args) {
+        LoadSettings settings = new LoadSettings();
+
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            String name = arg.substring(2, arg.indexOf('='));
+            String value = arg.substring(arg.indexOf('=') + 1);
+
+            switch (name) {
+                case "base-url":
+                    settings.baseUrl = value;
+                    break;
+                case "variants":
+                    settings.variants = Arrays.asList(value.split(","));
+                    break;
+                case "rate":
+                    settings.rate = Integer.parseInt(value);
+                    break;
+                case "duration-seconds":
+                    settings.durationSeconds = Long.parseLong(value);
+                    break;
+                case "warmup-seconds":
+                    settings.warmupSeconds = Long.parseLong(value);
+                    break;
+                case "start-delay-seconds":
+                    settings.startDelaySeconds = Long.parseLong(value);
+                    break;
+                case "timeout-millis":
+                    settings.timeoutMillis = Long.parseLong(value);
+                    break;
+                case "report-dir":
+                    settings.reportDir = value;
+                    break;
+                case "stub":
+                    settings.stub = Boolean.parseBoolean(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown setting " + name);
+            }
+        }
+
+        if (settings.rate <= 0) {
+            throw new IllegalArgumentException("rate must be positive");
+        }
+
+        return settings;
+    }
+
+    public Map<String, Object> asMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("baseUrl", baseUrl);
+        map.put("variants", variants);
+        map.put("rate", rate);
+        map.put("durationSeconds", durationSeconds);
+        map.put("warmupSeconds", warmupSeconds);
+        map.put("timeoutMillis", timeoutMillis);
+        map.put("stub", stub);
+        return map;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public LoadSettings setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+        return this;
+    }
+
+    public List<String> getVariants() {
+        return Collections.unmodifiableList(variants);
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public long getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public long getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public long getStartDelaySeconds() {
+        return startDelaySeconds;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public String getReportDir() {
+        return reportDir;
+    }
+
+    public boolean isStub() {
+        return stub;
+    }
+}
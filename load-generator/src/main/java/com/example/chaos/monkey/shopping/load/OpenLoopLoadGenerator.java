@@ -0,0 +1,160 @@
+package com.example.chaos.monkey.shopping.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop (constant arrival rate) load on the startpage variants. Requests are sent on a fixed schedule,
+ * round-robin over the variants, no matter how many earlier requests are still waiting for an answer, and each
+ * latency is taken from the scheduled send time. A closed-loop tool like {@code ab -c 2} instead stops sending while
+ * the gateway stalls and under-reports exactly the latencies that matter (coordinated omission).
+ *
+ * @author Benjamin Wilms
+ */
+public class OpenLoopLoadGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenLoopLoadGenerator.class);
+
+    private final LoadSettings settings;
+    private final ConnectionProvider connectionProvider;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<String, VariantResult> results = new LinkedHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean stopped;
+
+    public OpenLoopLoadGenerator(LoadSettings settings, String baseUrl) {
+        this.settings = settings;
+        // no pool limit, a queue in front of the connections would turn the load closed-loop again
+        this.connectionProvider = ConnectionProvider.elastic("load-generator");
+        this.httpClient = HttpClient.create(connectionProvider).baseUrl(baseUrl);
+
+        settings.getVariants().forEach(variant -> results.put(variant, new VariantResult(variant)));
+    }
+
+    public Map<String, VariantResult> run() {
+        List<String> variants = settings.getVariants();
+        long requestsPerSecond = (long) settings.getRate() * variants.size();
+
+        long start = System.nanoTime();
+        long recordFrom = start + TimeUnit.SECONDS.toNanos(settings.getWarmupSeconds());
+        long requests = settings.getDurationSeconds() == 0 ? Long.MAX_VALUE
+                : (settings.getWarmupSeconds() + settings.getDurationSeconds()) * requestsPerSecond;
+
+        log.info("Sending {} requests/s per variant to {}", settings.getRate(), variants);
+
+        for (long i = 0; i < requests && !stopped; i++) {
+            long scheduled = start + scheduleOffset(i, requestsPerSecond);
+
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0 && !stopped) {
+                LockSupport.parkNanos(wait);
+            }
+
+            String variant = variants.get((int) (i % variants.size()));
+            send(variant, scheduled, scheduled - recordFrom >= 0 ? results.get(variant) : null);
+        }
+
+        awaitInFlight();
+        connectionProvider.dispose();
+
+        return results;
+    }
+
+    /**
+     * Stops sending, {@link #run()} returns once the requests in flight have answered or timed out.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Send time of request {@code i} relative to the start, computed per request instead of summing a truncated
+     * interval so the rate does not drift and stays exact above a billion requests per second.
+     */
+    static long scheduleOffset(long i, long requestsPerSecond) {
+        long second = TimeUnit.SECONDS.toNanos(1);
+        return i / requestsPerSecond * second + i % requestsPerSecond * second / requestsPerSecond;
+    }
+
+    private void send(String variant, long scheduled, VariantResult result) {
+        inFlight.incrementAndGet();
+        if (result != null) {
+            result.requestSent();
+        }
+
+        httpClient.get()
+                .uri("default".equals(variant) ? "/startpage" : "/startpage/" + variant)
+                .responseSingle((response, body) -> body.asByteArray()
+                        .defaultIfEmpty(new byte[0])
+                        .map(bytes -> new Response(response.status().code(), bytes)))
+                .timeout(Duration.ofMillis(settings.getTimeoutMillis()))
+                .doFinally(signal -> inFlight.decrementAndGet())
+                .subscribe(response -> {
+                    if (result != null) {
+                        record(result, response, System.nanoTime() - scheduled);
+                    }
+                }, t -> {
+                    if (result == null) {
+                        return;
+                    }
+                    if (t instanceof TimeoutException) {
+                        result.timeout(System.nanoTime() - scheduled);
+                    } else {
+                        result.failed(System.nanoTime() - scheduled);
+                    }
+                });
+    }
+
+    private void record(VariantResult result, Response response, long latencyNanos) {
+        if (response.status >= 400) {
+            result.httpError(latencyNanos);
+            return;
+        }
+
+        try {
+            JsonNode page = objectMapper.readTree(response.body);
+
+            Map<String, String> sections = new LinkedHashMap<>();
+            sections.put("fashion", page.path("statusFashion").asText("UNKNOWN"));
+            sections.put("toys", page.path("statusToys").asText("UNKNOWN"));
+            sections.put("hotDeals", page.path("statusHotDeals").asText("UNKNOWN"));
+
+            result.completed(latencyNanos, sections);
+        } catch (Exception e) {
+            result.failed(latencyNanos);
+        }
+    }
+
+    private void awaitInFlight() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.getTimeoutMillis() + 1000);
+        while (inFlight.get() > 0 && System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+    }
+
+    private static class Response {
+
+        private final int status;
+        private final byte[] body;
+
+        private Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.chaos.monkey.shopping.load;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * In-process stand-in for the gateway, to try the load generator and its reports without the catalogue services.
+ * Every {@code /startpage} variant answers after a few milliseconds, with a slow tail and now and then a cached or
+ * fallback section.
+ *
+ * @author Benjamin Wilms
+ */
+public class StubGateway implements AutoCloseable {
+
+    private static final String PAGE = "{\"fashionResponse\":{\"responseType\":\"%1$s\",\"products\":[]},"
+            + "\"toysResponse\":{\"responseType\":\"%2$s\",\"products\":[]},"
+            + "\"hotDealsResponse\":{\"responseType\":\"%3$s\",\"products\":[]},"
+            + "\"duration\":%4$d,\"statusFashion\":\"%1$s\",\"statusToys\":\"%2$s\",\"statusHotDeals\":\"%3$s\"}";
+
+    private final DisposableServer server;
+
+    public StubGateway() {
+        this.server = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .route(routes -> routes.get("/startpage", (request, response) -> respond(response))
+                        .get("/startpage/{variant}", (request, response) -> respond(response)))
+                .bindNow();
+    }
+
+    private static Publisher<Void> respond(HttpServerResponse response) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delayMillis = random.nextInt(100) == 0 ? 100 + random.nextInt(200) : 2 + random.nextInt(8);
+        String page = String.format(PAGE, status(random), status(random), status(random), delayMillis);
+
+        return response.header("Content-Type", "application/json;charset=UTF-8")
+                .sendString(Mono.just(page).delayElement(Duration.ofMillis(delayMillis)));
+    }
+
+    private static String status(ThreadLocalRandom random) {
+        int roll = random.nextInt(100);
+        return roll < 2 ? "FALLBACK" : roll < 5 ? "CACHED" : "REMOTE_SERVICE";
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + server.port();
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+}
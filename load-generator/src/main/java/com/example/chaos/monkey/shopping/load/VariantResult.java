@@ -0,0 +1,118 @@
+package com.example.chaos.monkey.shopping.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Everything recorded for one startpage variant after the warm-up. Latencies are measured from the time a request
+ * was scheduled to be sent, not from when it was actually sent, so a stalled gateway shows up in the percentiles
+ * instead of silently lowering the request rate.
+ *
+ * @author Benjamin Wilms
+ */
+public class VariantResult {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final String variant;
+    private final Histogram latencyMicros = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder httpErrors = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    // section (fashion, toys, hotDeals) -> ResponseType name -> count
+    private final ConcurrentMap<String, ConcurrentMap<String, LongAdder>> sections = new ConcurrentHashMap<>();
+
+    public VariantResult(String variant) {
+        this.variant = variant;
+    }
+
+    void requestSent() {
+        sent.increment();
+    }
+
+    void completed(long latencyNanos, Map<String, String> sectionStatus) {
+        record(latencyNanos);
+        completed.increment();
+        sectionStatus.forEach((section, status) -> sections
+                .computeIfAbsent(section, key -> new ConcurrentHashMap<>())
+                .computeIfAbsent(status, key -> new LongAdder())
+                .increment());
+    }
+
+    void httpError(long latencyNanos) {
+        record(latencyNanos);
+        httpErrors.increment();
+    }
+
+    void timeout(long latencyNanos) {
+        record(latencyNanos);
+        timeouts.increment();
+    }
+
+    void failed(long latencyNanos) {
+        record(latencyNanos);
+        failures.increment();
+    }
+
+    private void record(long latencyNanos) {
+        latencyMicros.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), MAX_LATENCY_MICROS));
+    }
+
+    public String getVariant() {
+        return variant;
+    }
+
+    public Histogram getLatencyMicros() {
+        return latencyMicros;
+    }
+
+    public long getSent() {
+        return sent.sum();
+    }
+
+    public long getCompleted() {
+        return completed.sum();
+    }
+
+    public long getHttpErrors() {
+        return httpErrors.sum();
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public Map<String, Map<String, Long>> getSections() {
+        Map<String, Map<String, Long>> snapshot = new TreeMap<>();
+        sections.forEach((section, counts) -> {
+            Map<String, Long> sectionSnapshot = new TreeMap<>();
+            counts.forEach((status, count) -> sectionSnapshot.put(status, count.sum()));
+            snapshot.put(section, sectionSnapshot);
+        });
+        return snapshot;
+    }
+
+    /**
+     * Section counts summed up per ResponseType.
+     */
+    public Map<String, Long> getResponseTypes() {
+        Map<String, Long> totals = new TreeMap<>();
+        getSections().values().forEach(counts -> counts.forEach((status, count) -> totals.merge(status, count, Long::sum)));
+        return totals;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.chaos.monkey.shopping.load;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class OpenLoopLoadGeneratorTest {
+
+    @Test
+    public void recordsEveryScheduledRequestAgainstStub() {
+        LoadSettings settings = LoadSettings.parse("--variants=cb,lb", "--rate=50", "--duration-seconds=1",
+                "--warmup-seconds=0", "--stub=true");
+
+        Map<String, VariantResult> results;
+        try (StubGateway stub = new StubGateway()) {
+            results = new OpenLoopLoadGenerator(settings, stub.getBaseUrl()).run();
+        }
+
+        for (VariantResult result : results.values()) {
+            assertEquals(50, result.getSent());
+            assertEquals(result.getSent(), result.getCompleted());
+            assertEquals(result.getSent(), result.getLatencyMicros().getTotalCount());
+            assertEquals(3 * result.getCompleted(), result.getResponseTypes().values().stream().mapToLong(Long::longValue).sum());
+            assertTrue(result.getResponseTypes().containsKey("REMOTE_SERVICE"));
+        }
+    }
+
+    @Test
+    public void scheduleDoesNotDriftWithUnevenIntervals() {
+        // 3 requests/s do not divide a second, a truncated interval would send request 3 at 999999999ns
+        assertEquals(333333333, OpenLoopLoadGenerator.scheduleOffset(1, 3));
+        assertEquals(1000000000, OpenLoopLoadGenerator.scheduleOffset(3, 3));
+        assertEquals(3600000000000L, OpenLoopLoadGenerator.scheduleOffset(3600L * 7000, 7000));
+    }
+
+    @Test
+    public void scheduleAboveOneRequestPerNanosecond() {
+        // a truncated interval is 0 here and the request count divides by it
+        assertEquals(0, OpenLoopLoadGenerator.scheduleOffset(1, 2000000000L));
+        assertEquals(1, OpenLoopLoadGenerator.scheduleOffset(2, 2000000000L));
+        assertEquals(1000000000, OpenLoopLoadGenerator.scheduleOffset(2000000000L, 2000000000L));
+    }
+}
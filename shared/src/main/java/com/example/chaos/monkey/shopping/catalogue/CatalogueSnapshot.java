@@ -0,0 +1,216 @@
+package com.example.chaos.monkey.shopping.catalogue;
+
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Versioned binary file of a {@link ProductColumns} store that is memory-mapped instead of parsed: the columns and the
+ * category and name orders are stored as they are held in memory, so mapping a catalogue of millions of products only
+ * costs building the id index. The pages are read from the file system cache on first use and shared by all
+ * processes mapping the same file.
+ * <p>
+ * Layout, little endian: a 64 byte header (magic {@code CATS}, format, catalogue version, rows, distinct names, name
+ * bytes, categories), then ids (long per row), name numbers (int per row), name offsets (int per name + 1), rows by
+ * name (int per row), category starts (int per category + 1), rows by category and rows by category and name (int
+ * per categorized row each), categories (byte per row) and the UTF-8 names.
+ *
+ * @author Benjamin Wilms
+ */
+public final class CatalogueSnapshot {
+
+    public static final String FILE_SUFFIX = ".catalogue";
+
+    private static final int MAGIC = 0x53544143; // "CATS" in little endian
+    private static final int FORMAT = 2;
+    private static final int HEADER_BYTES = 64;
+
+    private CatalogueSnapshot() {
+    }
+
+    /**
+     * Writes to a temporary file next to the target and moves it into place, so a watching service never maps a
+     * partly written snapshot.
+     */
+    public static void write(ProductCatalogue catalogue, long version, Path file) throws IOException {
+        ProductColumns columns = catalogue.columns();
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            int[] categoryStarts = columns.categoryStarts();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(FORMAT).putLong(version).putInt(columns.size())
+                    .putInt(columns.nameOffsets().limit() - 1).putInt(columns.names().limit())
+                    .putInt(ProductColumns.CATEGORIES.length);
+            header.clear();
+            writeFully(channel, header);
+
+            ByteBuffer chunk = ByteBuffer.allocateDirect(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            LongBuffer ids = columns.ids();
+            while (ids.hasRemaining()) {
+                chunk.putLong(ids.get());
+                flushIfFull(channel, chunk, Long.BYTES);
+            }
+            for (IntBuffer ints : Arrays.asList(columns.nameRefs(), columns.nameOffsets(), columns.byName(),
+                    IntBuffer.wrap(categoryStarts), columns.categoryRows(), columns.categoryByName())) {
+                while (ints.hasRemaining()) {
+                    chunk.putInt(ints.get());
+                    flushIfFull(channel, chunk, Integer.BYTES);
+                }
+            }
+            for (ByteBuffer bytes : Arrays.asList(columns.categories(), columns.names())) {
+                while (bytes.hasRemaining()) {
+                    chunk.put(bytes.get());
+                    flushIfFull(channel, chunk, 1);
+                }
+            }
+            chunk.flip();
+            writeFully(channel, chunk);
+            channel.force(false);
+        }
+
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the catalogue version in the header
+     * @throws IOException if the file is not a snapshot of this format
+     */
+    public static long version(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // read the whole header
+            }
+            header.flip();
+            checkHeader(file, header);
+            return header.getLong(8);
+        }
+    }
+
+    /**
+     * Maps a snapshot read-only. The mapping stays valid after the file is deleted or replaced and is released once
+     * the returned catalogue is garbage collected.
+     *
+     * @throws IOException if the file is not a consistent snapshot of this format
+     */
+    public static ProductCatalogue map(Path file) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        ByteBuffer buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+        checkHeader(file, buffer);
+        long version = buffer.getLong(8);
+        int rows = buffer.getInt(16);
+        int distinctNames = buffer.getInt(20);
+        int nameBytes = buffer.getInt(24);
+        int categories = buffer.getInt(28);
+        if (rows < 0 || distinctNames < 0 || nameBytes < 0) {
+            throw new IOException(file + " has a corrupt header");
+        }
+
+        Sections sections = new Sections(buffer, HEADER_BYTES);
+        LongBuffer ids = sections.next((long) rows * Long.BYTES).asLongBuffer();
+        IntBuffer nameRefs = sections.next((long) rows * Integer.BYTES).asIntBuffer();
+        IntBuffer nameOffsets = sections.next((distinctNames + 1L) * Integer.BYTES).asIntBuffer();
+        IntBuffer byName = sections.next((long) rows * Integer.BYTES).asIntBuffer();
+        IntBuffer categoryStartBuffer = sections.next((categories + 1L) * Integer.BYTES).asIntBuffer();
+        int[] categoryStarts = new int[categories + 1];
+        categoryStartBuffer.get(categoryStarts);
+        IntBuffer categoryRows = sections.next((long) categoryStarts[categories] * Integer.BYTES).asIntBuffer();
+        IntBuffer categoryByName = sections.next((long) categoryStarts[categories] * Integer.BYTES).asIntBuffer();
+        ByteBuffer rowCategories = sections.next(rows);
+        ByteBuffer names = sections.next(nameBytes);
+        if (sections.position != buffer.capacity()) {
+            throw new IOException(file + " has " + buffer.capacity() + " bytes instead of " + sections.position);
+        }
+
+        return new ProductCatalogue(new ProductColumns(ids, rowCategories, nameRefs, nameOffsets, names, byName,
+                categoryRows, categoryByName, categoryStarts), version);
+    }
+
+    private static void checkHeader(Path file, ByteBuffer header) throws IOException {
+        if (header.limit() < HEADER_BYTES || header.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a catalogue snapshot");
+        }
+        if (header.getInt(4) != FORMAT) {
+            throw new IOException(file + " has snapshot format " + header.getInt(4) + ", expected " + FORMAT);
+        }
+        if (header.getInt(28) != ProductColumns.CATEGORIES.length) {
+            throw new IOException(file + " was written for " + header.getInt(28) + " product categories, "
+                    + ProductCategory.class.getSimpleName() + " has " + ProductColumns.CATEGORIES.length);
+        }
+    }
+
+    private static void flushIfFull(FileChannel channel, ByteBuffer chunk, int next) throws IOException {
+        if (chunk.remaining() < next) {
+            chunk.flip();
+            writeFully(channel, chunk);
+            chunk.clear();
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Writes a snapshot of generated products, for trying out the snapshot loading of a service:
+     * {@code java -cp shared.jar ...CatalogueSnapshot <file> <version> <first id> <count> <category>...}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5) {
+            System.err.println("usage: CatalogueSnapshot <file> <version> <first id> <count> <category>...");
+            System.exit(1);
+        }
+
+        ProductCategory[] categories = Arrays.stream(args, 4, args.length).map(ProductCategory::valueOf)
+                .toArray(ProductCategory[]::new);
+        ProductColumns.Builder columns = GeneratedProducts.addTo(new ProductColumns.Builder(), Long.parseLong(args[2]),
+                Integer.parseInt(args[3]), categories);
+        write(new ProductCatalogue(columns.build(false), 0), Long.parseLong(args[1]), Paths.get(args[0]));
+    }
+
+    /**
+     * Consecutive little endian slices of the mapped file.
+     */
+    private static final class Sections {
+
+        private final ByteBuffer buffer;
+        private long position;
+
+        private Sections(ByteBuffer buffer, long position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        private ByteBuffer next(long bytes) throws IOException {
+            if (bytes < 0 || position + bytes > buffer.capacity()) {
+                throw new IOException("Snapshot section of " + bytes + " bytes at " + position + " exceeds the file");
+            }
+
+            ByteBuffer section = buffer.duplicate();
+            section.position((int) position);
+            section.limit((int) (position + bytes));
+            position += bytes;
+            return section.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.chaos.monkey.shopping.catalogue;
+
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+
+/**
+ * Deterministic synthetic products to fill a catalogue to a realistic size until the services load a real one. The
+ * names combine a brand, an adjective and a noun, so name prefixes select differently sized ranges.
+ *
+ * @author Benjamin Wilms
+ */
+public final class GeneratedProducts {
+
+    private static final String[] BRANDS = {"Acme", "Bolt", "Cosmo", "Delta", "Echo", "Fjord", "Gala", "Helix",
+            "Iris", "Juno", "Kite", "Lumen", "Mosaic", "Nova", "Orbit", "Pixel"};
+    private static final String[] ADJECTIVES = {"Classic", "Deluxe", "Eco", "Mini", "Pro", "Retro", "Smart",
+            "Ultra"};
+    private static final String[] NOUNS = {"Backpack", "Blocks", "Boots", "Cap", "Drone", "Jacket", "Kite", "Puzzle",
+            "Robot", "Scarf", "Socks", "Train"};
+
+    private GeneratedProducts() {
+    }
+
+    /**
+     * @param categories assigned in turn
+     * @param firstId    id of the first product, the others follow without gaps
+     */
+    public static ProductColumns.Builder addTo(ProductColumns.Builder catalogue, long firstId, int count,
+                                               ProductCategory... categories) {
+        for (int i = 0; i < count; i++) {
+            long id = firstId + i;
+            String name = BRANDS[i % BRANDS.length] + " " + ADJECTIVES[(i / BRANDS.length) % ADJECTIVES.length] + " "
+                    + NOUNS[(i / (BRANDS.length * ADJECTIVES.length)) % NOUNS.length] + " " + id;
+            catalogue.add(id, name, categories[i % categories.length]);
+        }
+        return catalogue;
+    }
+}
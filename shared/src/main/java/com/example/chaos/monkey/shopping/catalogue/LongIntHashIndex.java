@@ -0,0 +1,51 @@
+package com.example.chaos.monkey.shopping.catalogue;
+
+/**
+ * Open-addressing hash map from a {@code long} key to a non-negative {@code int}, sized once for a known number of
+ * keys. Two primitive arrays instead of a {@code HashMap<Long, Integer>} with a node, a {@code Long} and an
+ * {@code Integer} per entry.
+ *
+ * @author Benjamin Wilms
+ */
+final class LongIntHashIndex {
+
+    private final long[] keys;
+    // value + 1, 0 marks a free slot
+    private final int[] values;
+    private final int mask;
+
+    LongIntHashIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(2, expectedSize) * 2 - 1) << 1;
+        this.keys = new long[capacity];
+        this.values = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    void put(long key, int value) {
+        int slot = slot(key);
+        while (values[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value + 1;
+    }
+
+    /**
+     * @return the value or -1 if the key is unknown
+     */
+    int get(long key) {
+        int slot = slot(key);
+        while (values[slot] != 0) {
+            if (keys[slot] == key) {
+                return values[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int slot(long key) {
+        // Fibonacci hashing spreads sequential ids over the table
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
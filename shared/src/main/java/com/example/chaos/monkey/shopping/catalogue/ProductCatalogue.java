@@ -0,0 +1,216 @@
+package com.example.chaos.monkey.shopping.catalogue;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import com.example.chaos.monkey.shopping.domain.ProductPage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Immutable in-memory product catalogue indexed by id, by {@link ProductCategory} and by name prefix (ignoring the
+ * case of ASCII letters). Queries are keyset-paginated: a page starts with a binary search behind the cursor and reads
+ * at most the requested number of products, so the cost of a page does not depend on the size of the catalogue.
+ * <p>
+ * Pages are ordered by id, or by name and id if a name prefix is given. A cursor is only valid for the same kind of
+ * query it was returned for.
+ * <p>
+ * The products and their category and name orders are kept in {@link ProductColumns}.
+ *
+ * @author Benjamin Wilms
+ */
+public final class ProductCatalogue {
+
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 200;
+
+    private final ProductColumns columns;
+    private final long version;
+
+    /**
+     * @param products the catalogue, a later product replaces an earlier one with the same id
+     */
+    public ProductCatalogue(Collection<Product> products) {
+        this(ProductColumns.of(products, false), 0);
+    }
+
+    /**
+     * @param version of a {@link CatalogueSnapshot}, 0 for a catalogue built in the service
+     */
+    public ProductCatalogue(ProductColumns columns, long version) {
+        this.columns = columns;
+        this.version = version;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return columns.size();
+    }
+
+    ProductColumns columns() {
+        return columns;
+    }
+
+    /**
+     * @return the product with this id or null
+     */
+    public Product get(long id) {
+        int row = columns.rowOf(id);
+        return row < 0 ? null : columns.product(row);
+    }
+
+    /**
+     * @param category   only products of this category, null for all
+     * @param namePrefix only products whose name starts with this (ASCII case insensitive), null or empty for all
+     * @param cursor     {@link ProductPage#getNextCursor()} of the previous page, null for the first page
+     * @param limit      page size of at least 1, capped at {@link #MAX_LIMIT}
+     * @throws IllegalArgumentException if the limit is below 1, or the cursor is malformed or belongs to another
+     *                                  kind of query
+     */
+    public ProductPage page(ProductCategory category, String namePrefix, String cursor, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit " + limit + " is below 1");
+        }
+        int size = Math.min(limit, MAX_LIMIT);
+
+        if (namePrefix == null || namePrefix.isEmpty()) {
+            if (category == null) {
+                return pageById(columns.size(), row -> row, cursor, size);
+            }
+            return pageById(columns.categorySize(category), position -> columns.rowOfCategory(category, position),
+                    cursor, size);
+        }
+        if (category == null) {
+            return pageByName(columns.size(), columns::rowByName, foldAscii(namePrefix), cursor, size);
+        }
+        return pageByName(columns.categorySize(category), position -> columns.rowOfCategoryByName(category, position),
+                foldAscii(namePrefix), cursor, size);
+    }
+
+    /**
+     * @param rowAt the row at a position of an id ordered list of rows
+     */
+    private ProductPage pageById(int rows, IntUnaryOperator rowAt, String cursor, int size) {
+        int from = 0;
+        if (cursor != null) {
+            String[] key = decodeCursor(cursor, "i", 2);
+            from = firstIdAfter(rows, rowAt, parseId(key[1]));
+        }
+
+        int to = Math.min(rows, from + size);
+        List<Product> products = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            products.add(columns.product(rowAt.applyAsInt(i)));
+        }
+
+        String next = to < rows ? encodeCursor("i", Long.toString(columns.id(rowAt.applyAsInt(to - 1)))) : null;
+        return new ProductPage(products, next);
+    }
+
+    /**
+     * @param rowAt the row at a position of a name ordered list of rows
+     */
+    private ProductPage pageByName(int rows, IntUnaryOperator rowAt, String prefix, String cursor, int size) {
+        byte[] prefixKey = prefix.getBytes(StandardCharsets.UTF_8);
+        int from = firstNameAfter(rows, rowAt, prefixKey, Long.MIN_VALUE);
+        if (cursor != null) {
+            String[] key = decodeCursor(cursor, "n", 3);
+            if (!key[2].startsWith(prefix)) {
+                throw new IllegalArgumentException("Cursor does not belong to prefix " + prefix);
+            }
+            from = firstNameAfter(rows, rowAt, key[2].getBytes(StandardCharsets.UTF_8), parseId(key[1]));
+        }
+
+        // one more than requested tells whether there is a next page
+        List<Product> products = new ArrayList<>(size + 1);
+        for (int i = from; i < rows && products.size() <= size; i++) {
+            int row = rowAt.applyAsInt(i);
+            if (!columns.nameStartsWith(row, prefixKey)) {
+                break;
+            }
+            products.add(columns.product(row));
+        }
+
+        String next = null;
+        if (products.size() > size) {
+            products.remove(size);
+            Product last = products.get(size - 1);
+            next = encodeCursor("n", Long.toString(last.getId()), foldAscii(last.getName()));
+        }
+        return new ProductPage(products, next);
+    }
+
+    private int firstIdAfter(int rows, IntUnaryOperator rowAt, long id) {
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (columns.id(rowAt.applyAsInt(mid)) <= id) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // first row sorting after name key and id, ids are positive so Long.MIN_VALUE means from the first with the key
+    private int firstNameAfter(int rows, IntUnaryOperator rowAt, byte[] key, long id) {
+        int low = 0;
+        int high = rows;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int row = rowAt.applyAsInt(mid);
+            int compared = columns.compareName(row, key);
+            if (compared < 0 || compared == 0 && columns.id(row) <= id) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static String foldAscii(String name) {
+        char[] chars = name.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') {
+                chars[i] += 'a' - 'A';
+            }
+        }
+        return new String(chars);
+    }
+
+    private static String encodeCursor(String... parts) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(String.join("\n", parts).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor, String kind, int parts) {
+        String[] key;
+        try {
+            key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", parts);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor " + cursor, e);
+        }
+        if (key.length != parts || !kind.equals(key[0])) {
+            throw new IllegalArgumentException("Cursor " + cursor + " belongs to another query");
+        }
+        return key;
+    }
+
+    private static long parseId(String id) {
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor id " + id, e);
+        }
+    }
+}
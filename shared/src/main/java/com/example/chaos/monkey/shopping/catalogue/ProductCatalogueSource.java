@@ -0,0 +1,139 @@
+package com.example.chaos.monkey.shopping.catalogue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The current {@link ProductCatalogue} of a service. Either fixed, or mapped from the {@link CatalogueSnapshot} with
+ * the highest version in a directory that is polled for newer snapshots: a newer one is mapped and swapped in while
+ * requests keep reading the catalogue they started with. Cursors stay valid across a swap, they only hold the sort key
+ * of the last product.
+ * <p>
+ * A file that cannot be mapped is logged and skipped until it changes, the current catalogue stays in place.
+ *
+ * @author Benjamin Wilms
+ */
+public final class ProductCatalogueSource implements Supplier<ProductCatalogue>, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCatalogueSource.class);
+
+    private final Path directory;
+    private final ScheduledExecutorService poller;
+    private final Map<Path, FileTime> rejected = new ConcurrentHashMap<>();
+    private volatile ProductCatalogue current;
+
+    private ProductCatalogueSource(Path directory, ProductCatalogue current) {
+        this.directory = directory;
+        this.current = current;
+        this.poller = directory == null ? null : Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "catalogue-snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public static ProductCatalogueSource fixed(ProductCatalogue catalogue) {
+        return new ProductCatalogueSource(null, catalogue);
+    }
+
+    /**
+     * @param directory  searched for {@code *.catalogue} snapshots
+     * @param pollMillis interval of the search for newer snapshots
+     * @param fallback   used until the directory has a snapshot
+     */
+    public static ProductCatalogueSource watching(Path directory, long pollMillis,
+                                                  Supplier<ProductCatalogue> fallback) {
+        ProductCatalogueSource source = new ProductCatalogueSource(directory, null);
+        if (!source.refresh()) {
+            log.info("No catalogue snapshot in {}, using the built-in catalogue until one appears", directory);
+            source.current = fallback.get();
+        }
+
+        source.poller.scheduleWithFixedDelay(source::refresh, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        return source;
+    }
+
+    @Override
+    public ProductCatalogue get() {
+        return current;
+    }
+
+    /**
+     * @return true if a newer snapshot was swapped in
+     */
+    public synchronized boolean refresh() {
+        Path newest = null;
+        long newestVersion = current == null ? Long.MIN_VALUE : current.getVersion();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + CatalogueSnapshot.FILE_SUFFIX)) {
+            for (Path file : files) {
+                FileTime modified = Files.getLastModifiedTime(file);
+                if (modified.equals(rejected.get(file))) {
+                    continue;
+                }
+
+                try {
+                    long version = CatalogueSnapshot.version(file);
+                    if (version > newestVersion) {
+                        newest = file;
+                        newestVersion = version;
+                    }
+                } catch (IOException e) {
+                    reject(file, modified, e);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // not created (or mounted) yet
+            return false;
+        } catch (IOException e) {
+            log.warn("Cannot search {} for catalogue snapshots: {}", directory, e.toString());
+            return false;
+        }
+
+        return newest != null && swap(newest);
+    }
+
+    private boolean swap(Path file) {
+        long start = System.nanoTime();
+        try {
+            ProductCatalogue catalogue = CatalogueSnapshot.map(file);
+            current = catalogue;
+            log.info("Catalogue version {} with {} products mapped from {} in {} ms", catalogue.getVersion(),
+                    catalogue.size(), file, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return true;
+        } catch (IOException | RuntimeException e) {
+            try {
+                reject(file, Files.getLastModifiedTime(file), e);
+            } catch (IOException gone) {
+                log.warn("Catalogue snapshot {} disappeared: {}", file, gone.toString());
+            }
+            return false;
+        }
+    }
+
+    private void reject(Path file, FileTime modified, Exception cause) {
+        rejected.put(file, modified);
+        log.warn("Skipping catalogue snapshot {} until it changes: {}", file, cause.toString());
+    }
+
+    @Override
+    public void close() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package com.example.chaos.monkey.shopping.catalogue;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.IntStream;
+
+/**
+ * Column store of products, one row per product in id order: the ids, a byte per row for the {@link ProductCategory}
+ * and a dictionary of the distinct names as UTF-8 in a single buffer that rows refer to by number. Next to the columns
+ * it keeps the rows sorted by name, and grouped by category in id and in name order, for the catalogue queries, and
+ * an id to row hash index over primitive arrays.
+ * <p>
+ * All columns are {@link java.nio.Buffer}s, backed by arrays when built with a {@link Builder}, by a direct buffer
+ * for off-heap names, or by a memory-mapped {@link CatalogueSnapshot} file. Nothing is held per product as an object,
+ * a {@link Product} is only created for the rows that are returned.
+ *
+ * @author Benjamin Wilms
+ */
+public final class ProductColumns {
+
+    static final ProductCategory[] CATEGORIES = ProductCategory.values();
+    private static final byte NO_CATEGORY = -1;
+
+    private final LongBuffer ids;
+    private final ByteBuffer categories;
+    private final IntBuffer nameRefs;
+    // name n is names[nameOffsets[n], nameOffsets[n + 1])
+    private final IntBuffer nameOffsets;
+    private final ByteBuffer names;
+    // rows sorted by name and id
+    private final IntBuffer byName;
+    // rows of category c in id order are categoryRows[categoryStarts[c], categoryStarts[c + 1])
+    private final IntBuffer categoryRows;
+    // the same ranges of rows sorted by name and id
+    private final IntBuffer categoryByName;
+    private final int[] categoryStarts;
+    private final LongIntHashIndex rowsById;
+
+    ProductColumns(LongBuffer ids, ByteBuffer categories, IntBuffer nameRefs, IntBuffer nameOffsets, ByteBuffer names,
+                   IntBuffer byName, IntBuffer categoryRows, IntBuffer categoryByName, int[] categoryStarts) {
+        this.ids = ids;
+        this.categories = categories;
+        this.nameRefs = nameRefs;
+        this.nameOffsets = nameOffsets;
+        this.names = names;
+        this.byName = byName;
+        this.categoryRows = categoryRows;
+        this.categoryByName = categoryByName;
+        this.categoryStarts = categoryStarts;
+        this.rowsById = new LongIntHashIndex(ids.limit());
+        for (int row = 0; row < ids.limit(); row++) {
+            rowsById.put(ids.get(row), row);
+        }
+    }
+
+    /**
+     * @param products a later product replaces an earlier one with the same id
+     * @param offHeap  keep the names in a direct buffer outside the Java heap
+     */
+    public static ProductColumns of(Collection<Product> products, boolean offHeap) {
+        Builder builder = new Builder();
+        products.forEach(builder::add);
+        return builder.build(offHeap);
+    }
+
+    public int size() {
+        return ids.limit();
+    }
+
+    /**
+     * @return the row of the product with this id or -1
+     */
+    public int rowOf(long id) {
+        return rowsById.get(id);
+    }
+
+    public long id(int row) {
+        return ids.get(row);
+    }
+
+    public ProductCategory category(int row) {
+        byte code = categories.get(row);
+        return code == NO_CATEGORY ? null : CATEGORIES[code];
+    }
+
+    public boolean hasCategory(int row, ProductCategory category) {
+        return categories.get(row) == category.ordinal();
+    }
+
+    public String name(int row) {
+        int ref = nameRefs.get(row);
+        int offset = nameOffsets.get(ref);
+        int length = nameOffsets.get(ref + 1) - offset;
+
+        if (names.hasArray()) {
+            return new String(names.array(), names.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer name = names.duplicate();
+        name.position(offset);
+        name.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return a new {@link Product} with the values of this row, changing it does not change the catalogue
+     */
+    public Product product(int row) {
+        return new Product(id(row), name(row), category(row));
+    }
+
+    /**
+     * @return the row at this position of the name order
+     */
+    int rowByName(int position) {
+        return byName.get(position);
+    }
+
+    int categorySize(ProductCategory category) {
+        return categoryStarts[category.ordinal() + 1] - categoryStarts[category.ordinal()];
+    }
+
+    /**
+     * @return the row at this position of the category's rows in id order
+     */
+    int rowOfCategory(ProductCategory category, int position) {
+        return categoryRows.get(categoryStarts[category.ordinal()] + position);
+    }
+
+    /**
+     * @return the row at this position of the category's rows in name order
+     */
+    int rowOfCategoryByName(ProductCategory category, int position) {
+        return categoryByName.get(categoryStarts[category.ordinal()] + position);
+    }
+
+    /**
+     * Compares the name of a row with an UTF-8 key, ignoring the case of ASCII letters.
+     */
+    int compareName(int row, byte[] key) {
+        int ref = nameRefs.get(row);
+        int offset = nameOffsets.get(ref);
+        int length = nameOffsets.get(ref + 1) - offset;
+
+        for (int i = 0; i < Math.min(length, key.length); i++) {
+            int compared = Integer.compare(fold(names.get(offset + i)), fold(key[i]));
+            if (compared != 0) {
+                return compared;
+            }
+        }
+        return Integer.compare(length, key.length);
+    }
+
+    boolean nameStartsWith(int row, byte[] prefix) {
+        int ref = nameRefs.get(row);
+        int offset = nameOffsets.get(ref);
+        if (nameOffsets.get(ref + 1) - offset < prefix.length) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (fold(names.get(offset + i)) != fold(prefix[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    LongBuffer ids() {
+        return ids.duplicate();
+    }
+
+    ByteBuffer categories() {
+        return categories.duplicate();
+    }
+
+    IntBuffer nameRefs() {
+        return nameRefs.duplicate();
+    }
+
+    IntBuffer nameOffsets() {
+        return nameOffsets.duplicate();
+    }
+
+    ByteBuffer names() {
+        return names.duplicate();
+    }
+
+    IntBuffer byName() {
+        return byName.duplicate();
+    }
+
+    IntBuffer categoryRows() {
+        return categoryRows.duplicate();
+    }
+
+    IntBuffer categoryByName() {
+        return categoryByName.duplicate();
+    }
+
+    int[] categoryStarts() {
+        return categoryStarts.clone();
+    }
+
+    /**
+     * @return the byte as unsigned value, with ASCII upper case letters mapped to lower case
+     */
+    private static int fold(byte b) {
+        int value = b & 0xFF;
+        return value >= 'A' && value <= 'Z' ? value + ('a' - 'A') : value;
+    }
+
+    /**
+     * Collects products row by row straight into growable primitive columns, so building a large catalogue does not
+     * need a {@link Product} per row either. Names are deduplicated through a hash table of name numbers over the
+     * name bytes.
+     */
+    public static final class Builder {
+
+        private static final int SORT_RUN = 32;
+
+        private long[] ids = new long[64];
+        private byte[] categories = new byte[64];
+        private int[] nameRefs = new int[64];
+        private int size;
+
+        private byte[] names = new byte[1024];
+        private int namesLength;
+        private int[] nameOffsets = new int[65];
+        private int distinctNames;
+        // name number + 1, 0 marks a free slot
+        private int[] dictionary = new int[128];
+
+        public Builder add(Product product) {
+            return add(product.getId(), product.getName(), product.getCategory());
+        }
+
+        /**
+         * A later product replaces an earlier one with the same id.
+         */
+        public Builder add(long id, String name, ProductCategory category) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                categories = Arrays.copyOf(categories, size * 2);
+                nameRefs = Arrays.copyOf(nameRefs, size * 2);
+            }
+
+            ids[size] = id;
+            categories[size] = category == null ? NO_CATEGORY : (byte) category.ordinal();
+            nameRefs[size] = nameRef((name == null ? "" : name).getBytes(StandardCharsets.UTF_8));
+            size++;
+            return this;
+        }
+
+        public ProductColumns build(boolean offHeap) {
+            int[] rows = rowsInIdOrder();
+
+            long[] sortedIds = new long[rows.length];
+            byte[] sortedCategories = new byte[rows.length];
+            int[] sortedNameRefs = new int[rows.length];
+            for (int row = 0; row < rows.length; row++) {
+                sortedIds[row] = ids[rows[row]];
+                sortedCategories[row] = categories[rows[row]];
+                sortedNameRefs[row] = nameRefs[rows[row]];
+            }
+
+            ByteBuffer nameBuffer = offHeap ? ByteBuffer.allocateDirect(namesLength) : ByteBuffer.allocate(namesLength);
+            nameBuffer.put(names, 0, namesLength);
+            nameBuffer.clear();
+            nameOffsets[distinctNames] = namesLength;
+            IntBuffer offsets = IntBuffer.wrap(Arrays.copyOf(nameOffsets, distinctNames + 1));
+
+            int[] categoryStarts = new int[CATEGORIES.length + 1];
+            for (byte code : sortedCategories) {
+                if (code != NO_CATEGORY) {
+                    categoryStarts[code + 1]++;
+                }
+            }
+            for (int c = 0; c < CATEGORIES.length; c++) {
+                categoryStarts[c + 1] += categoryStarts[c];
+            }
+            int[] categoryRows = new int[categoryStarts[CATEGORIES.length]];
+            int[] next = Arrays.copyOf(categoryStarts, CATEGORIES.length);
+            for (int row = 0; row < sortedCategories.length; row++) {
+                if (sortedCategories[row] != NO_CATEGORY) {
+                    categoryRows[next[sortedCategories[row]]++] = row;
+                }
+            }
+
+            // a stable sort of the rows (in id order) by name orders equal names by id
+            int[] byName = IntStream.range(0, rows.length).toArray();
+            sort(byName, (row, other) -> compareNames(nameBuffer, offsets, sortedNameRefs[row], sortedNameRefs[other]));
+
+            // grouping the name order by category keeps it sorted within every category
+            int[] categoryByName = new int[categoryRows.length];
+            next = Arrays.copyOf(categoryStarts, CATEGORIES.length);
+            for (int row : byName) {
+                if (sortedCategories[row] != NO_CATEGORY) {
+                    categoryByName[next[sortedCategories[row]]++] = row;
+                }
+            }
+
+            return new ProductColumns(LongBuffer.wrap(sortedIds), ByteBuffer.wrap(sortedCategories),
+                    IntBuffer.wrap(sortedNameRefs), offsets, nameBuffer, IntBuffer.wrap(byName),
+                    IntBuffer.wrap(categoryRows), IntBuffer.wrap(categoryByName), categoryStarts);
+        }
+
+        /**
+         * @return the added rows sorted by id, of several rows with the same id only the last one
+         */
+        private int[] rowsInIdOrder() {
+            boolean sorted = true;
+            for (int row = 1; row < size && sorted; row++) {
+                sorted = ids[row - 1] < ids[row];
+            }
+            if (sorted) {
+                return IntStream.range(0, size).toArray();
+            }
+
+            // stable, so the last of several rows with the same id is the last of its run
+            int[] rows = IntStream.range(0, size).toArray();
+            sort(rows, (row, other) -> Long.compare(ids[row], ids[other]));
+            return IntStream.range(0, rows.length)
+                    .filter(i -> i + 1 == rows.length || ids[rows[i + 1]] != ids[rows[i]])
+                    .map(i -> rows[i])
+                    .toArray();
+        }
+
+        /**
+         * Stable merge sort of row numbers, with insertion sorted runs, that needs no boxed row per element.
+         */
+        static void sort(int[] rows, RowComparator comparator) {
+            for (int from = 0; from < rows.length; from += SORT_RUN) {
+                int to = Math.min(from + SORT_RUN, rows.length);
+                for (int i = from + 1; i < to; i++) {
+                    int row = rows[i];
+                    int j = i;
+                    while (j > from && comparator.compare(rows[j - 1], row) > 0) {
+                        rows[j] = rows[j - 1];
+                        j--;
+                    }
+                    rows[j] = row;
+                }
+            }
+
+            int[] source = rows;
+            int[] target = new int[rows.length];
+            for (int width = SORT_RUN; width < rows.length; width *= 2) {
+                for (int from = 0; from < rows.length; from += 2 * width) {
+                    int middle = Math.min(from + width, rows.length);
+                    int to = Math.min(from + 2 * width, rows.length);
+                    int left = from;
+                    int right = middle;
+                    for (int i = from; i < to; i++) {
+                        // taking the left one of equal rows keeps the sort stable
+                        if (right == to || left < middle && comparator.compare(source[left], source[right]) <= 0) {
+                            target[i] = source[left++];
+                        } else {
+                            target[i] = source[right++];
+                        }
+                    }
+                }
+                int[] merged = target;
+                target = source;
+                source = merged;
+            }
+            if (source != rows) {
+                System.arraycopy(source, 0, rows, 0, rows.length);
+            }
+        }
+
+        private static int compareNames(ByteBuffer names, IntBuffer offsets, int ref, int otherRef) {
+            if (ref == otherRef) {
+                return 0;
+            }
+
+            int offset = offsets.get(ref);
+            int length = offsets.get(ref + 1) - offset;
+            int otherOffset = offsets.get(otherRef);
+            int otherLength = offsets.get(otherRef + 1) - otherOffset;
+
+            for (int i = 0; i < Math.min(length, otherLength); i++) {
+                int compared = Integer.compare(fold(names.get(offset + i)), fold(names.get(otherOffset + i)));
+                if (compared != 0) {
+                    return compared;
+                }
+            }
+            return Integer.compare(length, otherLength);
+        }
+
+        private int nameRef(byte[] name) {
+            int mask = dictionary.length - 1;
+            int slot = slot(hash(name, 0, name.length), mask);
+            while (dictionary[slot] != 0) {
+                int ref = dictionary[slot] - 1;
+                if (sameName(ref, name)) {
+                    return ref;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            if (namesLength + name.length > names.length) {
+                names = Arrays.copyOf(names, Math.max(names.length * 2, namesLength + name.length));
+            }
+            if (distinctNames + 1 == nameOffsets.length) {
+                nameOffsets = Arrays.copyOf(nameOffsets, nameOffsets.length * 2);
+            }
+
+            int ref = distinctNames++;
+            nameOffsets[ref] = namesLength;
+            System.arraycopy(name, 0, names, namesLength, name.length);
+            namesLength += name.length;
+            dictionary[slot] = ref + 1;
+
+            if (distinctNames * 2 > dictionary.length) {
+                rehash();
+            }
+            return ref;
+        }
+
+        private boolean sameName(int ref, byte[] name) {
+            int offset = nameOffsets[ref];
+            int length = (ref + 1 == distinctNames ? namesLength : nameOffsets[ref + 1]) - offset;
+            if (length != name.length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (names[offset + i] != name[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            int[] table = new int[dictionary.length * 2];
+            int mask = table.length - 1;
+            for (int ref = 0; ref < distinctNames; ref++) {
+                int end = ref + 1 == distinctNames ? namesLength : nameOffsets[ref + 1];
+                int slot = slot(hash(names, nameOffsets[ref], end), mask);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = ref + 1;
+            }
+            dictionary = table;
+        }
+
+        private static int hash(byte[] bytes, int from, int to) {
+            int hash = 1;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            return hash;
+        }
+
+        private static int slot(int hash, int mask) {
+            int spread = hash * 0x9E3779B9;
+            return (spread ^ (spread >>> 16)) & mask;
+        }
+
+        interface RowComparator {
+
+            int compare(int row, int other);
+        }
+    }
+}
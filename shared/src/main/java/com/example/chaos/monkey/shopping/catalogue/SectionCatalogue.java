@@ -0,0 +1,159 @@
+package com.example.chaos.monkey.shopping.catalogue;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductBuilder;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import com.example.chaos.monkey.shopping.domain.ProductSection;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The product lists of the startpage sections, and the batch responses of a catalogue service that serves some of
+ * them. Every service knows all sections, {@code catalogue.edge.sections} selects the ones it serves: its own by
+ * default, all of them when it runs as the combined catalogue edge of the startpage.
+ * <p>
+ * A batch response lists the requested sections in the requested order. There are only a handful of distinct
+ * requests, so each is encoded once and every repetition writes the same bytes.
+ *
+ * @author Benjamin Wilms
+ */
+public final class SectionCatalogue {
+
+    public static final String HOTDEALS = "hotdeals";
+    public static final String FASHION = "fashion";
+    public static final String TOYS = "toys";
+
+    private static final List<String> NAMES = Arrays.asList(HOTDEALS, FASHION, TOYS);
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+
+    private final Set<String> served;
+    private final ObjectMapper objectMapper;
+    private final Map<String, byte[]> jsonResponses = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> smileResponses = new ConcurrentHashMap<>();
+
+    /**
+     * @param served section names, see {@link #HOTDEALS}, {@link #FASHION} and {@link #TOYS}
+     */
+    public SectionCatalogue(ObjectMapper objectMapper, String... served) {
+        this.served = new LinkedHashSet<>(checkNames(Arrays.asList(served)));
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @return the built-in products of a section
+     * @throws IllegalArgumentException for an unknown section name
+     */
+    public static List<Product> products(String section) {
+        switch (section) {
+            case HOTDEALS:
+                return createHotDeals();
+            case FASHION:
+                return createFashionBestseller();
+            case TOYS:
+                return createToysBestseller();
+            default:
+                throw new IllegalArgumentException("Unknown section " + section + ", expected one of " + NAMES);
+        }
+    }
+
+    public Set<String> getServed() {
+        return Collections.unmodifiableSet(served);
+    }
+
+    /**
+     * @param names requested sections, repeated names are answered once
+     * @return the encoded list of {@link ProductSection}s, shared and not to be modified
+     * @throws IllegalArgumentException for an unknown section name
+     */
+    public byte[] encode(List<String> names, boolean smile) {
+        List<String> requested = checkNames(new ArrayList<>(new LinkedHashSet<>(names)));
+        String key = String.join(",", requested);
+
+        return (smile ? smileResponses : jsonResponses).computeIfAbsent(key, k -> {
+            List<ProductSection> sections = new ArrayList<>(requested.size());
+            for (String name : requested) {
+                sections.add(served.contains(name)
+                        ? new ProductSection(name, ProductSection.Status.OK, products(name))
+                        : new ProductSection(name, ProductSection.Status.UNAVAILABLE, Collections.<Product>emptyList()));
+            }
+
+            try {
+                return (smile ? SMILE_MAPPER : objectMapper).writeValueAsBytes(sections);
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static List<String> checkNames(List<String> names) {
+        for (String name : names) {
+            if (!NAMES.contains(name)) {
+                throw new IllegalArgumentException("Unknown section " + name + ", expected one of " + NAMES);
+            }
+        }
+        return names;
+    }
+
+    private static List<Product> createHotDeals() {
+        AtomicLong aLong = new AtomicLong(7);
+
+        ProductBuilder productBuilder = new ProductBuilder();
+
+        Product product1 = productBuilder.setCategory(ProductCategory.FASHION).setId(aLong.getAndIncrement()).setName("Thermal Winter Warm Hot Heat" +
+                " Socks")
+                .createProduct();
+
+        Product product2 = productBuilder.setCategory(ProductCategory.TOYS).setId(aLong.getAndIncrement()).setName("RC Quadcopter Drone with 2.0MP Camera Live")
+                .createProduct();
+
+        Product product3 = productBuilder.setCategory(ProductCategory.BOOKS).setId(aLong.getAndIncrement()).setName("Spring Boot 2: Moderne Softwareentwicklung mit Spring 5")
+                .createProduct();
+        return Arrays.asList(product1, product2, product3);
+    }
+
+    private static List<Product> createFashionBestseller() {
+        AtomicLong aLong = new AtomicLong(4);
+
+        ProductBuilder productBuilder = new ProductBuilder();
+
+        Product product1 = productBuilder.setCategory(ProductCategory.FASHION).setId(aLong.getAndIncrement()).setName("Bob Mailor Slim Jeans")
+                .createProduct();
+
+        Product product2 = productBuilder.setCategory(ProductCategory.FASHION).setId(aLong.getAndIncrement()).setName("Lewi's Jeanshose 511 " +
+                "Slim Fit")
+                .createProduct();
+
+        Product product3 = productBuilder.setCategory(ProductCategory.FASHION).setId(aLong.getAndIncrement()).setName("Urban Classics T-Shirt " +
+                "Shaped Long Tee")
+                .createProduct();
+        return Arrays.asList(product1, product2, product3);
+    }
+
+    private static List<Product> createToysBestseller() {
+        AtomicLong aLong = new AtomicLong(1);
+
+        ProductBuilder productBuilder = new ProductBuilder();
+
+        Product product1 = productBuilder.setCategory(ProductCategory.TOYS).setId(aLong.getAndIncrement()).setName("LEGO Star Wars Yodas Hut")
+                .createProduct();
+
+        Product product2 = productBuilder.setCategory(ProductCategory.TOYS).setId(aLong.getAndIncrement()).setName("LEGO Star Wars Millennium Falcon")
+                .createProduct();
+
+        Product product3 = productBuilder.setCategory(ProductCategory.TOYS).setId(aLong.getAndIncrement()).setName("LEGO Star Wars Imperial Tie Fighter")
+                .createProduct();
+        return Arrays.asList(product1, product2, product3);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.chaos.monkey.shopping.domain;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable product list together with its JSON and Smile encodings and a content-hash ETag per encoding, built once
+ * so that serving the list is a plain byte copy. The encoded bytes are shared and must not be modified.
+ *
+ * @author Benjamin Wilms
+ */
+public final class EncodedProductList {
+
+    private static final ObjectMapper SMILE_MAPPER = new ObjectMapper(new SmileFactory());
+
+    private final List<Product> products;
+    private final byte[] json;
+    private final String eTag;
+    private final byte[] smile;
+    private final String smileETag;
+
+    public EncodedProductList(List<Product> products, ObjectMapper objectMapper) throws JsonProcessingException {
+        this.products = Collections.unmodifiableList(new ArrayList<>(products));
+        this.json = objectMapper.writeValueAsBytes(this.products);
+        this.eTag = "\"" + md5Hex(json) + "\"";
+        this.smile = SMILE_MAPPER.writeValueAsBytes(this.products);
+        this.smileETag = "\"" + md5Hex(smile) + "\"";
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public byte[] getJson() {
+        return json;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public byte[] getSmile() {
+        return smile;
+    }
+
+    public String getSmileETag() {
+        return smileETag;
+    }
+
+    private static String md5Hex(byte[] bytes) {
+        try {
+            StringBuilder hex = new StringBuilder(32);
+            for (byte b : MessageDigest.getInstance("MD5").digest(bytes)) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+}
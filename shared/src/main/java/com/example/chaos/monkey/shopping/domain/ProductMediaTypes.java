@@ -0,0 +1,72 @@
+package com.example.chaos.monkey.shopping.domain;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.util.List;
+
+/**
+ * Media types of the product lists exchanged between the gateways and the catalogue services. The catalogue services
+ * answer with Smile (binary JSON) if the {@code Accept} header asks for it and with JSON otherwise.
+ *
+ * @author Benjamin Wilms
+ */
+public final class ProductMediaTypes {
+
+    public static final String SMILE = "application/x-jackson-smile";
+    public static final String JSON = "application/json";
+
+    private static final MediaType SMILE_TYPE = MediaType.parseMediaType(SMILE);
+    private static final MediaType JSON_TYPE = MediaType.parseMediaType(JSON);
+
+    private ProductMediaTypes() {
+    }
+
+    /**
+     * @param wireFormat {@code smile} or {@code json}
+     * @return the {@code Accept} header a gateway sends, Smile is preferred but JSON is still accepted
+     */
+    public static String accept(String wireFormat) {
+        return "smile".equalsIgnoreCase(wireFormat) ? SMILE + ", " + JSON + ";q=0.5" : JSON;
+    }
+
+    /**
+     * Compares the quality of Smile and JSON in an {@code Accept} header, each taken from the most specific range that
+     * includes it (RFC 7231, section 5.3.2). Smile is chosen if its quality is higher, or equal and Smile is listed
+     * explicitly. Wildcards alone, a missing or malformed header keep the JSON default.
+     *
+     * @return true if the {@code Accept} header prefers Smile over JSON
+     */
+    public static boolean acceptsSmile(String accept) {
+        if (accept == null || accept.isEmpty()) {
+            return false;
+        }
+
+        List<MediaType> ranges;
+        try {
+            ranges = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        MediaType.sortBySpecificity(ranges);
+
+        MediaType smile = mostSpecificRange(ranges, SMILE_TYPE);
+        if (smile == null || smile.getQualityValue() == 0) {
+            return false;
+        }
+        MediaType json = mostSpecificRange(ranges, JSON_TYPE);
+        double jsonQuality = json != null ? json.getQualityValue() : 0;
+        return smile.getQualityValue() > jsonQuality
+                || smile.getQualityValue() == jsonQuality && !smile.isWildcardType() && !smile.isWildcardSubtype();
+    }
+
+    // ranges sorted by specificity
+    private static MediaType mostSpecificRange(List<MediaType> ranges, MediaType type) {
+        for (MediaType range : ranges) {
+            if (range.includes(type)) {
+                return range;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.chaos.monkey.shopping.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of a catalogue query. {@code nextCursor} is passed back as {@code cursor} to get the following page and is
+ * null on the last one.
+ *
+ * @author Benjamin Wilms
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ProductPage {
+
+    private List<Product> products;
+    private String nextCursor;
+
+}
@@ -0,0 +1,27 @@
+package com.example.chaos.monkey.shopping.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One startpage section (hotdeals, fashion or toys) of a batch response. A catalogue service answers
+ * {@link Status#UNAVAILABLE} with no products for sections it does not serve, the caller fetches those on its own.
+ *
+ * @author Benjamin Wilms
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+public class ProductSection {
+
+    private String name;
+    private Status status;
+    private List<Product> products;
+
+    public enum Status {
+        OK, UNAVAILABLE
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.chaos.monkey.shopping.http;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.netty.ConnectionObserver;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Fixed-size keep-alive connection pool per backend host ({@code host:port}), sized by
+ * {@code max-connections-per-host} unless the host has its own size.
+ * <p>
+ * Every pool is exposed as {@code http.client.connections} with {@code state} active, idle and pending (requests
+ * waiting for a connection) and {@code http.client.connections.max}, tagged with the pool name and host. To count
+ * releases it has to be registered as observer of the client as well, see {@link PooledHttpClients}.
+ *
+ * @author Benjamin Wilms
+ */
+public class HostConnectionPools implements ConnectionProvider, ConnectionObserver {
+
+    private static final AttributeKey<Lease> LEASE = AttributeKey.valueOf("startpage.connection.lease");
+
+    private final String name;
+    private final int maxConnectionsPerHost;
+    private final Map<String, Integer> maxConnectionsByHost;
+    private final long acquireTimeoutMillis;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, HostPool> pools = new ConcurrentHashMap<>();
+
+    public HostConnectionPools(String name, int maxConnectionsPerHost, Map<String, Integer> maxConnectionsByHost,
+                               long acquireTimeoutMillis, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.maxConnectionsByHost = maxConnectionsByHost;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param entries {@code host:port=connections}, e.g. {@code localhost:8082=20}, entries without a size are ignored
+     * @return the connections per host
+     */
+    public static Map<String, Integer> maxConnectionsByHost(String... entries) {
+        return Stream.of(entries)
+                .filter(entry -> entry.contains("="))
+                .collect(Collectors.toMap(entry -> entry.substring(0, entry.indexOf('=')).trim(),
+                        entry -> Integer.valueOf(entry.substring(entry.indexOf('=') + 1).trim())));
+    }
+
+    @Override
+    public Mono<? extends Connection> acquire(Bootstrap bootstrap) {
+        HostPool pool = pools.computeIfAbsent(host(bootstrap.config().remoteAddress()), this::newPool);
+
+        return pool.provider.acquire(bootstrap)
+                .doOnSubscribe(subscription -> pool.pending.incrementAndGet())
+                .doOnNext(pool::leased)
+                .doFinally(signal -> pool.pending.decrementAndGet());
+    }
+
+    @Override
+    public void onStateChange(Connection connection, State newState) {
+        if (newState == State.RELEASED) {
+            Lease lease = connection.channel().attr(LEASE).get();
+            if (lease != null) {
+                lease.end();
+            }
+        }
+    }
+
+    @Override
+    public void disposeWhen(SocketAddress address) {
+        pools.values().forEach(pool -> pool.provider.disposeWhen(address));
+    }
+
+    @Override
+    public Mono<Void> disposeLater() {
+        return Mono.when(pools.values().stream().map(pool -> pool.provider.disposeLater()).toArray(Mono[]::new));
+    }
+
+    private HostPool newPool(String host) {
+        int maxConnections = maxConnectionsByHost.getOrDefault(host, maxConnectionsPerHost);
+        HostPool pool = new HostPool(ConnectionProvider.fixed(name + "-" + host, maxConnections, acquireTimeoutMillis));
+
+        Tags tags = Tags.of("pool", name, "host", host);
+        Gauge.builder("http.client.connections", pool.active, AtomicInteger::get)
+                .tags(tags).tag("state", "active").register(meterRegistry);
+        Gauge.builder("http.client.connections", pool, p -> Math.max(0, p.open.get() - p.active.get()))
+                .tags(tags).tag("state", "idle").register(meterRegistry);
+        Gauge.builder("http.client.connections", pool.pending, AtomicInteger::get)
+                .tags(tags).tag("state", "pending").register(meterRegistry);
+        Gauge.builder("http.client.connections.max", () -> maxConnections).tags(tags).register(meterRegistry);
+
+        return pool;
+    }
+
+    private static String host(SocketAddress address) {
+        // the HTTP client hands out its request as a lazily resolved address
+        if (address instanceof Supplier) {
+            Object supplied = ((Supplier<?>) address).get();
+            if (supplied instanceof SocketAddress) {
+                address = (SocketAddress) supplied;
+            }
+        }
+
+        if (address instanceof InetSocketAddress) {
+            InetSocketAddress inetAddress = (InetSocketAddress) address;
+            return inetAddress.getHostString() + ":" + inetAddress.getPort();
+        }
+        return String.valueOf(address);
+    }
+
+    private static class HostPool {
+
+        private final ConnectionProvider provider;
+        private final AtomicInteger open = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private HostPool(ConnectionProvider provider) {
+            this.provider = provider;
+        }
+
+        private void leased(Connection connection) {
+            Channel channel = connection.channel();
+
+            Lease lease = channel.attr(LEASE).get();
+            if (lease == null) {
+                // first lease of a new connection
+                lease = new Lease(this);
+                channel.attr(LEASE).set(lease);
+                open.incrementAndGet();
+
+                Lease closed = lease;
+                channel.closeFuture().addListener(future -> {
+                    closed.end();
+                    open.decrementAndGet();
+                });
+            }
+
+            if (lease.leased.compareAndSet(false, true)) {
+                active.incrementAndGet();
+            }
+        }
+    }
+
+    private static class Lease {
+
+        private final HostPool pool;
+        private final AtomicBoolean leased = new AtomicBoolean();
+
+        private Lease(HostPool pool) {
+            this.pool = pool;
+        }
+
+        // released to the pool or closed while in use, whichever comes first
+        private void end() {
+            if (leased.compareAndSet(true, false)) {
+                pool.active.decrementAndGet();
+            }
+        }
+    }
+}
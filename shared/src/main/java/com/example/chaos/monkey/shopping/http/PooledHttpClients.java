@@ -0,0 +1,139 @@
+package com.example.chaos.monkey.shopping.http;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.routing.RouteInfo;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+import reactor.netty.http.client.HttpClient;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pooled keep-alive HTTP clients of the gateways with connect and read timeouts, configured by the
+ * {@code startpage.http-client.*} properties: Reactor Netty clients on {@link HostConnectionPools} and
+ * {@link RestTemplate}s on a pooling Apache HttpClient. Both publish {@code http.client.connections} per pool and host.
+ * <p>
+ * Neither Reactor Netty 0.8 nor HttpClient 4.5 speak HTTP/2 as a client, so connections are persistent HTTP/1.1.
+ *
+ * @author Benjamin Wilms
+ */
+public class PooledHttpClients {
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+    private final int acquireTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final int maxConnectionsPerHost;
+    private final int maxConnectionsTotal;
+    private final Map<String, Integer> maxConnectionsByHost;
+
+    public PooledHttpClients(int connectTimeoutMillis, int readTimeoutMillis, int acquireTimeoutMillis,
+                             long idleTimeoutMillis, int maxConnectionsPerHost, int maxConnectionsTotal,
+                             Map<String, Integer> maxConnectionsByHost) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.maxConnectionsTotal = maxConnectionsTotal;
+        this.maxConnectionsByHost = maxConnectionsByHost;
+    }
+
+    /**
+     * @param properties the {@code startpage.http-client.*} properties, defaults for the missing ones
+     */
+    public static PooledHttpClients of(PropertyResolver properties) {
+        return new PooledHttpClients(
+                properties.getProperty("startpage.http-client.connect-timeout-millis", Integer.class, 500),
+                properties.getProperty("startpage.http-client.read-timeout-millis", Integer.class, 2000),
+                properties.getProperty("startpage.http-client.acquire-timeout-millis", Integer.class, 1000),
+                properties.getProperty("startpage.http-client.idle-timeout-millis", Long.class, 30000L),
+                properties.getProperty("startpage.http-client.max-connections-per-host", Integer.class, 100),
+                properties.getProperty("startpage.http-client.max-connections-total", Integer.class, 500),
+                // host:port=connections, e.g. localhost:8082=20
+                HostConnectionPools.maxConnectionsByHost(
+                        properties.getProperty("startpage.http-client.host-max-connections", String[].class,
+                                new String[0])));
+    }
+
+    /**
+     * @return the pools of a Reactor Netty client, to be disposed by the caller
+     */
+    public HostConnectionPools connectionPools(String pool, MeterRegistry meterRegistry) {
+        return new HostConnectionPools(pool, maxConnectionsPerHost, maxConnectionsByHost, acquireTimeoutMillis,
+                meterRegistry);
+    }
+
+    public HttpClient httpClient(HostConnectionPools connectionPools) {
+        return HttpClient.create(connectionPools)
+                .tcpConfiguration(tcpClient -> tcpClient
+                        .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+                        .option(ChannelOption.SO_KEEPALIVE, true)
+                        .observe(connectionPools))
+                .keepAlive(true)
+                // handlers added per request are removed again when the connection goes back to the pool
+                .doOnRequest((request, connection) -> connection.addHandlerLast(
+                        new ReadTimeoutHandler(readTimeoutMillis, TimeUnit.MILLISECONDS)));
+    }
+
+    public RestTemplate restTemplate(String pool, MeterRegistry meterRegistry) {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnectionsTotal);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+        maxConnectionsByHost.forEach((host, maxConnections) ->
+                connectionManager.setMaxPerRoute(new HttpRoute(HttpHost.create(host)), maxConnections));
+
+        Set<HttpRoute> observedRoutes = ConcurrentHashMap.newKeySet();
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setSocketTimeout(readTimeoutMillis)
+                .setConnectionRequestTimeout(acquireTimeoutMillis)
+                .build();
+
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .evictIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS)
+                // the route is known once a connection has been leased, register its gauges on first use
+                .addInterceptorFirst((HttpRequestInterceptor) (request, context) -> {
+                    RouteInfo route = HttpClientContext.adapt(context).getHttpRoute();
+                    if (route instanceof HttpRoute && observedRoutes.add((HttpRoute) route)) {
+                        registerRouteGauges(pool, (HttpRoute) route, connectionManager, meterRegistry);
+                    }
+                })
+                .build()));
+    }
+
+    private static void registerRouteGauges(String pool, HttpRoute route,
+                                            PoolingHttpClientConnectionManager connectionManager,
+                                            MeterRegistry meterRegistry) {
+        Tags tags = Tags.of("pool", pool, "host", route.getTargetHost().toHostString());
+
+        Gauge.builder("http.client.connections", connectionManager, m -> m.getStats(route).getLeased())
+                .tags(tags).tag("state", "active").register(meterRegistry);
+        Gauge.builder("http.client.connections", connectionManager, m -> m.getStats(route).getAvailable())
+                .tags(tags).tag("state", "idle").register(meterRegistry);
+        Gauge.builder("http.client.connections", connectionManager, m -> m.getStats(route).getPending())
+                .tags(tags).tag("state", "pending").register(meterRegistry);
+        Gauge.builder("http.client.connections.max", connectionManager, m -> m.getStats(route).getMax())
+                .tags(tags).register(meterRegistry);
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.chaos.monkey.shopping.startup;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Measures the creation of every bean from instantiation to the end of its initialization, including the beans it
+ * pulls in on the way. Once the application is ready the beans slower than the threshold are published as
+ * {@code application.startup.bean} timers (tag {@code bean}) and the ten slowest beans are logged.
+ * <p>
+ * Being an {@link InstantiationAwareBeanPostProcessor} it slows down the creation of every bean by itself (about
+ * 3-5 seconds for the gateway), so it is meant for finding slow beans, not for measuring the startup time.
+ *
+ * @author Benjamin Wilms
+ */
+public class BeanStartupMetrics implements InstantiationAwareBeanPostProcessor, ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(BeanStartupMetrics.class);
+
+    private final long thresholdNanos;
+    private final Map<String, Long> started = new ConcurrentHashMap<>();
+    private final Map<String, Long> durations = new ConcurrentHashMap<>();
+
+    public BeanStartupMetrics(long thresholdMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    @Override
+    public Object postProcessBeforeInstantiation(Class<?> beanClass, String beanName) {
+        started.putIfAbsent(beanName, System.nanoTime());
+        return null;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        Long start = started.remove(beanName);
+        if (start != null) {
+            durations.put(beanName, System.nanoTime() - start);
+        }
+        return bean;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        MeterRegistry meterRegistry = event.getApplicationContext().getBeanProvider(MeterRegistry.class).getIfAvailable();
+        if (meterRegistry != null) {
+            durations.forEach((bean, nanos) -> {
+                if (nanos >= thresholdNanos) {
+                    Timer.builder("application.startup.bean").tag("bean", bean).register(meterRegistry)
+                            .record(nanos, TimeUnit.NANOSECONDS);
+                }
+            });
+        }
+
+        log.info("Slowest beans (ms, including their dependencies): {}",
+                durations.entrySet().stream()
+                        .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                        .limit(10)
+                        .map(e -> e.getKey() + "=" + TimeUnit.NANOSECONDS.toMillis(e.getValue()))
+                        .collect(Collectors.joining(", ")));
+    }
+}
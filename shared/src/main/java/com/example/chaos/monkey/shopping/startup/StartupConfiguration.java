@@ -0,0 +1,68 @@
+package com.example.chaos.monkey.shopping.startup;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ConfigurationClassPostProcessor;
+import org.springframework.core.env.Environment;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Startup options of the {@code fast-startup} profile of both gateways, which {@code @Import} this configuration: lazy
+ * bean initialization and per-bean startup timings, both off unless enabled under {@code startpage.startup}. The
+ * startup time and RSS are always reported.
+ *
+ * @author Benjamin Wilms
+ */
+@Configuration
+public class StartupConfiguration {
+
+    // set to "full" on @Configuration classes by the ConfigurationClassPostProcessor
+    private static final String CONFIGURATION_CLASS_ATTRIBUTE =
+            ConfigurationClassPostProcessor.class.getName() + ".configurationClass";
+
+    @Bean
+    @ConditionalOnProperty("startpage.startup.lazy-init")
+    public static BeanFactoryPostProcessor lazyInitBeanFactoryPostProcessor(Environment environment) {
+        Set<String> eagerBeans = new HashSet<>(Arrays.asList(
+                environment.getProperty("startpage.startup.eager-beans", String[].class, new String[0])));
+
+        return beanFactory -> makeLazy(beanFactory, eagerBeans);
+    }
+
+    @Bean
+    public static StartupReport startupReport(Environment environment) {
+        return new StartupReport(environment.getProperty("startpage.startup.exit-on-ready", Boolean.class, false));
+    }
+
+    @Bean
+    @ConditionalOnProperty("startpage.startup.bean-metrics")
+    public static BeanStartupMetrics beanStartupMetrics(Environment environment) {
+        return new BeanStartupMetrics(environment.getProperty("startpage.startup.bean-metrics-threshold-millis",
+                Long.class, 10L));
+    }
+
+    /**
+     * Spring Boot 2.1 has no {@code spring.main.lazy-initialization} yet, so every application bean that is not
+     * explicitly eager is marked lazy before any of them is created. Infrastructure beans and the
+     * {@code @Configuration} classes themselves stay eager: they are cheap, and creating them in their usual order
+     * keeps field-injected configurations such as Sleuth's from running into circular references. Beans pulled in by
+     * the web server, the lifecycle processor or the routes are still created at startup through those.
+     */
+    private static void makeLazy(ConfigurableListableBeanFactory beanFactory, Set<String> eagerBeans) {
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+
+            if (definition.getRole() == BeanDefinition.ROLE_APPLICATION && !eagerBeans.contains(name)
+                    && !"full".equals(definition.getAttribute(CONFIGURATION_CLASS_ATTRIBUTE))) {
+                definition.setLazyInit(true);
+            }
+        }
+    }
+}
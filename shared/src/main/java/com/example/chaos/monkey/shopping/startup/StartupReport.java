@@ -0,0 +1,68 @@
+package com.example.chaos.monkey.shopping.startup;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Reports how long the JVM took until the application was ready and its resident set size at that point, as the
+ * gauges {@code application.startup.time} and {@code application.startup.rss} and in the log. The RSS is read from
+ * {@code /proc/self/status} and left out where that does not exist.
+ * <p>
+ * With {@code exitOnReady} the application shuts down right after the report, for scripted startup measurements.
+ *
+ * @author Benjamin Wilms
+ */
+public class StartupReport implements ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupReport.class);
+
+    private final boolean exitOnReady;
+
+    public StartupReport(boolean exitOnReady) {
+        this.exitOnReady = exitOnReady;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+        long rssBytes = residentSetSize();
+
+        MeterRegistry meterRegistry = event.getApplicationContext().getBeanProvider(MeterRegistry.class).getIfAvailable();
+        if (meterRegistry != null) {
+            Gauge.builder("application.startup.time", () -> uptimeMillis / 1000.0).baseUnit("seconds")
+                    .register(meterRegistry);
+            if (rssBytes >= 0) {
+                Gauge.builder("application.startup.rss", () -> rssBytes).baseUnit("bytes").register(meterRegistry);
+            }
+        }
+
+        log.info("Ready after {} ms, resident set size {} MB", uptimeMillis,
+                rssBytes >= 0 ? rssBytes / (1024 * 1024) : "n/a");
+
+        if (exitOnReady) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    private static long residentSetSize() {
+        try {
+            return Files.readAllLines(Paths.get("/proc/self/status")).stream()
+                    .filter(line -> line.startsWith("VmRSS:"))
+                    .mapToLong(line -> Long.parseLong(line.replaceAll("\\D", "")) * 1024)
+                    .findFirst()
+                    .orElse(-1);
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+}
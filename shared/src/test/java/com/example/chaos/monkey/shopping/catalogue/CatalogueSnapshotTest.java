@@ -0,0 +1,119 @@
+package com.example.chaos.monkey.shopping.catalogue;
+
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class CatalogueSnapshotTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void mappedSnapshotHasTheWrittenRowsAndOrders() throws IOException {
+        ProductColumns.Builder builder = GeneratedProducts.addTo(new ProductColumns.Builder(), 100, 3000,
+                ProductCategory.TOYS, ProductCategory.BOOKS);
+        builder.add(1, "Uncategorized", null);
+        ProductCatalogue written = new ProductCatalogue(builder.build(true), 0);
+        Path file = folder.getRoot().toPath().resolve("toys" + CatalogueSnapshot.FILE_SUFFIX);
+
+        CatalogueSnapshot.write(written, 7, file);
+        ProductCatalogue mapped = CatalogueSnapshot.map(file);
+
+        assertEquals(7, CatalogueSnapshot.version(file));
+        assertEquals(7, mapped.getVersion());
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+
+        ProductColumns expected = written.columns();
+        ProductColumns actual = mapped.columns();
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.id(row), actual.id(row));
+            assertEquals(expected.name(row), actual.name(row));
+            assertEquals(expected.category(row), actual.category(row));
+            assertEquals(row, actual.rowOf(actual.id(row)));
+        }
+        assertArrayEquals(ints(expected.byName()), ints(actual.byName()));
+        assertArrayEquals(ints(expected.categoryRows()), ints(actual.categoryRows()));
+        assertArrayEquals(ints(expected.categoryByName()), ints(actual.categoryByName()));
+        assertArrayEquals(expected.categoryStarts(), actual.categoryStarts());
+        assertEquals(written.page(ProductCategory.BOOKS, "gala", null, 50), mapped.page(ProductCategory.BOOKS, "gala", null, 50));
+    }
+
+    @Test
+    public void replacingTheFileKeepsAnEarlierMappingReadable() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("toys" + CatalogueSnapshot.FILE_SUFFIX);
+        CatalogueSnapshot.write(catalogue(1, 10), 1, file);
+        ProductCatalogue first = CatalogueSnapshot.map(file);
+
+        CatalogueSnapshot.write(catalogue(1, 20), 2, file);
+
+        assertEquals(10, first.size());
+        assertEquals("Acme Classic Backpack 1", first.get(1).getName());
+        assertEquals(20, CatalogueSnapshot.map(file).size());
+    }
+
+    @Test
+    public void filesOfAnotherFormatAreRejected() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("toys" + CatalogueSnapshot.FILE_SUFFIX);
+
+        Files.write(file, "not a snapshot".getBytes());
+        assertRejected(file);
+
+        CatalogueSnapshot.write(catalogue(1, 10), 1, file);
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(4, 1);
+        Files.write(file, bytes);
+        assertRejected(file);
+
+        // truncated
+        CatalogueSnapshot.write(catalogue(1, 10), 1, file);
+        Files.write(file, Arrays.copyOf(Files.readAllBytes(file), (int) Files.size(file) - 1));
+        try {
+            CatalogueSnapshot.map(file);
+            fail("Mapped a truncated snapshot");
+        } catch (IOException expected) {
+        }
+    }
+
+    static ProductCatalogue catalogue(long firstId, int count) {
+        return new ProductCatalogue(GeneratedProducts.addTo(new ProductColumns.Builder(), firstId, count,
+                ProductCategory.TOYS).build(false), 0);
+    }
+
+    private static int[] ints(IntBuffer buffer) {
+        int[] ints = new int[buffer.remaining()];
+        buffer.get(ints);
+        return ints;
+    }
+
+    private static void assertRejected(Path file) {
+        try {
+            CatalogueSnapshot.version(file);
+            fail("Read the version of " + file);
+        } catch (IOException expected) {
+        }
+        try {
+            CatalogueSnapshot.map(file);
+            fail("Mapped " + file);
+        } catch (IOException expected) {
+        }
+    }
+}
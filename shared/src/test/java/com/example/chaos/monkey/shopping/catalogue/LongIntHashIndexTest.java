@@ -0,0 +1,71 @@
+package com.example.chaos.monkey.shopping.catalogue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class LongIntHashIndexTest {
+
+    @Test
+    public void collidingKeysAreProbed() {
+        // an index for two keys has four slots, collect keys that all hash to the slot of the first one
+        List<Long> colliding = new ArrayList<>();
+        for (long key = 1; colliding.size() < 3; key++) {
+            if (slotOfFour(key) == slotOfFour(1)) {
+                colliding.add(key);
+            }
+        }
+
+        LongIntHashIndex index = new LongIntHashIndex(2);
+        index.put(colliding.get(0), 0);
+        index.put(colliding.get(1), 1);
+
+        assertEquals(0, index.get(colliding.get(0)));
+        assertEquals(1, index.get(colliding.get(1)));
+        assertEquals(-1, index.get(colliding.get(2)));
+
+        index.put(colliding.get(1), 7);
+        assertEquals(7, index.get(colliding.get(1)));
+    }
+
+    @Test
+    public void holdsTheExpectedNumberOfKeys() {
+        for (int size : new int[]{0, 1, 2, 3, 63, 64, 65, 1000}) {
+            LongIntHashIndex index = new LongIntHashIndex(size);
+            for (int row = 0; row < size; row++) {
+                index.put(1_000_000L + row * 3, row);
+            }
+
+            for (int row = 0; row < size; row++) {
+                assertEquals(row, index.get(1_000_000L + row * 3));
+            }
+            assertEquals(-1, index.get(1_000_001L));
+            assertEquals(-1, index.get(-1));
+        }
+    }
+
+    @Test
+    public void missingKeyIsMinusOne() {
+        LongIntHashIndex index = new LongIntHashIndex(16);
+        assertEquals(-1, index.get(0));
+
+        index.put(0, 0);
+        index.put(Long.MAX_VALUE, 1);
+        index.put(Long.MIN_VALUE, 2);
+        assertEquals(0, index.get(0));
+        assertEquals(1, index.get(Long.MAX_VALUE));
+        assertEquals(2, index.get(Long.MIN_VALUE));
+        assertTrue(index.get(42) < 0);
+    }
+
+    private static int slotOfFour(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & 3;
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.chaos.monkey.shopping.catalogue;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductPage;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class ProductCatalogueSourceTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private ProductCatalogueSource source;
+
+    @After
+    public void tearDown() {
+        if (source != null) {
+            source.close();
+        }
+    }
+
+    @Test
+    public void higherVersionIsSwappedInAndOldCursorsStillResolve() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        ProductCatalogue fallback = CatalogueSnapshotTest.catalogue(1, 5);
+        source = ProductCatalogueSource.watching(directory, 20, () -> fallback);
+        assertSame(fallback, source.get());
+
+        CatalogueSnapshot.write(CatalogueSnapshotTest.catalogue(1, 10), 3, directory.resolve("a" + CatalogueSnapshot.FILE_SUFFIX));
+        ProductCatalogue first = awaitVersion(3);
+        ProductPage page = first.page(null, null, null, 4);
+
+        CatalogueSnapshot.write(CatalogueSnapshotTest.catalogue(1, 20), 2, directory.resolve("b" + CatalogueSnapshot.FILE_SUFFIX));
+        CatalogueSnapshot.write(CatalogueSnapshotTest.catalogue(1, 20), 5, directory.resolve("c" + CatalogueSnapshot.FILE_SUFFIX));
+        ProductCatalogue second = awaitVersion(5);
+
+        // the page read before the swap stays readable, its cursor continues on the new catalogue
+        assertEquals(1, page.getProducts().get(0).getId());
+        ProductPage next = second.page(null, null, page.getNextCursor(), 4);
+        assertEquals(5, next.getProducts().get(0).getId());
+        assertEquals(4, next.getProducts().size());
+        assertEquals(10, first.page(null, null, page.getNextCursor(), 10).getProducts().stream()
+                .mapToLong(Product::getId).max().getAsLong());
+    }
+
+    @Test
+    public void fileThatCannotBeMappedIsSkipped() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        CatalogueSnapshot.write(CatalogueSnapshotTest.catalogue(1, 10), 1, directory.resolve("a" + CatalogueSnapshot.FILE_SUFFIX));
+        Files.write(directory.resolve("broken" + CatalogueSnapshot.FILE_SUFFIX), "broken".getBytes());
+        Files.write(directory.resolve("ignored.tmp"), "partly written".getBytes());
+
+        source = ProductCatalogueSource.watching(directory, 60000, () -> {
+            throw new AssertionError("the snapshot should have been mapped");
+        });
+
+        assertEquals(1, source.get().getVersion());
+        assertFalse(source.refresh());
+
+        Path broken = directory.resolve("broken" + CatalogueSnapshot.FILE_SUFFIX);
+        CatalogueSnapshot.write(CatalogueSnapshotTest.catalogue(1, 10), 2, broken);
+        // a changed modification time makes it a candidate again
+        Files.setLastModifiedTime(broken, FileTime.fromMillis(Files.getLastModifiedTime(broken).toMillis() + 1000));
+        assertTrue(source.refresh());
+        assertEquals(2, source.get().getVersion());
+    }
+
+    private ProductCatalogue awaitVersion(long version) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (source.get().getVersion() != version && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(version, source.get().getVersion());
+        return source.get();
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.chaos.monkey.shopping.catalogue;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import com.example.chaos.monkey.shopping.domain.ProductPage;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class ProductCatalogueTest {
+
+    private final List<Product> products = Arrays.asList(
+            new Product(7, "Lego Train", ProductCategory.TOYS),
+            new Product(2, "leather Jacket", ProductCategory.FASHION),
+            new Product(5, "LEGO Star Wars Yodas Hut", ProductCategory.TOYS),
+            new Product(1, "Lewi's Jeans", ProductCategory.FASHION),
+            new Product(9, "Lego Boat", ProductCategory.TOYS),
+            new Product(3, "Puzzle", ProductCategory.TOYS),
+            new Product(8, "Lexicon", ProductCategory.BOOKS),
+            new Product(4, "Lego Boat", ProductCategory.TOYS),
+            new Product(6, "Scarf", ProductCategory.FASHION));
+
+    private final ProductCatalogue catalogue = new ProductCatalogue(products);
+
+    @Test
+    public void pagesByIdAcrossPageBoundaries() {
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L), allIds(null, null, 2));
+        assertEquals(Arrays.asList(3L, 4L, 5L, 7L, 9L), allIds(ProductCategory.TOYS, null, 2));
+        assertEquals(Arrays.asList(1L, 2L, 6L), allIds(ProductCategory.FASHION, null, 3));
+    }
+
+    @Test
+    public void pagesByNamePrefixIgnoringAsciiCase() {
+        // equal names in id order
+        assertEquals(Arrays.asList(4L, 9L, 5L, 7L), allIds(null, "lEgO", 1));
+        assertEquals(Arrays.asList(2L, 4L, 9L, 5L, 7L, 1L, 8L), allIds(null, "l", 3));
+        assertEquals(Arrays.asList(4L, 9L, 5L, 7L), allIds(ProductCategory.TOYS, "L", 2));
+        assertEquals(Arrays.asList(2L, 1L), allIds(ProductCategory.FASHION, "le", 1));
+        assertEquals(0, catalogue.page(ProductCategory.BOOKS, "lego", null, 10).getProducts().size());
+    }
+
+    @Test
+    public void cursorOfTheLastPageCanBeReused() {
+        ProductPage first = catalogue.page(ProductCategory.TOYS, null, null, 3);
+        ProductPage last = catalogue.page(ProductCategory.TOYS, null, first.getNextCursor(), 3);
+        assertNull(last.getNextCursor());
+
+        ProductPage again = catalogue.page(ProductCategory.TOYS, null, first.getNextCursor(), 3);
+        assertEquals(ids(last), ids(again));
+        assertNull(again.getNextCursor());
+
+        // a catalogue without the rows behind the cursor answers an empty last page
+        ProductCatalogue smaller = new ProductCatalogue(products.subList(1, 4));
+        ProductPage empty = smaller.page(ProductCategory.TOYS, null, first.getNextCursor(), 3);
+        assertTrue(empty.getProducts().isEmpty());
+        assertNull(empty.getNextCursor());
+    }
+
+    @Test
+    public void cursorOfAnotherKindOfQueryIsRejected() {
+        String byId = catalogue.page(null, null, null, 1).getNextCursor();
+        String byName = catalogue.page(null, "lego", null, 1).getNextCursor();
+
+        assertRejected(null, "lego", byId);
+        assertRejected(null, null, byName);
+        assertRejected(null, "puzzle", byName);
+    }
+
+    @Test
+    public void malformedCursorIsRejected() {
+        assertRejected(null, null, "not*base64");
+        assertRejected(null, null, Base64.getUrlEncoder().encodeToString("i\nseven".getBytes(StandardCharsets.UTF_8)));
+        assertRejected(null, "lego", Base64.getUrlEncoder().encodeToString("n".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void limitIsAtLeastOneAndCapped() {
+        assertRejected(null, null, null, 0);
+        assertRejected(null, null, null, -5);
+
+        List<Product> many = new ArrayList<>();
+        for (long id = 1; id <= ProductCatalogue.MAX_LIMIT + 1; id++) {
+            many.add(new Product(id, "Product " + id, ProductCategory.BOOKS));
+        }
+        ProductPage page = new ProductCatalogue(many).page(null, null, null, Integer.MAX_VALUE);
+        assertEquals(ProductCatalogue.MAX_LIMIT, page.getProducts().size());
+        assertNotNull(page.getNextCursor());
+    }
+
+    @Test
+    public void getsProductsById() {
+        assertEquals(new Product(5, "LEGO Star Wars Yodas Hut", ProductCategory.TOYS), catalogue.get(5));
+        assertNull(catalogue.get(10));
+        assertNull(catalogue.get(-1));
+    }
+
+    private List<Long> allIds(ProductCategory category, String prefix, int limit) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            ProductPage page = catalogue.page(category, prefix, cursor, limit);
+            assertTrue(page.getProducts().size() <= limit);
+            ids.addAll(ids(page));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private static List<Long> ids(ProductPage page) {
+        return page.getProducts().stream().map(Product::getId).collect(Collectors.toList());
+    }
+
+    private void assertRejected(ProductCategory category, String prefix, String cursor) {
+        assertRejected(category, prefix, cursor, ProductCatalogue.DEFAULT_LIMIT);
+    }
+
+    private void assertRejected(ProductCategory category, String prefix, String cursor, int limit) {
+        try {
+            catalogue.page(category, prefix, cursor, limit);
+            fail("Expected " + cursor + " with limit " + limit + " to be rejected");
+        } catch (IllegalArgumentException expected) {
+            // mapped to 400 by the controllers
+        }
+    }
+}
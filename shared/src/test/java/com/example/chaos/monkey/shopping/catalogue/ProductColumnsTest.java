@@ -0,0 +1,140 @@
+package com.example.chaos.monkey.shopping.catalogue;
+
+import com.example.chaos.monkey.shopping.domain.Product;
+import com.example.chaos.monkey.shopping.domain.ProductCategory;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class ProductColumnsTest {
+
+    @Test
+    public void distinctNamesAreStoredOnce() {
+        ProductColumns.Builder builder = new ProductColumns.Builder();
+        // more distinct names than the initial dictionary holds
+        for (int id = 0; id < 600; id++) {
+            builder.add(id, "Name " + id % 200, ProductCategory.BOOKS);
+        }
+
+        ProductColumns columns = builder.build(false);
+
+        assertEquals(200, columns.nameOffsets().limit() - 1);
+        assertEquals(columns.nameRefs().get(5), columns.nameRefs().get(205));
+        assertEquals("Name 5", columns.name(405));
+    }
+
+    @Test
+    public void laterProductWithTheSameIdWins() {
+        ProductColumns columns = new ProductColumns.Builder()
+                .add(3, "Puzzle", ProductCategory.TOYS)
+                .add(1, "Scarf", ProductCategory.FASHION)
+                .add(3, "Lexicon", ProductCategory.BOOKS)
+                .add(2, "Unknown", null)
+                .build(false);
+
+        assertEquals(3, columns.size());
+        assertEquals(1, columns.id(0));
+        assertEquals("Lexicon", columns.name(columns.rowOf(3)));
+        assertEquals(ProductCategory.BOOKS, columns.category(columns.rowOf(3)));
+        assertNull(columns.category(columns.rowOf(2)));
+        assertEquals(0, columns.categorySize(ProductCategory.TOYS));
+        assertEquals(-1, columns.rowOf(4));
+    }
+
+    @Test
+    public void namesCompareIgnoringAsciiCaseOnly() {
+        ProductColumns columns = new ProductColumns.Builder()
+                .add(1, "LEGO Boat", ProductCategory.TOYS)
+                .add(2, "Äpfel", ProductCategory.BOOKS)
+                .build(false);
+
+        assertEquals(0, columns.compareName(0, utf8("lego boat")));
+        assertTrue(columns.compareName(0, utf8("lego")) > 0);
+        assertTrue(columns.compareName(0, utf8("lego boats")) < 0);
+        assertTrue(columns.nameStartsWith(0, utf8("lEgO b")));
+        assertFalse(columns.nameStartsWith(0, utf8("lego boats")));
+
+        assertTrue(columns.nameStartsWith(1, utf8("Äp")));
+        assertFalse(columns.nameStartsWith(1, utf8("äp")));
+    }
+
+    @Test
+    public void nameOrderIsStableAndGroupedByCategory() {
+        ProductColumns columns = new ProductColumns.Builder()
+                .add(4, "b", ProductCategory.TOYS)
+                .add(1, "B", ProductCategory.BOOKS)
+                .add(3, "a", ProductCategory.TOYS)
+                .add(2, "b", ProductCategory.TOYS)
+                .build(false);
+
+        assertEquals("3 1 2 4", idsByName(columns));
+        assertEquals(2, columns.id(columns.rowOfCategoryByName(ProductCategory.TOYS, 1)));
+        assertEquals(4, columns.id(columns.rowOfCategoryByName(ProductCategory.TOYS, 2)));
+        assertEquals(2, columns.id(columns.rowOfCategory(ProductCategory.TOYS, 0)));
+    }
+
+    @Test
+    public void offHeapNamesReadLikeOnHeapNames() {
+        ProductColumns.Builder builder = GeneratedProducts.addTo(new ProductColumns.Builder(), 1, 5000,
+                ProductCategory.values());
+        // shuffled ids, so both orders have to be sorted
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            builder.add(10_000 + random.nextInt(100_000), "Shuffled " + random.nextInt(50), ProductCategory.TOYS);
+        }
+
+        ProductColumns onHeap = builder.build(false);
+        ProductColumns offHeap = builder.build(true);
+
+        assertTrue(onHeap.names().hasArray());
+        assertTrue(offHeap.names().isDirect());
+        assertEquals(onHeap.size(), offHeap.size());
+        for (int row = 0; row < onHeap.size(); row++) {
+            assertEquals(onHeap.product(row), offHeap.product(row));
+            assertEquals(onHeap.rowByName(row), offHeap.rowByName(row));
+            if (row > 0) {
+                assertTrue(onHeap.id(row - 1) < onHeap.id(row));
+                // rows are in id order, so equal names have to keep it
+                String name = onHeap.name(onHeap.rowByName(row));
+                int compared = onHeap.compareName(onHeap.rowByName(row - 1), utf8(name));
+                assertTrue(compared < 0 || compared == 0 && onHeap.rowByName(row - 1) < onHeap.rowByName(row));
+            }
+        }
+        assertEquals(idsByName(onHeap), idsByName(offHeap));
+    }
+
+    @Test
+    public void productsAreCopiesOfTheirRow() {
+        ProductColumns columns = ProductColumns.of(Collections.singletonList(
+                new Product(1, "Puzzle", ProductCategory.TOYS)), false);
+        Product product = columns.product(0);
+
+        assertEquals(new Product(1, "Puzzle", ProductCategory.TOYS), product);
+        product.setId(2);
+        product.setName("Scarf");
+        product.setCategory(ProductCategory.FASHION);
+        assertEquals(new Product(1, "Puzzle", ProductCategory.TOYS), columns.product(0));
+    }
+
+    private static String idsByName(ProductColumns columns) {
+        StringBuilder ids = new StringBuilder();
+        for (int position = 0; position < columns.size(); position++) {
+            ids.append(position == 0 ? "" : " ").append(columns.id(columns.rowByName(position)));
+        }
+        return ids.toString();
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.chaos.monkey.shopping.domain;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class ProductMediaTypesTest {
+
+    @Test
+    public void gatewayAcceptHeadersSelectTheirWireFormat() {
+        assertTrue(ProductMediaTypes.acceptsSmile(ProductMediaTypes.accept("smile")));
+        assertFalse(ProductMediaTypes.acceptsSmile(ProductMediaTypes.accept("json")));
+    }
+
+    @Test
+    public void higherQualityWins() {
+        assertTrue(ProductMediaTypes.acceptsSmile("application/json;q=0.4, application/x-jackson-smile;q=0.8"));
+        assertFalse(ProductMediaTypes.acceptsSmile("application/json;q=0.8, application/x-jackson-smile;q=0.4"));
+        assertFalse(ProductMediaTypes.acceptsSmile("application/x-jackson-smile;q=0.5, */*"));
+        assertTrue(ProductMediaTypes.acceptsSmile("*/*;q=0.1, application/x-jackson-smile"));
+    }
+
+    @Test
+    public void explicitSmileWinsATie() {
+        assertTrue(ProductMediaTypes.acceptsSmile("application/json, application/x-jackson-smile"));
+        assertTrue(ProductMediaTypes.acceptsSmile("application/x-jackson-smile, application/*"));
+        assertTrue(ProductMediaTypes.acceptsSmile("application/x-jackson-smile, application/json;q=0"));
+    }
+
+    @Test
+    public void excludedOrOnlyWildcardSmileKeepsJson() {
+        assertFalse(ProductMediaTypes.acceptsSmile("application/x-jackson-smile;q=0, */*"));
+        assertFalse(ProductMediaTypes.acceptsSmile("application/x-jackson-smile; q=0.0"));
+        assertFalse(ProductMediaTypes.acceptsSmile("*/*"));
+        assertFalse(ProductMediaTypes.acceptsSmile("application/*"));
+    }
+
+    @Test
+    public void missingOrMalformedHeaderKeepsJson() {
+        assertFalse(ProductMediaTypes.acceptsSmile(null));
+        assertFalse(ProductMediaTypes.acceptsSmile(""));
+        assertFalse(ProductMediaTypes.acceptsSmile("application/x-jackson-smile;q=x"));
+        assertFalse(ProductMediaTypes.acceptsSmile("not a media type"));
+    }
+}
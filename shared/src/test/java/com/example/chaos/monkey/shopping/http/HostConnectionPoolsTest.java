@@ -0,0 +1,90 @@
+package com.example.chaos.monkey.shopping.http;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class HostConnectionPoolsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DisposableServer server = HttpServer.create()
+            .host("127.0.0.1")
+            .port(0)
+            .route(routes -> routes.get("/toys/bestseller", (request, response) -> response.sendString(Mono.just("[]"))))
+            .bindNow();
+
+    private HostConnectionPools pools;
+
+    @After
+    public void tearDown() {
+        if (pools != null) {
+            pools.dispose();
+        }
+        server.disposeNow();
+    }
+
+    @Test
+    public void hostOverridesAreParsed() {
+        Map<String, Integer> maxConnections = HostConnectionPools.maxConnectionsByHost(
+                "localhost:8082=20", " localhost:8081 = 5 ", "localhost:8083", "");
+
+        assertEquals(2, maxConnections.size());
+        assertEquals(Integer.valueOf(20), maxConnections.get("localhost:8082"));
+        assertEquals(Integer.valueOf(5), maxConnections.get("localhost:8081"));
+        assertEquals(Collections.emptyMap(), HostConnectionPools.maxConnectionsByHost());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void overrideWithoutANumberIsRejected() {
+        HostConnectionPools.maxConnectionsByHost("localhost:8082=many");
+    }
+
+    @Test
+    public void everyHostGetsItsPoolGauges() throws InterruptedException {
+        String host = "127.0.0.1:" + server.port();
+        pools = new HostConnectionPools("test", 100, HostConnectionPools.maxConnectionsByHost(host + "=3"), 1000,
+                meterRegistry);
+        HttpClient client = HttpClient.create(pools)
+                .tcpConfiguration(tcpClient -> tcpClient.observe(pools))
+                .keepAlive(true);
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals("[]", client.get().uri("http://" + host + "/toys/bestseller")
+                    .responseContent().aggregate().asString().block(Duration.ofSeconds(5)));
+        }
+
+        assertEquals(3, gauge("http.client.connections.max", host, null), 0);
+        // the connection went back to the pool and was reused
+        awaitGauge(host, "active", 0);
+        assertEquals(1, gauge("http.client.connections", host, "idle"), 0);
+        assertEquals(0, gauge("http.client.connections", host, "pending"), 0);
+    }
+
+    private void awaitGauge(String host, String state, double expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (gauge("http.client.connections", host, state) != expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, gauge("http.client.connections", host, state), 0);
+    }
+
+    private double gauge(String name, String host, String state) {
+        return (state == null
+                ? meterRegistry.get(name).tags("pool", "test", "host", host)
+                : meterRegistry.get(name).tags("pool", "test", "host", host, "state", state)).gauge().value();
+    }
+}
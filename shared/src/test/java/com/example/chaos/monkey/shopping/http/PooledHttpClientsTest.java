@@ -0,0 +1,59 @@
+package com.example.chaos.monkey.shopping.http;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.web.client.RestTemplate;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class PooledHttpClientsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DisposableServer server = HttpServer.create()
+            .host("127.0.0.1")
+            .port(0)
+            .route(routes -> routes.get("/toys/bestseller", (request, response) -> response.sendString(Mono.just("[]"))))
+            .bindNow();
+
+    @After
+    public void tearDown() {
+        server.disposeNow();
+    }
+
+    @Test
+    public void restTemplateRegistersGaugesPerRouteOnFirstUse() {
+        String host = "127.0.0.1:" + server.port();
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", Collections.singletonMap(
+                "startpage.http-client.host-max-connections", "localhost:8082=20," + host + "=3")));
+        RestTemplate restTemplate = PooledHttpClients.of(environment).restTemplate("legacy", meterRegistry);
+
+        assertEquals(0, meterRegistry.find("http.client.connections.max").gauges().size());
+        for (int i = 0; i < 2; i++) {
+            assertEquals("[]", restTemplate.getForObject("http://" + host + "/toys/bestseller", String.class));
+        }
+
+        assertEquals(3, gauge("http.client.connections.max", host, null), 0);
+        assertEquals(0, gauge("http.client.connections", host, "active"), 0);
+        // the connection went back to the pool and was reused
+        assertEquals(1, gauge("http.client.connections", host, "idle"), 0);
+        assertEquals(0, gauge("http.client.connections", host, "pending"), 0);
+    }
+
+    private double gauge(String name, String host, String state) {
+        return (state == null
+                ? meterRegistry.get(name).tags("pool", "legacy", "host", host)
+                : meterRegistry.get(name).tags("pool", "legacy", "host", host, "state", state)).gauge().value();
+    }
+}
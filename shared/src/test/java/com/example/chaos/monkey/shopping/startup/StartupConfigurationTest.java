@@ -0,0 +1,38 @@
+package com.example.chaos.monkey.shopping.startup;
+
+import org.junit.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Benjamin Wilms
+ */
+public class StartupConfigurationTest {
+
+    @Test
+    public void marksApplicationBeansLazyExceptEagerOnes() {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("lazyBean", new RootBeanDefinition(Object.class));
+        beanFactory.registerBeanDefinition("eagerBean", new RootBeanDefinition(Object.class));
+        RootBeanDefinition infrastructure = new RootBeanDefinition(Object.class);
+        infrastructure.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+        beanFactory.registerBeanDefinition("infrastructureBean", infrastructure);
+
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test",
+                Collections.singletonMap("startpage.startup.eager-beans", "eagerBean")));
+        StartupConfiguration.lazyInitBeanFactoryPostProcessor(environment).postProcessBeanFactory(beanFactory);
+
+        assertTrue(beanFactory.getBeanDefinition("lazyBean").isLazyInit());
+        assertFalse(beanFactory.getBeanDefinition("eagerBean").isLazyInit());
+        assertFalse(beanFactory.getBeanDefinition("infrastructureBean").isLazyInit());
+    }
+}